@@ -0,0 +1,97 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.uniroma2.dicii.claupiscu.model.domain.Film;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Caricamento di 10k righe film come in FilmDao.mappaFilm, con cast JSON di 6 attori:
+// ObjectMapper nuovo per ogni film (codice precedente), reader condiviso, cast pigro
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class CaricamentoFilmBenchmark {
+    private static final int NUMERO_FILM = 10_000;
+
+    public enum Modalita { MAPPER_PER_FILM, LETTORE_CONDIVISO, PIGRO, PIGRO_CON_LETTURA }
+
+    @Param
+    Modalita modalita;
+
+    private String[] titoli;
+    private String[] cast;
+
+    @Setup
+    public void setup() {
+        titoli = new String[NUMERO_FILM];
+        cast = new String[NUMERO_FILM];
+        for (int i = 0; i < NUMERO_FILM; i++) {
+            titoli[i] = "Film " + i;
+            StringBuilder json = new StringBuilder("[");
+            for (int a = 0; a < 6; a++) {
+                if (a > 0) {
+                    json.append(", ");
+                }
+                json.append("{\"id_attore\": ").append(i * 6 + a)
+                        .append(", \"nominativo\": \"Attore ").append(i).append('_').append(a).append("\"}");
+            }
+            cast[i] = json.append(']').toString();
+        }
+    }
+
+    @Benchmark
+    public void carica(Blackhole bh) {
+        for (int i = 0; i < NUMERO_FILM; i++) {
+            Film film = new Film();
+            film.setTitoloFilm(titoli[i]);
+            film.setDurataMinuti((byte) 120);
+            film.setCasaCinematografica("Casa");
+            switch (modalita) {
+                case MAPPER_PER_FILM:
+                    // stesso costo del vecchio setCastAttori: un ObjectMapper nuovo a ogni riga
+                    film.setCastAttoriPigro(cast[i]);
+                    bh.consume(deserializzaConNuovoMapper(cast[i]));
+                    break;
+                case LETTORE_CONDIVISO:
+                    film.setCastAttori(cast[i]);
+                    break;
+                case PIGRO:
+                    film.setCastAttoriPigro(cast[i]);
+                    break;
+                case PIGRO_CON_LETTURA:
+                    film.setCastAttoriPigro(cast[i]);
+                    bh.consume(film.getAttori());
+                    break;
+            }
+            bh.consume(film);
+        }
+    }
+
+    // Com'era Film.deserializzaAttori prima del reader condiviso
+    private static List<Film.Attore> deserializzaConNuovoMapper(String jsonAttori) {
+        try {
+            ObjectMapper mapper = new ObjectMapper();
+            return mapper.readValue(jsonAttori, new TypeReference<List<Film.Attore>>() {});
+        } catch (JsonProcessingException e) {
+            return List.of();
+        }
+    }
+}
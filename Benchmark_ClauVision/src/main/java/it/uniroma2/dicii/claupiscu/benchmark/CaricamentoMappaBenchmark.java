@@ -0,0 +1,125 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import it.uniroma2.dicii.claupiscu.model.cache.CacheOccupazione;
+import it.uniroma2.dicii.claupiscu.model.cache.OccupazioneProiezione;
+import it.uniroma2.dicii.claupiscu.model.dao.ConnectionPool;
+import it.uniroma2.dicii.claupiscu.model.dao.PooledConnection;
+import it.uniroma2.dicii.claupiscu.model.dao.PostoDao;
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione.StatoPrenotazione;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caricamento completo della mappa di una sala da 240 posti (12 file da 20, meta' occupati):
+ * una riga per posto da vista_posti_disponibili contro PostoDao, che con il layout nel registro
+ * legge solo le maschere per fila dei posti occupati. In setup stampa i byte inviati dal server
+ * per lettura.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class CaricamentoMappaBenchmark {
+    private static final int FILE = 12;
+    private static final int POSTI_PER_FILA = 20;
+    private static final String SELECT_VISTA =
+            "SELECT fila, num_posto, stato_posto FROM vista_posti_disponibili WHERE id_proiezione = ?";
+
+    private ConnectionPool pool;
+    private PostoDao dao;
+    private int idProiezione;
+    private OccupazioneProiezione modello;
+
+    @Setup
+    public void setup() throws SQLException {
+        pool = FixtureDatabase.creaPool(4);
+        idProiezione = FixtureDatabase.creaProiezione(pool, FILE, POSTI_PER_FILA);
+        try (PooledConnection conn = pool.getConnection(); Statement st = conn.getConnection().createStatement()) {
+            // posti alterni occupati senza passare dalle procedure: basta la riga in posto_occupato
+            st.executeUpdate("INSERT INTO posto_occupato (id_proiezione, num_sala, fila, num_posto, codice_prenotazione) " +
+                    "SELECT pr.id_proiezione, p.num_sala, p.fila, p.num_posto, CONCAT('BENCH', p.fila, p.num_posto) " +
+                    "FROM proiezione pr JOIN posto p ON p.num_sala = pr.num_sala " +
+                    "WHERE pr.id_proiezione = " + idProiezione + " AND (ASCII(p.fila) + p.num_posto) % 2 = 0");
+        }
+        dao = new PostoDao(pool, CacheOccupazione.getInstance());
+        dao.caricaLayout();
+        modello = dao.getOccupazione(idProiezione);
+        stampaByteInviati();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        CacheOccupazione.getInstance().rimuovi(idProiezione);
+        FixtureDatabase.rimuoviProiezione(pool, idProiezione);
+        pool.chiudi();
+    }
+
+    @Benchmark
+    public OccupazioneProiezione vistaPostiDisponibili() throws SQLException {
+        OccupazioneProiezione occupazione = new OccupazioneProiezione(idProiezione, modello.getLayout());
+        long adesso = System.currentTimeMillis();
+        try (PooledConnection conn = pool.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(SELECT_VISTA);
+            ps.setInt(1, idProiezione);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if ("OCCUPATO".equals(rs.getString(3))) {
+                        occupazione.applica(rs.getString(1).charAt(0), rs.getInt(2), StatoPrenotazione.CONFERMATA, 0, adesso);
+                    }
+                }
+            }
+        }
+        return occupazione;
+    }
+
+    @Benchmark
+    public OccupazioneProiezione mappaPerFila() {
+        CacheOccupazione.getInstance().rimuovi(idProiezione);
+        return dao.getOccupazione(idProiezione);
+    }
+
+    private void stampaByteInviati() throws SQLException {
+        long vista = byteInviati(this::vistaPostiDisponibili);
+        long mappa = byteInviati(this::mappaPerFila);
+        System.out.printf("%nByte inviati dal server per lettura: vista %d, maschere per fila %d (occupati %d/%d, uguali: %b)%n",
+                vista, mappa, modello.getPostiOccupati(), FILE * POSTI_PER_FILA,
+                vistaPostiDisponibili().getPostiOccupati() == mappaPerFila().getPostiOccupati());
+    }
+
+    // Bytes_sent globale prima e dopo la lettura: il benchmark e' l'unico client in quel momento
+    private long byteInviati(Lettura lettura) throws SQLException {
+        long prima = bytesSent();
+        lettura.esegui();
+        return bytesSent() - prima;
+    }
+
+    private long bytesSent() throws SQLException {
+        try (PooledConnection conn = pool.getConnection(); Statement st = conn.getConnection().createStatement();
+             ResultSet rs = st.executeQuery("SHOW GLOBAL STATUS LIKE 'Bytes_sent'")) {
+            rs.next();
+            return rs.getLong(2);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Lettura {
+        Object esegui() throws SQLException;
+    }
+}
@@ -0,0 +1,97 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import it.uniroma2.dicii.claupiscu.model.dao.ConnectionPool;
+import it.uniroma2.dicii.claupiscu.model.dao.LockPostiLocale;
+import it.uniroma2.dicii.claupiscu.model.dao.PrenotazioneDao;
+import it.uniroma2.dicii.claupiscu.model.domain.RisultatoPrenotazione;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ciclo completo prenotazione temporanea -> conferma, come da PrenotazioneController, senza
+ * contesa: ogni thread lavora su posti suoi. Dopo la conferma il posto viene liberato per il
+ * giro successivo (non fa parte della misura del ciclo ma del tempo per operazione).
+ * Senza -Ddb.url gira su un MariaDB embedded caricato da claudb.sql.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(8)
+public class CicloPrenotazioneBenchmark {
+    private static final int FILE = 15;
+    private static final int POSTI_PER_FILA = 17;
+    private static final int THREAD = 8;
+
+    private ConnectionPool pool;
+    private PrenotazioneDao dao;
+    private short idProiezione;
+    private final AtomicInteger prossimoThread = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class PostiDelThread {
+        private int primo;
+        private int quanti;
+        private int prossimo;
+        private long ticket;
+
+        @Setup
+        public void setup(CicloPrenotazioneBenchmark benchmark) {
+            int t = benchmark.prossimoThread.getAndIncrement() % THREAD;
+            int perThread = FILE * POSTI_PER_FILA / THREAD;
+            primo = t * perThread;
+            quanti = perThread;
+        }
+
+        int prossimoPosto() {
+            int posto = primo + prossimo;
+            prossimo = (prossimo + 1) % quanti;
+            return posto;
+        }
+    }
+
+    @Setup
+    public void setup() throws SQLException {
+        pool = FixtureDatabase.creaPool(THREAD * 2);
+        idProiezione = (short) FixtureDatabase.creaProiezione(pool, FILE, POSTI_PER_FILA);
+        dao = new PrenotazioneDao(pool, new LockPostiLocale(64, TimeUnit.MINUTES.toNanos(10), ""));
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        FixtureDatabase.rimuoviProiezione(pool, Short.toUnsignedInt(idProiezione));
+        pool.chiudi();
+    }
+
+    @Benchmark
+    public boolean prenotaEConferma(PostiDelThread posti) throws SQLException {
+        int i = posti.prossimoPosto();
+        char fila = (char) ('A' + i / POSTI_PER_FILA);
+        byte numPosto = (byte) (i % POSTI_PER_FILA + 1);
+
+        RisultatoPrenotazione risultato = dao.creaPrenotazioneTemporanea(idProiezione, fila, numPosto);
+        if (!risultato.isSuccesso()) {
+            throw new IllegalStateException("Posto " + fila + numPosto + " non prenotato: " + risultato.getMessaggio());
+        }
+        boolean confermata = dao.confermaPrenotazione(risultato.getCodicePrenotazione(),
+                "BENCH-" + Thread.currentThread().threadId() + "-" + posti.ticket++);
+        FixtureDatabase.liberaPosto(pool, risultato.getCodicePrenotazione());
+        return confermata;
+    }
+}
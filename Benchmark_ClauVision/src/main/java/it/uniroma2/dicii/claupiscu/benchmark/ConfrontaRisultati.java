@@ -0,0 +1,77 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Confronta due file JSON di risultati JMH (es. release precedente e attuale):
+ * java -cp benchmarks.jar it.uniroma2.dicii.claupiscu.benchmark.ConfrontaRisultati base.json nuovo.json [soglia%]
+ * Stampa la variazione di ogni benchmark (a parita' di parametri) e termina con codice 1 se
+ * almeno uno peggiora oltre la soglia (predefinita 10%).
+ */
+public final class ConfrontaRisultati {
+    private ConfrontaRisultati() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: ConfrontaRisultati <base.json> <nuovo.json> [soglia%]");
+            System.exit(2);
+        }
+        double soglia = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, JsonNode> base = leggi(new File(args[0]));
+        Map<String, JsonNode> nuovo = leggi(new File(args[1]));
+
+        int regressioni = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Base", "Nuovo", "Delta");
+        for (Map.Entry<String, JsonNode> voce : nuovo.entrySet()) {
+            JsonNode risultatoBase = base.get(voce.getKey());
+            JsonNode metrica = voce.getValue().get("primaryMetric");
+            if (risultatoBase == null) {
+                System.out.printf("%-90s %14s %14.3f %9s%n", voce.getKey(), "-", metrica.get("score").asDouble(), "nuovo");
+                continue;
+            }
+            double prima = risultatoBase.get("primaryMetric").get("score").asDouble();
+            double dopo = metrica.get("score").asDouble();
+            double delta = prima == 0 ? 0 : (dopo - prima) / prima * 100;
+            // in throughput piu' alto e' meglio, negli altri modi (tempi) piu' basso e' meglio
+            boolean throughput = "thrpt".equals(voce.getValue().get("mode").asText());
+            double peggioramento = throughput ? -delta : delta;
+            boolean regressione = peggioramento > soglia;
+            if (regressione) {
+                regressioni++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%%s%n", voce.getKey(), prima, dopo, delta,
+                    regressione ? "  REGRESSIONE" : "");
+        }
+        System.out.printf("%nUnita': %s. Regressioni oltre il %.1f%%: %d%n",
+                nuovo.isEmpty() ? "-" : nuovo.values().iterator().next().get("primaryMetric").get("scoreUnit").asText(),
+                soglia, regressioni);
+        System.exit(regressioni > 0 ? 1 : 0);
+    }
+
+    // benchmark + modo + parametri -> risultato
+    private static Map<String, JsonNode> leggi(File file) throws IOException {
+        Map<String, JsonNode> risultati = new LinkedHashMap<>();
+        for (JsonNode risultato : new ObjectMapper().readTree(file)) {
+            StringBuilder chiave = new StringBuilder(risultato.get("benchmark").asText()
+                    .replace("it.uniroma2.dicii.claupiscu.benchmark.", ""));
+            chiave.append(" [").append(risultato.get("mode").asText()).append(']');
+            JsonNode parametri = risultato.get("params");
+            if (parametri != null) {
+                Iterator<Map.Entry<String, JsonNode>> it = parametri.fields();
+                while (it.hasNext()) {
+                    Map.Entry<String, JsonNode> p = it.next();
+                    chiave.append(' ').append(p.getKey()).append('=').append(p.getValue().asText());
+                }
+            }
+            risultati.put(chiave.toString(), risultato);
+        }
+        return risultati;
+    }
+}
@@ -0,0 +1,83 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * MariaDB embedded (MariaDB4j) con lo schema di claudb.sql, per eseguire i benchmark sul
+ * database senza un server installato. Si avvia una sola volta per JVM (quindi per fork JMH)
+ * e viene fermato dallo shutdown hook di MariaDB4j.
+ */
+final class DatabaseEmbedded {
+    // deve corrispondere alla versione di mariaDB4j-db-linux64 nel pom
+    private static final String VERSIONE_MARIADB = "mariadb-11.4.5";
+
+    private static DB db;
+    private static String url;
+
+    private DatabaseEmbedded() {}
+
+    // URL JDBC di claudb sull'istanza embedded, avviata al primo utilizzo
+    static synchronized String avvia() {
+        if (url != null) {
+            return url;
+        }
+        try {
+            DBConfigurationBuilder configurazione = DBConfigurationBuilder.newBuilder();
+            configurazione.setPort(0); // porta libera scelta da MariaDB4j
+            configurazione.setDatabaseVersion(VERSIONE_MARIADB);
+            if ("root".equals(System.getProperty("user.name"))) {
+                // mariadbd rifiuta di partire come root senza --user esplicito (container, CI)
+                configurazione.addArg("--user=root");
+            }
+            db = DB.newEmbeddedDB(configurazione.build());
+            db.start();
+            // con --skip-grant-tables gli EVENT non si possono creare: force salta quelle
+            // istruzioni (i benchmark non dipendono dalla pulizia programmata)
+            try (InputStream schema = apriSchema()) {
+                db.run(new String(schema.readAllBytes(), StandardCharsets.UTF_8), "root", null, null, true);
+            }
+            url = "jdbc:mariadb://localhost:" + db.getConfiguration().getPort() + "/claudb";
+            return url;
+        } catch (ManagedProcessException e) {
+            throw new IllegalStateException("Avvio del database embedded fallito", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Per i programmi senza System.exit: i thread di MariaDB4j terrebbero viva la JVM
+    static synchronized void ferma() {
+        if (db == null) {
+            return;
+        }
+        try {
+            db.stop();
+        } catch (ManagedProcessException e) {
+            System.err.println("Arresto del database embedded fallito: " + e.getMessage());
+        }
+        db = null;
+        url = null;
+    }
+
+    // claudb.sql e' incluso nel jar dei benchmark; -Dclaudb.sql=... permette di usarne un altro
+    private static InputStream apriSchema() throws IOException {
+        String percorso = System.getProperty("claudb.sql");
+        if (percorso != null) {
+            return Files.newInputStream(Path.of(percorso));
+        }
+        InputStream schema = DatabaseEmbedded.class.getResourceAsStream("/claudb.sql");
+        if (schema == null) {
+            throw new IOException("claudb.sql non trovato nel classpath");
+        }
+        return schema;
+    }
+}
@@ -0,0 +1,123 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import it.uniroma2.dicii.claupiscu.model.cache.LayoutSala;
+import it.uniroma2.dicii.claupiscu.model.cache.MappaPosti;
+import it.uniroma2.dicii.claupiscu.model.cache.OccupazioneProiezione;
+import it.uniroma2.dicii.claupiscu.model.dao.PostoDao;
+import it.uniroma2.dicii.claupiscu.model.domain.Film;
+import it.uniroma2.dicii.claupiscu.model.domain.Posto;
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione;
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione.StatoPrenotazione;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Oggetti di dominio usati a ogni schermata: costruzione, formattazione, cast JSON e mappa dei posti
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class DominioBenchmark {
+    private static final int FILE = 15;
+    private static final int POSTI_PER_FILA = 17;
+
+    private int contatore;
+    private String cast;
+    private List<Film.Attore> attori;
+    private OccupazioneProiezione occupazione;
+
+    @Setup
+    public void setup() {
+        Film film = new Film();
+        film.setAttori(List.of(new Film.Attore(1, "Timothée Chalamet"), new Film.Attore(2, "Zendaya"),
+                new Film.Attore(3, "Rebecca Ferguson"), new Film.Attore(4, "Oscar Isaac"),
+                new Film.Attore(5, "Josh Brolin"), new Film.Attore(6, "Javier Bardem")));
+        cast = film.getCastAttori();
+        attori = film.getAttori();
+
+        // sala da 255 posti occupata per meta'
+        char[] file = new char[FILE * POSTI_PER_FILA];
+        int[] posti = new int[file.length];
+        for (int i = 0; i < file.length; i++) {
+            file[i] = (char) ('A' + i / POSTI_PER_FILA);
+            posti[i] = i % POSTI_PER_FILA + 1;
+        }
+        occupazione = new OccupazioneProiezione(1, new LayoutSala((byte) 1, file.length, file, posti));
+        Random random = new Random(42);
+        for (int i = 0; i < file.length; i++) {
+            if (random.nextBoolean()) {
+                occupazione.applica(file[i], posti[i], StatoPrenotazione.CONFERMATA, 0, 0);
+            }
+        }
+    }
+
+    @Benchmark
+    public String postoCodiceCompleto() {
+        int i = contatore++ & 0xFF;
+        Posto posto = new Posto((byte) 1, (char) ('A' + i % FILE), (byte) (i % POSTI_PER_FILA + 1));
+        return posto.getCodiceCompleto();
+    }
+
+    @Benchmark
+    public String prenotazioneCodicePosto() {
+        int i = contatore++ & 0xFF;
+        Prenotazione prenotazione = new Prenotazione("RES2026100001A01123", (short) 1, (byte) 1,
+                (char) ('A' + i % FILE), (byte) (i % POSTI_PER_FILA + 1));
+        return prenotazione.getCodicePosto();
+    }
+
+    @Benchmark
+    public List<Film.Attore> deserializzaCast() {
+        Film film = new Film();
+        film.setCastAttori(cast);
+        return film.getAttori();
+    }
+
+    @Benchmark
+    public String serializzaCast() {
+        Film film = new Film();
+        film.setAttori(attori);
+        return film.getCastAttori();
+    }
+
+    // Confronto di due mappe della sala: indice per chiave dei posti e una ricerca per posto
+    @Benchmark
+    public int indicizzaPostiPerChiave() {
+        Map<Character, List<Posto>> postiPerFila = PostoDao.raggruppaPerFila(occupazione);
+        MappaPosti<Posto> perChiave = new MappaPosti<>(FILE * POSTI_PER_FILA);
+        for (List<Posto> fila : postiPerFila.values()) {
+            for (Posto posto : fila) {
+                perChiave.put(posto.getChiave(), posto);
+            }
+        }
+        int uguali = 0;
+        for (List<Posto> fila : postiPerFila.values()) {
+            for (Posto posto : fila) {
+                if (perChiave.get(posto.getChiave()).getStato() == posto.getStato()) {
+                    uguali++;
+                }
+            }
+        }
+        return uguali;
+    }
+
+    // Come getPostiRaggruppatiPerFila, senza il refresh dal database
+    @Benchmark
+    public Map<Character, List<Posto>> raggruppaPerFila() {
+        return PostoDao.raggruppaPerFila(occupazione);
+    }
+}
@@ -0,0 +1,46 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Main del jar dei benchmark: accetta le stesse opzioni di JMH ma, se non si sceglie un altro
+ * formato con -rf/-rff, salva i risultati in JSON in risultati/benchmark-&lt;data&gt;.json,
+ * confrontabili tra due versioni con {@link ConfrontaRisultati}.
+ */
+public final class EseguiBenchmark {
+    private EseguiBenchmark() {}
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions opzioni = new CommandLineOptions(args);
+        if (opzioni.shouldHelp() || opzioni.shouldList() || opzioni.shouldListWithParams()
+                || opzioni.shouldListProfilers() || opzioni.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(opzioni);
+        if (opzioni.getResultFormat().hasValue() || opzioni.getResult().hasValue()) {
+            new Runner(builder.build()).run();
+            return;
+        }
+        Path cartella = Path.of("risultati");
+        Files.createDirectories(cartella);
+        Path file = cartella.resolve("benchmark-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        builder.resultFormat(ResultFormatType.JSON).result(file.toString());
+        new Runner(builder.build()).run();
+        System.out.println("Risultati salvati in " + file.toAbsolutePath());
+    }
+}
@@ -0,0 +1,82 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import it.uniroma2.dicii.claupiscu.model.dao.ConnectionPool;
+import it.uniroma2.dicii.claupiscu.model.dao.PooledConnection;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Sala, film e proiezione dedicati ai benchmark su claudb, rimossi a fine trial
+final class FixtureDatabase {
+    static final String TITOLO_FILM = "Benchmark ClauVision";
+
+    private FixtureDatabase() {}
+
+    // Crea una sala di file x postiPerFila posti e una proiezione che inizia tra un'ora
+    static int creaProiezione(ConnectionPool pool, int file, int postiPerFila) throws SQLException {
+        try (PooledConnection conn = pool.getConnection(); Statement st = conn.getConnection().createStatement()) {
+            st.executeUpdate("INSERT INTO sala (nome_sala, capacita) VALUES ('Sala benchmark', " + file * postiPerFila + ")",
+                    Statement.RETURN_GENERATED_KEYS);
+            int numSala = chiaveGenerata(st);
+            try (PreparedStatement ps = conn.getConnection().prepareStatement(
+                    "INSERT INTO posto (num_sala, fila, num_posto) VALUES (?, ?, ?)")) {
+                for (int f = 0; f < file; f++) {
+                    for (int n = 1; n <= postiPerFila; n++) {
+                        ps.setInt(1, numSala);
+                        ps.setString(2, String.valueOf((char) ('A' + f)));
+                        ps.setInt(3, n);
+                        ps.addBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            st.executeUpdate("INSERT IGNORE INTO film (titolo_film, durata_minuti, casa_cinematografica, cast_attori) " +
+                    "VALUES ('" + TITOLO_FILM + "', 120, 'ClauVision', '[]')");
+            st.executeUpdate("INSERT INTO proiezione (titolo_film, num_sala, prezzo, data_ora_inizio, data_ora_fine) " +
+                    "VALUES ('" + TITOLO_FILM + "', " + numSala + ", 8.50, NOW() + INTERVAL 1 HOUR, NOW() + INTERVAL 3 HOUR)",
+                    Statement.RETURN_GENERATED_KEYS);
+            return chiaveGenerata(st);
+        }
+    }
+
+    static void rimuoviProiezione(ConnectionPool pool, int idProiezione) throws SQLException {
+        try (PooledConnection conn = pool.getConnection(); Statement st = conn.getConnection().createStatement()) {
+            st.executeUpdate("DELETE FROM posto_occupato WHERE id_proiezione = " + idProiezione);
+            st.executeUpdate("DELETE FROM prenotazione WHERE id_proiezione = " + idProiezione);
+            st.executeUpdate("DELETE FROM log_operazioni WHERE id_proiezione = " + idProiezione);
+            st.executeUpdate("DELETE s FROM sala s JOIN proiezione p ON p.num_sala = s.num_sala " +
+                    "WHERE p.id_proiezione = " + idProiezione);
+        }
+    }
+
+    // Riporta il posto libero senza lasciare righe ANNULLATA a ogni giro
+    static void liberaPosto(ConnectionPool pool, String codicePrenotazione) throws SQLException {
+        try (PooledConnection conn = pool.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement("DELETE FROM posto_occupato WHERE codice_prenotazione = ?");
+            ps.setString(1, codicePrenotazione);
+            ps.executeUpdate();
+            ps = conn.prepareStatement("DELETE FROM prenotazione WHERE codice_prenotazione = ?");
+            ps.setString(1, codicePrenotazione);
+            ps.executeUpdate();
+        }
+    }
+
+    // Senza -Ddb.url si usa un MariaDB embedded caricato da claudb.sql
+    static ConnectionPool creaPool(int dimensione) {
+        String url = System.getProperty("db.url");
+        return new ConnectionPool(
+                url != null ? url : DatabaseEmbedded.avvia(),
+                System.getProperty("db.user", "root"),
+                System.getProperty("db.password", ""),
+                dimensione, 10_000, 30_000, 32);
+    }
+
+    private static int chiaveGenerata(Statement st) throws SQLException {
+        try (ResultSet rs = st.getGeneratedKeys()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
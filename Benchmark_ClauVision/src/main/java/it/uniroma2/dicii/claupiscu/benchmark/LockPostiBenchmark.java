@@ -0,0 +1,46 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import it.uniroma2.dicii.claupiscu.model.dao.LockPostiLocale;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Costo del solo lock in memoria: acquisizione + rilascio su pochi posti molto contesi
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(16)
+public class LockPostiBenchmark {
+    @Param({"8", "255"})
+    int postiContesi;
+
+    private LockPostiLocale lock;
+
+    @Setup
+    public void setup() {
+        lock = new LockPostiLocale(64, TimeUnit.MINUTES.toNanos(10), "*");
+    }
+
+    @Benchmark
+    public boolean acquisisciRilascia() {
+        int i = ThreadLocalRandom.current().nextInt(postiContesi);
+        int chiave = LockPostiLocale.chiave(1, (char) ('A' + i / 16), i % 16 + 1);
+        long token = lock.acquisisci(chiave);
+        return token != 0 && lock.rilascia(chiave, token);
+    }
+}
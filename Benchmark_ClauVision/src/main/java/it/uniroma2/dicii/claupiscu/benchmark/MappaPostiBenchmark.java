@@ -0,0 +1,118 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import it.uniroma2.dicii.claupiscu.model.cache.LayoutSala;
+import it.uniroma2.dicii.claupiscu.model.cache.OccupazioneProiezione;
+import it.uniroma2.dicii.claupiscu.model.dao.PostoDao;
+import it.uniroma2.dicii.claupiscu.model.domain.Posto;
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione.StatoPrenotazione;
+import it.uniroma2.dicii.claupiscu.view.DisegnoMappaPosti;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Mappa dei posti di una sala da 255 posti occupata per meta': disegno completo e aggiornamento di un posto
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class MappaPostiBenchmark {
+    private static final int FILE = 15;
+    private static final int POSTI_PER_FILA = 17;
+
+    private Map<Character, List<Posto>> postiPerFila;
+    private final DisegnoMappaPosti mappa = new DisegnoMappaPosti();
+    private final StringBuilder sb = new StringBuilder(16384);
+    private final PrintStream out = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+    private int contatore;
+
+    @Setup
+    public void setup() {
+        char[] file = new char[FILE * POSTI_PER_FILA];
+        int[] posti = new int[file.length];
+        for (int i = 0; i < file.length; i++) {
+            file[i] = (char) ('A' + i / POSTI_PER_FILA);
+            posti[i] = i % POSTI_PER_FILA + 1;
+        }
+        OccupazioneProiezione occupazione = new OccupazioneProiezione(1, new LayoutSala((byte) 1, file.length, file, posti));
+        Random random = new Random(42);
+        for (int i = 0; i < file.length; i++) {
+            if (random.nextBoolean()) {
+                occupazione.applica(file[i], posti[i], StatoPrenotazione.CONFERMATA, 0, 0);
+            }
+        }
+        postiPerFila = PostoDao.raggruppaPerFila(occupazione);
+        sb.setLength(0);
+        mappa.disegna(sb, postiPerFila);
+    }
+
+    // Il disegno precedente: stream ordinati e un printf per posto
+    @Benchmark
+    public PrintStream disegnoConPrintf() {
+        out.println("\n                           🎬 SCHERMO 🎬");
+        out.println("    ┌─────────────────────────────────────────────────────┐");
+        postiPerFila.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    out.printf(" %c  │ ", entry.getKey());
+                    entry.getValue().stream()
+                            .sorted((p1, p2) -> Integer.compare(p1.getNumPostoInt(), p2.getNumPostoInt()))
+                            .forEach(posto -> {
+                                switch (posto.getStato()) {
+                                    case DISPONIBILE:
+                                        out.printf("%2d ", posto.getNumPostoInt());
+                                        break;
+                                    case OCCUPATO:
+                                        out.print("██ ");
+                                        break;
+                                    case SELEZIONATO:
+                                        out.printf("[%d]", posto.getNumPostoInt());
+                                        break;
+                                }
+                            });
+                    out.println(" │");
+                });
+        out.println("    └─────────────────────────────────────────────────────┘");
+        out.println("    Legenda: [N] = Disponibile, ██ = Occupato");
+        out.flush();
+        return out;
+    }
+
+    @Benchmark
+    public PrintStream disegnoCompleto() {
+        sb.setLength(0);
+        mappa.disegna(sb, postiPerFila);
+        out.append(sb);
+        out.flush();
+        return out;
+    }
+
+    // Un posto cambia stato: si scrive solo la sua cella
+    @Benchmark
+    public PrintStream aggiornaUnPosto() {
+        int i = contatore++ % (FILE * POSTI_PER_FILA);
+        Posto posto = postiPerFila.get((char) ('A' + i / POSTI_PER_FILA)).get(i % POSTI_PER_FILA);
+        posto.setStato(posto.isDisponibile() ? Posto.StatoPosto.OCCUPATO : Posto.StatoPosto.DISPONIBILE);
+        sb.setLength(0);
+        mappa.aggiorna(sb, postiPerFila, 7);
+        out.append(sb);
+        out.flush();
+        return out;
+    }
+}
@@ -0,0 +1,193 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import it.uniroma2.dicii.claupiscu.model.dao.ConnectionPool;
+import it.uniroma2.dicii.claupiscu.model.dao.GeneratoreCodici;
+import it.uniroma2.dicii.claupiscu.model.dao.PooledConnection;
+import it.uniroma2.dicii.claupiscu.model.domain.RisultatoPrenotazione;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gara sullo stesso posto a livello di procedura, senza lock in memoria: CreaPrenotazioneTemporanea
+ * con il singolo insert su posto_occupato (POSTO_OCCUPATO) contro la procedura precedente, ricreata
+ * qui con la sua tabella di lock: insert su distributed_locks, COUNT(*) delle prenotazioni attive
+ * del posto, verifica del posto e insert (PRECEDENTE). Ogni prenotazione riuscita viene subito
+ * cancellata per rimettere il posto in gara.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(16)
+public class OccupazionePostoBenchmark {
+    private static final int POSTI_PER_FILA = 10;
+    private static final String CALL_CREA = "{call CreaPrenotazioneTemporanea(?, ?, ?, ?, ?)}";
+    private static final String CALL_PRECEDENTE = "{call BenchmarkCreaPrecedente(?, ?, ?, ?, ?)}";
+
+    private static final String TABELLA_PRECEDENTE =
+            "CREATE TABLE IF NOT EXISTS benchmark_distributed_locks (" +
+            "    lock_name VARCHAR(100) NOT NULL PRIMARY KEY," +
+            "    acquired_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+            "    expires_at TIMESTAMP NOT NULL," +
+            "    session_id VARCHAR(50) NOT NULL" +
+            ") ENGINE=InnoDB";
+    // Come CreaPrenotazioneTemporanea prima di posto_occupato, con il codice passato dal client
+    private static final String PROCEDURA_PRECEDENTE =
+            "CREATE PROCEDURE BenchmarkCreaPrecedente(IN p_id_proiezione SMALLINT UNSIGNED, IN p_fila CHAR(1), " +
+            "    IN p_num_posto TINYINT UNSIGNED, IN p_codice_prenotazione VARCHAR(20), OUT p_risultato INT) " +
+            "proc_exit: BEGIN " +
+            "    DECLARE v_num_sala TINYINT UNSIGNED; " +
+            "    DECLARE v_prezzo DECIMAL(5,2); " +
+            "    DECLARE v_lock_name VARCHAR(100); " +
+            "    DECLARE v_session_id VARCHAR(50) DEFAULT CONCAT(CONNECTION_ID(), '_', UNIX_TIMESTAMP(), '_', RAND()); " +
+            "    DECLARE v_count_existing INT DEFAULT 0; " +
+            "    DECLARE EXIT HANDLER FOR SQLEXCEPTION BEGIN ROLLBACK; SET p_risultato = -2; END; " +
+            "    START TRANSACTION; " +
+            "    SELECT num_sala, prezzo INTO v_num_sala, v_prezzo FROM proiezione " +
+            "    WHERE id_proiezione = p_id_proiezione AND data_ora_inizio > NOW() AND stato_proiezione = 'PROGRAMMATA'; " +
+            "    IF v_num_sala IS NULL THEN SET p_risultato = -1; ROLLBACK; LEAVE proc_exit; END IF; " +
+            "    SET v_lock_name = CONCAT('seat_', p_id_proiezione, '_', v_num_sala, '_', p_fila, '_', p_num_posto); " +
+            "    INSERT INTO benchmark_distributed_locks (lock_name, expires_at, session_id) " +
+            "    VALUES (v_lock_name, DATE_ADD(NOW(), INTERVAL 15 MINUTE), v_session_id) " +
+            "    ON DUPLICATE KEY UPDATE lock_name = lock_name; " +
+            "    IF ROW_COUNT() = 0 THEN SET p_risultato = 0; ROLLBACK; LEAVE proc_exit; END IF; " +
+            "    SELECT COUNT(*) INTO v_count_existing FROM prenotazione " +
+            "    WHERE id_proiezione = p_id_proiezione AND num_sala = v_num_sala AND fila = p_fila " +
+            "      AND num_posto = p_num_posto AND stato_prenotazione IN ('TEMPORANEA', 'CONFERMATA'); " +
+            "    IF v_count_existing > 0 THEN SET p_risultato = 0; ROLLBACK; LEAVE proc_exit; END IF; " +
+            "    SELECT COUNT(*) INTO v_count_existing FROM posto " +
+            "    WHERE num_sala = v_num_sala AND fila = p_fila AND num_posto = p_num_posto; " +
+            "    IF v_count_existing = 0 THEN SET p_risultato = -1; ROLLBACK; LEAVE proc_exit; END IF; " +
+            "    INSERT INTO prenotazione (codice_prenotazione, id_proiezione, num_sala, fila, num_posto, " +
+            "        data_ora_prenotazione, stato_prenotazione, timestamp_creazione, timestamp_scadenza) " +
+            "    VALUES (p_codice_prenotazione, p_id_proiezione, v_num_sala, p_fila, p_num_posto, " +
+            "        NOW(), 'TEMPORANEA', NOW(), DATE_ADD(NOW(), INTERVAL 10 MINUTE)); " +
+            "    IF COALESCE(@audit_applicativo, FALSE) = FALSE THEN " +
+            "        INSERT INTO log_operazioni (operazione, codice_prenotazione, id_proiezione, dettagli) " +
+            "        VALUES ('PRENOTAZIONE_CREATA', p_codice_prenotazione, p_id_proiezione, " +
+            "                JSON_OBJECT('posto', CONCAT(p_fila, p_num_posto), 'prezzo', v_prezzo)); " +
+            "    END IF; " +
+            "    SET p_risultato = 1; " +
+            "    COMMIT; " +
+            "END";
+
+    @Param({"PRECEDENTE", "POSTO_OCCUPATO"})
+    String procedura;
+
+    @Param({"8"})
+    int postiContesi;
+
+    private ConnectionPool pool;
+    private final GeneratoreCodici codici = new GeneratoreCodici(GeneratoreCodici.NODI - 1, System::currentTimeMillis);
+    private int idProiezione;
+    private boolean precedente;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Esiti {
+        public long prenotati;
+        public long occupati;
+        public long errori;
+    }
+
+    @Setup
+    public void setup() throws SQLException {
+        pool = FixtureDatabase.creaPool(16);
+        idProiezione = FixtureDatabase.creaProiezione(pool, 4, POSTI_PER_FILA);
+        precedente = "PRECEDENTE".equals(procedura);
+        if (precedente) {
+            try (PooledConnection conn = pool.getConnection(); Statement st = conn.getConnection().createStatement()) {
+                st.executeUpdate(TABELLA_PRECEDENTE);
+                st.executeUpdate("DROP PROCEDURE IF EXISTS BenchmarkCreaPrecedente");
+                st.executeUpdate(PROCEDURA_PRECEDENTE);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        if (precedente) {
+            try (PooledConnection conn = pool.getConnection(); Statement st = conn.getConnection().createStatement()) {
+                st.executeUpdate("DROP PROCEDURE IF EXISTS BenchmarkCreaPrecedente");
+                st.executeUpdate("DROP TABLE IF EXISTS benchmark_distributed_locks");
+            }
+        }
+        FixtureDatabase.rimuoviProiezione(pool, idProiezione);
+        pool.chiudi();
+    }
+
+    @Benchmark
+    public void occupaPostoConteso(Esiti esiti) throws SQLException {
+        int i = ThreadLocalRandom.current().nextInt(postiContesi);
+        String fila = String.valueOf((char) ('A' + i / POSTI_PER_FILA));
+        int numPosto = i % POSTI_PER_FILA + 1;
+        String codice = codici.nuovoCodice();
+
+        int risultato;
+        try (PooledConnection conn = pool.getConnection()) {
+            CallableStatement cs = conn.prepareCall(precedente ? CALL_PRECEDENTE : CALL_CREA);
+            cs.setInt(1, idProiezione);
+            cs.setString(2, fila);
+            cs.setInt(3, numPosto);
+            cs.setString(4, codice);
+            if (!precedente) {
+                cs.registerOutParameter(4, Types.VARCHAR);
+            }
+            cs.registerOutParameter(5, Types.INTEGER);
+            cs.execute();
+            risultato = cs.getInt(5);
+        }
+        switch (risultato) {
+            case RisultatoPrenotazione.SUCCESSO:
+                esiti.prenotati++;
+                if (precedente) {
+                    liberaPostoPrecedente(codice);
+                } else {
+                    FixtureDatabase.liberaPosto(pool, codice);
+                }
+                break;
+            case RisultatoPrenotazione.POSTO_OCCUPATO:
+                esiti.occupati++;
+                break;
+            default:
+                esiti.errori++;
+                break;
+        }
+    }
+
+    private void liberaPostoPrecedente(String codice) throws SQLException {
+        try (PooledConnection conn = pool.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(
+                    "DELETE d FROM benchmark_distributed_locks d JOIN prenotazione p " +
+                    "ON d.lock_name = CONCAT('seat_', p.id_proiezione, '_', p.num_sala, '_', p.fila, '_', p.num_posto) " +
+                    "WHERE p.codice_prenotazione = ?");
+            ps.setString(1, codice);
+            ps.executeUpdate();
+            ps = conn.prepareStatement("DELETE FROM prenotazione WHERE codice_prenotazione = ?");
+            ps.setString(1, codice);
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import it.uniroma2.dicii.claupiscu.model.dao.ConnectionPool;
+import it.uniroma2.dicii.claupiscu.model.dao.LockPostiLocale;
+import it.uniroma2.dicii.claupiscu.model.dao.PrenotazioneDao;
+import it.uniroma2.dicii.claupiscu.model.domain.RisultatoPrenotazione;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prenotazioni temporanee al secondo su pochi posti contesi, con la gara decisa solo da
+ * posto_occupato (DB) e con il lock in memoria davanti (LOCALE). Richiede claudb raggiungibile
+ * su db.url; ogni prenotazione riuscita viene subito cancellata per rimettere il posto in gara.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(16)
+public class PrenotazioneTemporaneaBenchmark {
+    private static final int POSTI_PER_FILA = 10;
+
+    @Param({"DB", "LOCALE"})
+    String lock;
+
+    @Param({"8"})
+    int postiContesi;
+
+    private ConnectionPool pool;
+    private LockPostiLocale lockLocali;
+    private PrenotazioneDao dao;
+    private short idProiezione;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Esiti {
+        public long prenotati;
+        public long occupati;
+        public long errori;
+    }
+
+    @Setup
+    public void setup() throws SQLException {
+        pool = FixtureDatabase.creaPool(16);
+        idProiezione = (short) FixtureDatabase.creaProiezione(pool, 4, POSTI_PER_FILA);
+        lockLocali = new LockPostiLocale(64, TimeUnit.MINUTES.toNanos(10), "LOCALE".equals(lock) ? "*" : "");
+        dao = new PrenotazioneDao(pool, lockLocali);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        FixtureDatabase.rimuoviProiezione(pool, Short.toUnsignedInt(idProiezione));
+        pool.chiudi();
+    }
+
+    @Benchmark
+    public void prenotaPostoConteso(Esiti esiti) throws SQLException {
+        int i = ThreadLocalRandom.current().nextInt(postiContesi);
+        char fila = (char) ('A' + i / POSTI_PER_FILA);
+        byte numPosto = (byte) (i % POSTI_PER_FILA + 1);
+
+        RisultatoPrenotazione risultato = dao.creaPrenotazioneTemporanea(idProiezione, fila, numPosto);
+        switch (risultato.getCodiceRisultato()) {
+            case RisultatoPrenotazione.SUCCESSO:
+                esiti.prenotati++;
+                FixtureDatabase.liberaPosto(pool, risultato.getCodicePrenotazione());
+                lockLocali.rilasciaPrenotazione(risultato.getCodicePrenotazione());
+                break;
+            case RisultatoPrenotazione.POSTO_OCCUPATO:
+                esiti.occupati++;
+                break;
+            default:
+                esiti.errori++;
+                break;
+        }
+    }
+}
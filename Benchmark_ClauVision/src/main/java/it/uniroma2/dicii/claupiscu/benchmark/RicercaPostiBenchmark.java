@@ -0,0 +1,116 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import it.uniroma2.dicii.claupiscu.model.cache.LayoutSala;
+import it.uniroma2.dicii.claupiscu.model.cache.OccupazioneProiezione;
+import it.uniroma2.dicii.claupiscu.model.domain.Posto;
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione.StatoPrenotazione;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// Migliori N posti vicini in una sala da 255 posti (15 file da 17): indice delle run libere
+// contro la scansione della mappa fila -> posti usata dalla view
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class RicercaPostiBenchmark {
+    private static final int FILE = 15;
+    private static final int POSTI_PER_FILA = 17;
+
+    @Param({"4"})
+    int numeroPosti;
+
+    @Param({"0.5", "0.9"})
+    double riempimento;
+
+    private OccupazioneProiezione occupazione;
+    private Map<Character, List<Posto>> postiPerFila;
+    private int postoAlternato;
+
+    @Setup
+    public void setup() {
+        char[] file = new char[FILE * POSTI_PER_FILA];
+        int[] posti = new int[file.length];
+        for (int i = 0; i < file.length; i++) {
+            file[i] = (char) ('A' + i / POSTI_PER_FILA);
+            posti[i] = i % POSTI_PER_FILA + 1;
+        }
+        LayoutSala layout = new LayoutSala((byte) 1, file.length, file, posti);
+        occupazione = new OccupazioneProiezione(1, layout);
+        postiPerFila = new TreeMap<>();
+
+        Random random = new Random(42);
+        long adesso = System.currentTimeMillis();
+        for (int i = 0; i < file.length; i++) {
+            boolean occupato = random.nextDouble() < riempimento;
+            if (occupato) {
+                occupazione.applica(file[i], posti[i], StatoPrenotazione.CONFERMATA, 0, adesso);
+            }
+            Posto posto = new Posto((byte) 1, file[i], (byte) posti[i]);
+            posto.setStato(occupato ? Posto.StatoPosto.OCCUPATO : Posto.StatoPosto.DISPONIBILE);
+            postiPerFila.computeIfAbsent(file[i], f -> new ArrayList<>()).add(posto);
+        }
+        // posto dell'ultima fila da occupare/liberare a ogni invocazione di indiceRicostruito
+        postoAlternato = POSTI_PER_FILA;
+    }
+
+    // Indice gia' costruito: il caso tipico, tra due prenotazioni si fanno molte ricerche
+    @Benchmark
+    public int indice() {
+        return occupazione.getIndiceLiberi().cercaMigliori(numeroPosti);
+    }
+
+    // Occupazione appena cambiata: ricostruzione dell'indice + ricerca
+    @Benchmark
+    public int indiceRicostruito() {
+        char fila = (char) ('A' + FILE - 1);
+        StatoPrenotazione stato = occupazione.isOccupato(fila, postoAlternato)
+                ? StatoPrenotazione.ANNULLATA : StatoPrenotazione.CONFERMATA;
+        occupazione.applica(fila, postoAlternato, stato, 0, 0);
+        return occupazione.getIndiceLiberi().cercaMigliori(numeroPosti);
+    }
+
+    // Ogni finestra di N posti di ogni fila controllata con uno stream, con lo stesso punteggio
+    @Benchmark
+    public Posto scansioneLineare() {
+        int centroFile2 = postiPerFila.size() - 1;
+        Posto migliore = null;
+        long punteggioMigliore = Long.MAX_VALUE;
+        int r = 0;
+        for (List<Posto> fila : postiPerFila.values()) {
+            int centroFila2 = fila.get(0).getNumPostoInt() + fila.get(fila.size() - 1).getNumPostoInt();
+            for (int i = 0; i + numeroPosti <= fila.size(); i++) {
+                boolean liberi = fila.subList(i, i + numeroPosti).stream()
+                        .allMatch(p -> p.getStato() == Posto.StatoPosto.DISPONIBILE);
+                if (liberi) {
+                    long punteggio = Math.abs(2L * r - centroFile2)
+                            + Math.abs(2L * fila.get(i).getNumPostoInt() + numeroPosti - 1 - centroFila2);
+                    if (punteggio < punteggioMigliore) {
+                        punteggioMigliore = punteggio;
+                        migliore = fila.get(i);
+                    }
+                }
+            }
+            r++;
+        }
+        return migliore;
+    }
+}
@@ -0,0 +1,374 @@
+package it.uniroma2.dicii.claupiscu.benchmark;
+
+import it.uniroma2.dicii.claupiscu.exception.DAOException;
+import it.uniroma2.dicii.claupiscu.model.dao.ConnectionPool;
+import it.uniroma2.dicii.claupiscu.model.dao.LockPostiLocale;
+import it.uniroma2.dicii.claupiscu.model.dao.PooledConnection;
+import it.uniroma2.dicii.claupiscu.model.dao.PrenotazioneDao;
+import it.uniroma2.dicii.claupiscu.model.domain.RisultatoPrenotazione;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Prima da tutto esaurito: migliaia di clienti (uno per virtual thread) si contendono i posti
+ * di una sola proiezione attraverso PrenotazioneDao, come farebbero altrettante sessioni del
+ * client. Ogni cliente sceglie un posto libero secondo una distribuzione di preferenza, riprova
+ * su un altro posto se lo perde, poi conferma, annulla o abbandona la prenotazione temporanea.
+ *
+ * java -cp benchmarks.jar it.uniroma2.dicii.claupiscu.benchmark.SimulazionePrima [--opzione valore ...]
+ *   --clienti 5000 --file 15 --posti 17 --connessioni 32 --lock db|locale
+ *   --distribuzione centrale|uniforme|zipf --conferma 0.7 --annulla 0.2
+ *   --tentativi 3 --arriviMs 2000 --riflessioneMs 200 --scadenzaS 600
+ * I clienti che non confermano ne' annullano lasciano scadere la prenotazione: dopo --scadenzaS
+ * secondi (i 10 minuti di timestamp_scadenza) il posto torna libero nella mappa della simulazione,
+ * ma sul database solo quando passa la pulizia delle scadute, e fino ad allora risulta occupato.
+ * Senza -Ddb.url usa il MariaDB embedded, come i benchmark JMH.
+ * Termina con codice 1 se a fine simulazione un posto ha piu' di una prenotazione attiva.
+ */
+public final class SimulazionePrima {
+    private static final int LIBERO = 0;
+    private static final int TEMPORANEO = 1;
+    private static final int CONFERMATO = 2;
+
+    private final int clienti;
+    private final int file;
+    private final int postiPerFila;
+    private final boolean lockDb;
+    private final DistribuzionePosti distribuzione;
+    private final double probConferma;
+    private final double probAnnulla;
+    private final int tentativi;
+    private final long arriviMs;
+    private final long riflessioneMs;
+    private final long scadenzaNs;
+
+    private final PrenotazioneDao dao;
+    private final short idProiezione;
+    // solo per zipf: posti dal migliore al peggiore e probabilita' cumulate per rango
+    private final int[] ordinePerQualita;
+    private final double[] cumulataZipf;
+
+    // stato dei posti visto dalla simulazione, usato dai clienti come la mappa dei posti del client
+    private final AtomicIntegerArray stato;
+    // tentativi in corso e avviati per posto: servono a distinguere un conflitto da un posto gia' preso
+    private final AtomicIntegerArray inVolo;
+    private final AtomicIntegerArray avviati;
+    // System.nanoTime() a cui scade la temporanea abbandonata sul posto, 0 se nessuna
+    private final AtomicLongArray scadenzaAbbandonata;
+
+    private final IstogrammaLatenze latenzeCrea = new IstogrammaLatenze();
+    private final IstogrammaLatenze latenzeConferma = new IstogrammaLatenze();
+    private final IstogrammaLatenze latenzeAnnulla = new IstogrammaLatenze();
+    private final Map<String, AtomicLong> contatori = new HashMap<>();
+
+    enum DistribuzionePosti { UNIFORME, CENTRALE, ZIPF }
+
+    private SimulazionePrima(Map<String, String> opzioni, ConnectionPool pool) throws SQLException {
+        this.clienti = Integer.parseInt(opzioni.getOrDefault("clienti", "5000"));
+        this.file = Integer.parseInt(opzioni.getOrDefault("file", "15"));
+        this.postiPerFila = Integer.parseInt(opzioni.getOrDefault("posti", "17"));
+        this.lockDb = !"locale".equals(opzioni.getOrDefault("lock", "db"));
+        this.distribuzione = DistribuzionePosti.valueOf(opzioni.getOrDefault("distribuzione", "centrale").toUpperCase(Locale.ROOT));
+        this.probConferma = Double.parseDouble(opzioni.getOrDefault("conferma", "0.7"));
+        this.probAnnulla = Double.parseDouble(opzioni.getOrDefault("annulla", "0.2"));
+        this.tentativi = Integer.parseInt(opzioni.getOrDefault("tentativi", "3"));
+        this.arriviMs = Long.parseLong(opzioni.getOrDefault("arriviMs", "2000"));
+        this.riflessioneMs = Long.parseLong(opzioni.getOrDefault("riflessioneMs", "200"));
+        this.scadenzaNs = TimeUnit.SECONDS.toNanos(Long.parseLong(opzioni.getOrDefault("scadenzaS", "600")));
+        if (file < 1 || file > 26 || postiPerFila < 1 || postiPerFila > 255 || probConferma + probAnnulla > 1) {
+            throw new IllegalArgumentException("Parametri della simulazione non validi: " + opzioni);
+        }
+
+        this.idProiezione = (short) FixtureDatabase.creaProiezione(pool, file, postiPerFila);
+        // --lock db: nessuna proiezione locale, la gara si decide su posto_occupato come con piu' nodi
+        this.dao = new PrenotazioneDao(pool, new LockPostiLocale(64, TimeUnit.MINUTES.toNanos(15), lockDb ? "" : "*"));
+        int n = file * postiPerFila;
+        this.stato = new AtomicIntegerArray(n);
+        this.inVolo = new AtomicIntegerArray(n);
+        this.avviati = new AtomicIntegerArray(n);
+        this.scadenzaAbbandonata = new AtomicLongArray(n);
+        this.ordinePerQualita = distribuzione == DistribuzionePosti.ZIPF ? ordinaPerQualita() : null;
+        this.cumulataZipf = distribuzione == DistribuzionePosti.ZIPF ? cumulataZipf(n) : null;
+        for (String nome : new String[]{"successo", "occupato", "conflitto", "erroreProiezione", "erroreGenerico",
+                "eccezioni", "confermate", "confermeFallite", "annullate", "abbandonate", "esaurito", "rinunce"}) {
+            contatori.put(nome, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opzioni = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                System.err.println("Opzione non valida: " + args[i]);
+                System.exit(2);
+            }
+            opzioni.put(args[i].substring(2), args[i + 1]);
+        }
+        ConnectionPool pool = FixtureDatabase.creaPool(Integer.parseInt(opzioni.getOrDefault("connessioni", "32")));
+        long doppie;
+        try {
+            SimulazionePrima simulazione = new SimulazionePrima(opzioni, pool);
+            try {
+                doppie = simulazione.esegui(pool);
+            } finally {
+                FixtureDatabase.rimuoviProiezione(pool, Short.toUnsignedInt(simulazione.idProiezione));
+            }
+        } finally {
+            pool.chiudi();
+            DatabaseEmbedded.ferma();
+        }
+        if (doppie > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Restituisce il numero di posti con piu' prenotazioni attive
+    private long esegui(ConnectionPool pool) throws SQLException, InterruptedException {
+        System.out.printf("Proiezione %d: %d posti, %d clienti, lock %s, distribuzione %s, conferma %.0f%%, annulla %.0f%%%n",
+                Short.toUnsignedInt(idProiezione), stato.length(), clienti, lockDb ? "db" : "locale",
+                distribuzione.name().toLowerCase(Locale.ROOT), probConferma * 100, probAnnulla * 100);
+        long inizio = System.nanoTime();
+        try (ExecutorService esecutore = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clienti; c++) {
+                esecutore.submit(this::cliente);
+            }
+        }
+        double secondi = (System.nanoTime() - inizio) / 1e9;
+        stampaRiepilogo(secondi);
+        return verificaDoppiePrenotazioni(pool);
+    }
+
+    private void cliente() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            // arrivi distribuiti nella finestra di apertura delle vendite
+            Thread.sleep(arriviMs > 0 ? random.nextLong(arriviMs) : 0);
+            for (int t = 0; t < tentativi; t++) {
+                int posto = scegliPosto(random);
+                if (posto < 0) {
+                    incrementa("esaurito");
+                    return;
+                }
+                String codice = prenota(posto);
+                if (codice != null) {
+                    Thread.sleep(riflessioneMs > 0 ? random.nextLong(2 * riflessioneMs) : 0);
+                    concludi(posto, codice, random.nextDouble());
+                    return;
+                }
+            }
+            incrementa("rinunce");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (DAOException e) {
+            incrementa("eccezioni");
+        }
+    }
+
+    private String prenota(int posto) {
+        char fila = (char) ('A' + posto / postiPerFila);
+        byte numPosto = (byte) (posto % postiPerFila + 1);
+        int avviatiPrima = avviati.getAndIncrement(posto);
+        boolean sovrapposto = inVolo.getAndIncrement(posto) > 0;
+        RisultatoPrenotazione risultato;
+        try {
+            risultato = misura(latenzeCrea, () -> dao.creaPrenotazioneTemporanea(idProiezione, fila, numPosto));
+        } finally {
+            inVolo.decrementAndGet(posto);
+        }
+        // un altro cliente ha iniziato sullo stesso posto mentre questo tentativo era in corso
+        sovrapposto |= avviati.get(posto) - avviatiPrima > 1;
+
+        switch (risultato.getCodiceRisultato()) {
+            case RisultatoPrenotazione.SUCCESSO:
+                scadenzaAbbandonata.set(posto, 0);
+                stato.set(posto, TEMPORANEO);
+                incrementa("successo");
+                return risultato.getCodicePrenotazione();
+            case RisultatoPrenotazione.POSTO_OCCUPATO:
+                // perso contro un tentativo concorrente (lock o chiave primaria di posto_occupato), oppure mappa non aggiornata
+                incrementa(sovrapposto ? "conflitto" : "occupato");
+                return null;
+            case RisultatoPrenotazione.ERRORE_PROIEZIONE:
+                incrementa("erroreProiezione");
+                return null;
+            default:
+                incrementa("erroreGenerico");
+                return null;
+        }
+    }
+
+    private void concludi(int posto, String codice, double scelta) {
+        if (scelta < probConferma) {
+            String ticket = "SIM-" + Thread.currentThread().threadId() + "-" + posto;
+            if (misura(latenzeConferma, () -> dao.confermaPrenotazione(codice, ticket))) {
+                stato.set(posto, CONFERMATO);
+                incrementa("confermate");
+            } else {
+                incrementa("confermeFallite");
+            }
+        } else if (scelta < probConferma + probAnnulla) {
+            if (misura(latenzeAnnulla, () -> dao.annullaPrenotazione(codice))) {
+                stato.set(posto, LIBERO);
+                incrementa("annullate");
+            }
+        } else {
+            // la prenotazione resta TEMPORANEA fino alla scadenza
+            scadenzaAbbandonata.set(posto, Math.max(1, System.nanoTime() + scadenzaNs));
+            incrementa("abbandonate");
+        }
+    }
+
+    // Un posto libero secondo la mappa, estratto con la distribuzione di preferenza; -1 se non ce ne sono
+    private int scegliPosto(ThreadLocalRandom random) {
+        for (int i = 0; i < 64; i++) {
+            int posto = estrai(random);
+            if (isLibero(posto)) {
+                return posto;
+            }
+        }
+        // sala quasi piena: il primo libero a partire da un punto a caso
+        int n = stato.length();
+        int partenza = random.nextInt(n);
+        for (int i = 0; i < n; i++) {
+            int posto = (partenza + i) % n;
+            if (isLibero(posto)) {
+                return posto;
+            }
+        }
+        return -1;
+    }
+
+    // Le temporanee abbandonate tornano libere alla scadenza, come nella mappa dei posti del client
+    private boolean isLibero(int posto) {
+        int s = stato.get(posto);
+        if (s == TEMPORANEO) {
+            long scadenza = scadenzaAbbandonata.get(posto);
+            if (scadenza != 0 && System.nanoTime() - scadenza >= 0 && stato.compareAndSet(posto, TEMPORANEO, LIBERO)) {
+                scadenzaAbbandonata.compareAndSet(posto, scadenza, 0);
+                return true;
+            }
+        }
+        return s == LIBERO;
+    }
+
+    private int estrai(ThreadLocalRandom random) {
+        switch (distribuzione) {
+            case UNIFORME:
+                return random.nextInt(stato.length());
+            case ZIPF:
+                int i = Arrays.binarySearch(cumulataZipf, random.nextDouble());
+                return ordinePerQualita[Math.min(i < 0 ? -i - 1 : i, cumulataZipf.length - 1)];
+            default:
+                // gaussiana attorno al centro della sala, piu' stretta sui posti che sulle file
+                int fila = (int) Math.round((file - 1) / 2.0 + random.nextGaussian() * file / 4.0);
+                int numero = (int) Math.round((postiPerFila - 1) / 2.0 + random.nextGaussian() * postiPerFila / 5.0);
+                fila = Math.max(0, Math.min(file - 1, fila));
+                numero = Math.max(0, Math.min(postiPerFila - 1, numero));
+                return fila * postiPerFila + numero;
+        }
+    }
+
+    // stesso punteggio di IndicePostiLiberi: distanza (raddoppiata) dal centro della sala
+    private int[] ordinaPerQualita() {
+        Integer[] posti = new Integer[file * postiPerFila];
+        for (int i = 0; i < posti.length; i++) {
+            posti[i] = i;
+        }
+        Arrays.sort(posti, (a, b) -> Integer.compare(distanzaDalCentro(a), distanzaDalCentro(b)));
+        return Arrays.stream(posti).mapToInt(Integer::intValue).toArray();
+    }
+
+    private int distanzaDalCentro(int posto) {
+        return Math.abs(2 * (posto / postiPerFila) - (file - 1)) + Math.abs(2 * (posto % postiPerFila) - (postiPerFila - 1));
+    }
+
+    // zipf con esponente 1 sul rango di qualita': il posto k-esimo ha peso 1/k
+    private static double[] cumulataZipf(int n) {
+        double[] cumulata = new double[n];
+        double somma = 0;
+        for (int k = 0; k < cumulata.length; k++) {
+            somma += 1.0 / (k + 1);
+            cumulata[k] = somma;
+        }
+        for (int k = 0; k < cumulata.length; k++) {
+            cumulata[k] /= somma;
+        }
+        return cumulata;
+    }
+
+    private static <T> T misura(IstogrammaLatenze istogramma, Supplier<T> operazione) {
+        long inizio = System.nanoTime();
+        try {
+            return operazione.get();
+        } finally {
+            istogramma.registra(System.nanoTime() - inizio);
+        }
+    }
+
+    private void incrementa(String contatore) {
+        contatori.get(contatore).incrementAndGet();
+    }
+
+    private long conteggio(String contatore) {
+        return contatori.get(contatore).get();
+    }
+
+    private void stampaRiepilogo(double secondi) {
+        long chiamate = latenzeCrea.getConteggio() + latenzeConferma.getConteggio() + latenzeAnnulla.getConteggio();
+        System.out.printf("%nDurata %.2f s, %d chiamate, %.1f operazioni/s%n", secondi, chiamate, chiamate / secondi);
+        System.out.printf("%n%-28s %9s %9s %9s %9s %9s %9s%n", "Procedura", "chiamate", "op/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        stampaProcedura("CreaPrenotazioneTemporanea", latenzeCrea, secondi);
+        stampaProcedura("ConfermaPrenotazione", latenzeConferma, secondi);
+        stampaProcedura("AnnullaPrenotazione", latenzeAnnulla, secondi);
+
+        long tentativiTotali = latenzeCrea.getConteggio();
+        System.out.printf("%nEsiti di CreaPrenotazioneTemporanea su %d tentativi:%n", tentativiTotali);
+        stampaEsito("successo (1)", conteggio("successo"), tentativiTotali);
+        stampaEsito("posto occupato (0)", conteggio("occupato") + conteggio("conflitto"), tentativiTotali);
+        stampaEsito("  di cui conflitti di lock", conteggio("conflitto"), tentativiTotali);
+        stampaEsito("errore proiezione (-1)", conteggio("erroreProiezione"), tentativiTotali);
+        stampaEsito("errore generico (-2)", conteggio("erroreGenerico"), tentativiTotali);
+        System.out.printf("%nClienti: %d confermati, %d annullati, %d abbandonati, %d conferme fallite, "
+                        + "%d rinunce dopo %d tentativi, %d senza posti, %d eccezioni%n",
+                conteggio("confermate"), conteggio("annullate"), conteggio("abbandonate"), conteggio("confermeFallite"),
+                conteggio("rinunce"), tentativi, conteggio("esaurito"), conteggio("eccezioni"));
+    }
+
+    private static void stampaProcedura(String nome, IstogrammaLatenze istogramma, double secondi) {
+        System.out.printf("%-28s %9d %9.1f %9.3f %9.3f %9.3f %9.3f%n", nome, istogramma.getConteggio(),
+                istogramma.getConteggio() / secondi, istogramma.percentile(50) / 1e6, istogramma.percentile(99) / 1e6,
+                istogramma.percentile(99.9) / 1e6, istogramma.getMassimo() / 1e6);
+    }
+
+    private static void stampaEsito(String esito, long conteggio, long totale) {
+        System.out.printf("  %-28s %8d  %6.2f%%%n", esito, conteggio, totale == 0 ? 0 : conteggio * 100.0 / totale);
+    }
+
+    // L'invariante che i lock devono garantire: al piu' una prenotazione attiva per posto
+    private long verificaDoppiePrenotazioni(ConnectionPool pool) throws SQLException {
+        try (PooledConnection conn = pool.getConnection(); Statement st = conn.getConnection().createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM (SELECT fila, num_posto FROM prenotazione " +
+                     "WHERE id_proiezione = " + Short.toUnsignedInt(idProiezione) +
+                     " AND stato_prenotazione IN ('TEMPORANEA', 'CONFERMATA') " +
+                     "GROUP BY fila, num_posto HAVING COUNT(*) > 1) doppie")) {
+            rs.next();
+            long doppie = rs.getLong(1);
+            System.out.printf("%nPosti con piu' prenotazioni attive: %d%n", doppie);
+            return doppie;
+        }
+    }
+}
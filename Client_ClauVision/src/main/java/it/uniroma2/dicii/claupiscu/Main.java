@@ -1,11 +1,25 @@
 package it.uniroma2.dicii.claupiscu;
 
 import it.uniroma2.dicii.claupiscu.controller.ApplicationController;
+import it.uniroma2.dicii.claupiscu.controller.ServerSessioni;
+import it.uniroma2.dicii.claupiscu.model.dao.PostoDao;
+import it.uniroma2.dicii.claupiscu.model.dao.PuliziaScadenze;
+
+import java.io.IOException;
 
 //TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
 // click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
 public class Main {
-    public static void main(String[] args){
+    public static void main(String[] args) throws IOException {
+        // layout di tutte le sale in una lettura: per ogni proiezione si leggono solo i posti occupati
+        new PostoDao().caricaLayout();
+        // i posti delle temporanee scadute tornano liberi entro pochi secondi
+        PuliziaScadenze.getInstance().avvia();
+        // --server: una sessione per ogni terminale collegato, invece della sola console
+        if (args.length > 0 && args[0].equals("--server")) {
+            new ServerSessioni().avvia();
+            return;
+        }
         ApplicationController applicationController = new ApplicationController();
         applicationController.start();
     }
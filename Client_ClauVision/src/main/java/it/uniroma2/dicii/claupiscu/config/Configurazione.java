@@ -0,0 +1,51 @@
+package it.uniroma2.dicii.claupiscu.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Parametri dell'applicazione letti da config.properties; ogni chiave puo' essere
+ * sovrascritta da una system property con lo stesso nome.
+ */
+public final class Configurazione {
+    private static final String FILE = "/config.properties";
+    private static final Properties PROPRIETA = carica();
+
+    private Configurazione() {}
+
+    private static Properties carica() {
+        Properties p = new Properties();
+        try (InputStream in = Configurazione.class.getResourceAsStream(FILE)) {
+            if (in != null) {
+                p.load(in);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossibile leggere " + FILE, e);
+        }
+        return p;
+    }
+
+    public static String get(String chiave, String predefinito) {
+        String valore = System.getProperty(chiave);
+        if (valore == null) {
+            valore = PROPRIETA.getProperty(chiave, predefinito);
+        }
+        return valore == null ? null : valore.trim();
+    }
+
+    public static int getInt(String chiave, int predefinito) {
+        String valore = get(chiave, null);
+        return valore == null || valore.isEmpty() ? predefinito : Integer.parseInt(valore);
+    }
+
+    public static long getLong(String chiave, long predefinito) {
+        String valore = get(chiave, null);
+        return valore == null || valore.isEmpty() ? predefinito : Long.parseLong(valore);
+    }
+
+    public static boolean getBoolean(String chiave, boolean predefinito) {
+        String valore = get(chiave, null);
+        return valore == null || valore.isEmpty() ? predefinito : Boolean.parseBoolean(valore);
+    }
+}
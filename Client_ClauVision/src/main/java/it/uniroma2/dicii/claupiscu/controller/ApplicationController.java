@@ -1,15 +1,27 @@
 package it.uniroma2.dicii.claupiscu.controller;
 
 import it.uniroma2.dicii.claupiscu.view.StartView;
+import it.uniroma2.dicii.claupiscu.view.Terminale;
 
 public class ApplicationController implements Controller{
+    private final Terminale terminale;
     GestioneCinemaController gestioneCinemaController = new GestioneCinemaController();
-    PrenotazioneController prenotazioneController = new PrenotazioneController();
+    PrenotazioneController prenotazioneController;
+
+    public ApplicationController() {
+        this(Terminale.console());
+    }
+
+    // Una sessione: view e controller leggono e scrivono solo sul proprio terminale
+    public ApplicationController(Terminale terminale) {
+        this.terminale = terminale;
+        this.prenotazioneController = new PrenotazioneController(terminale);
+    }
 
     @Override
     public void start() {
         System.out.println("ApplicationController started!");
-        StartView startView = new StartView();
+        StartView startView = new StartView(terminale);
         int choise;
         choise = startView.startView();
         switch (choise) {
@@ -0,0 +1,190 @@
+package it.uniroma2.dicii.claupiscu.controller;
+
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Scadenza delle prenotazioni temporanee con un unico thread per tutto il processo.
+ * Le prenotazioni vivono in una timing wheel a slot da un secondo: registrazione e annullamento
+ * costano O(1) (liste doppiamente collegate per slot) e a ogni tick tutte le prenotazioni
+ * scadute nello slot vengono marcate in un solo passaggio.
+ */
+public final class GestoreScadenze {
+    private static final long DURATA_TICK_MS = 1000;
+    // 1024 secondi coprono i 10 minuti di una temporanea; scadenze piu' lontane fanno piu' giri
+    private static final int NUMERO_SLOT = 1024;
+
+    private static final GestoreScadenze INSTANCE = new GestoreScadenze(true);
+
+    private final Scadenza[] slot = new Scadenza[NUMERO_SLOT];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicInteger inAttesa = new AtomicInteger();
+    private final LongAdder scaduteTotali = new LongAdder();
+    private final ScheduledExecutorService esecutore;
+    private long tickCorrente;
+
+    // Senza thread (nei test) i tick avanzano solo chiamando avanza() e non si registrano metriche
+    GestoreScadenze(boolean conThread) {
+        if (!conThread) {
+            esecutore = null;
+            return;
+        }
+        esecutore = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gestore-scadenze");
+            t.setDaemon(true);
+            return t;
+        });
+        esecutore.scheduleAtFixedRate(this::avanza, DURATA_TICK_MS, DURATA_TICK_MS, TimeUnit.MILLISECONDS);
+        // temporanee aperte dalle sessioni di questo processo
+        Metriche.getRegistro().indicatore("prenotazioni.temporanee", inAttesa::get);
+    }
+
+    public static GestoreScadenze getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registra una prenotazione temporanea: alla sua timestamp_scadenza verra' chiamato
+     * marcaScaduta() e poi allaScadenza (dal thread del gestore, quindi deve essere breve).
+     */
+    public Scadenza registra(Prenotazione prenotazione, Runnable allaScadenza) {
+        long millis = Duration.between(LocalDateTime.now(), prenotazione.getTimestampScadenza()).toMillis();
+        return registra(prenotazione, allaScadenza, Math.max(1, (millis + DURATA_TICK_MS - 1) / DURATA_TICK_MS));
+    }
+
+    Scadenza registra(Prenotazione prenotazione, Runnable allaScadenza, long tickDaAttendere) {
+        Scadenza scadenza = new Scadenza(prenotazione, allaScadenza);
+
+        lock.lock();
+        try {
+            long tickScadenza = tickCorrente + tickDaAttendere;
+            scadenza.giriRimanenti = (tickDaAttendere - 1) / NUMERO_SLOT;
+            scadenza.indiceSlot = (int) (tickScadenza % NUMERO_SLOT);
+            collega(scadenza);
+        } finally {
+            lock.unlock();
+        }
+        inAttesa.incrementAndGet();
+        return scadenza;
+    }
+
+    void avanza() {
+        List<Scadenza> scadute = new ArrayList<>();
+        lock.lock();
+        try {
+            tickCorrente++;
+            Scadenza s = slot[(int) (tickCorrente % NUMERO_SLOT)];
+            while (s != null) {
+                Scadenza successiva = s.successiva;
+                if (s.giriRimanenti == 0) {
+                    scollega(s);
+                    scadute.add(s);
+                } else {
+                    s.giriRimanenti--;
+                }
+                s = successiva;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // marcatura e callback fuori dal lock: non rallentano registrazioni e annullamenti
+        for (Scadenza s : scadute) {
+            inAttesa.decrementAndGet();
+            try {
+                s.prenotazione.marcaScaduta();
+                if (s.allaScadenza != null) {
+                    s.allaScadenza.run();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Errore nella scadenza di " + s.prenotazione.getCodicePrenotazione() + ": " + e.getMessage());
+            }
+        }
+        scaduteTotali.add(scadute.size());
+    }
+
+    private void collega(Scadenza s) {
+        Scadenza testa = slot[s.indiceSlot];
+        s.successiva = testa;
+        s.precedente = null;
+        if (testa != null) {
+            testa.precedente = s;
+        }
+        slot[s.indiceSlot] = s;
+        s.attiva = true;
+    }
+
+    private void scollega(Scadenza s) {
+        if (s.precedente != null) {
+            s.precedente.successiva = s.successiva;
+        } else {
+            slot[s.indiceSlot] = s.successiva;
+        }
+        if (s.successiva != null) {
+            s.successiva.precedente = s.precedente;
+        }
+        s.precedente = null;
+        s.successiva = null;
+        s.attiva = false;
+    }
+
+    // Numero di prenotazioni temporanee ancora in attesa di scadenza
+    public int getPrenotazioniInAttesa() {
+        return inAttesa.get();
+    }
+
+    public long getScaduteTotali() {
+        return scaduteTotali.sum();
+    }
+
+    public void chiudi() {
+        if (esecutore != null) {
+            esecutore.shutdownNow();
+        }
+    }
+
+    public final class Scadenza {
+        private final Prenotazione prenotazione;
+        private final Runnable allaScadenza;
+        private Scadenza precedente;
+        private Scadenza successiva;
+        private int indiceSlot;
+        private long giriRimanenti;
+        private boolean attiva;
+
+        private Scadenza(Prenotazione prenotazione, Runnable allaScadenza) {
+            this.prenotazione = prenotazione;
+            this.allaScadenza = allaScadenza;
+        }
+
+        // Da chiamare a conferma o annullamento; false se la prenotazione era gia' scaduta
+        public boolean annulla() {
+            lock.lock();
+            try {
+                if (!attiva) {
+                    return false;
+                }
+                scollega(this);
+            } finally {
+                lock.unlock();
+            }
+            inAttesa.decrementAndGet();
+            return true;
+        }
+
+        public Prenotazione getPrenotazione() {
+            return prenotazione;
+        }
+    }
+}
@@ -1,12 +1,22 @@
 package it.uniroma2.dicii.claupiscu.controller;
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+import it.uniroma2.dicii.claupiscu.metriche.RegistroMetriche.Timer;
+import it.uniroma2.dicii.claupiscu.model.dao.FeedPosti;
 import it.uniroma2.dicii.claupiscu.model.dao.FilmDao;
 import it.uniroma2.dicii.claupiscu.model.dao.PostoDao;
 import it.uniroma2.dicii.claupiscu.model.dao.PrenotazioneDao;
 import it.uniroma2.dicii.claupiscu.model.dao.ProiezioneDao;
 import it.uniroma2.dicii.claupiscu.model.domain.Film;
 import it.uniroma2.dicii.claupiscu.model.domain.Posto;
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione;
+import it.uniroma2.dicii.claupiscu.model.domain.Proiezione;
+import it.uniroma2.dicii.claupiscu.model.domain.RisultatoPrenotazione;
 import it.uniroma2.dicii.claupiscu.view.PrenotazioneView;
-import java.util.Scanner;
+import it.uniroma2.dicii.claupiscu.view.Terminale;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 //public class PrenotazioneController implements Controller{
 //    @Override
@@ -17,16 +27,38 @@ import java.util.Scanner;
 //
 //}
 public class PrenotazioneController implements Controller {
+    private static final int MASSIMO_POSTI_VICINI = 10;
+
     private ProiezioneDao proiezioneDAO;
     private FilmDao filmDAO;
     private PostoDao postoDAO;
     private PrenotazioneDao prenotazioneDAO;
     private PrenotazioneView view;
-    private Scanner scanner;
+    // dalla temporanea alla decisione della sessione, per stato finale (TEMPORANEA: conferma o annullamento falliti)
+    private final Timer[] tempoDecisione;
+
+    public PrenotazioneController() {
+        this(Terminale.console());
+    }
+
+    // I DAO usano pool, cache e lock condivisi dal processo; la view e' della sola sessione
+    public PrenotazioneController(Terminale terminale) {
+        this.proiezioneDAO = new ProiezioneDao();
+        this.filmDAO = new FilmDao();
+        this.postoDAO = new PostoDao();
+        this.prenotazioneDAO = new PrenotazioneDao();
+        this.view = new PrenotazioneView(terminale);
+        Prenotazione.StatoPrenotazione[] stati = Prenotazione.StatoPrenotazione.values();
+        this.tempoDecisione = new Timer[stati.length];
+        for (Prenotazione.StatoPrenotazione stato : stati) {
+            tempoDecisione[stato.ordinal()] = Metriche.getRegistro().timer("controller.prenotazione.decisione",
+                    "esito", stato.name());
+        }
+    }
 
     @Override
     public void start() {
-
+        gestisciSelezioneProiezione();
     }
 
     public void gestisciSelezioneProiezione() {
@@ -64,6 +96,14 @@ public class PrenotazioneController implements Controller {
     }
 
     private boolean gestisciDettagliEPosti(Proiezione proiezione) {
+        // finche' la sessione e' sulla sala, i posti presi o liberati da altri arrivano come variazioni
+        try (FeedPosti.Iscrizione iscrizione = FeedPosti.getInstance().iscrivi(
+                proiezione.getIdProiezioneInt(), view::notificaVariazionePosti)) {
+            return gestisciDettagliEPosti(proiezione, iscrizione);
+        }
+    }
+
+    private boolean gestisciDettagliEPosti(Proiezione proiezione, FeedPosti.Iscrizione iscrizione) {
         while (true) {
             // 1. Carica dettagli film (usando il riferimento nella proiezione)
             Film film = proiezione.getFilm();
@@ -76,9 +116,11 @@ public class PrenotazioneController implements Controller {
             Map<Character, List<Posto>> postiPerFila = postoDAO.getPostiRaggruppatiPerFila(
                     proiezione.getIdProiezioneInt()
             );
+            iscrizione.applica(postiPerFila);
 
-            // 3. Mostra interfaccia integrata
-            int azione = view.mostraDettagliProiezione(proiezione, film, postiPerFila);
+            // 3. Mostra interfaccia integrata, ridisegnata a ogni variazione dei posti
+            int azione = view.mostraDettagliProiezione(proiezione, film, postiPerFila,
+                    () -> iscrizione.applica(postiPerFila));
 
             switch (azione) {
                 case 1: // Seleziona posto
@@ -89,6 +131,10 @@ public class PrenotazioneController implements Controller {
                 case 2: // Refresh posti
                     continue; // Ricarica i dati
 
+                case 3: // Migliori posti vicini
+                    if (gestisciMiglioriPosti(proiezione)) return true;
+                    break;
+
                 case 0: // Torna indietro
                     return false;
 
@@ -100,7 +146,7 @@ public class PrenotazioneController implements Controller {
 
     private boolean gestisciSelezioneDelPosto(Proiezione proiezione, Map<Character, List<Posto>> postiPerFila) {
         // 1. Input selezione posto
-        Posto postoSelezionato = view.richiedeSelezioneP posto(postiPerFila);
+        Posto postoSelezionato = view.richiedeSelezionePosto(postiPerFila);
         if (postoSelezionato == null) return false;
 
         // 2. Conferma selezione
@@ -123,6 +169,66 @@ public class PrenotazioneController implements Controller {
         return gestisciConfermaPrenotazione(risultato, proiezione, postoSelezionato);
     }
 
+    private boolean gestisciMiglioriPosti(Proiezione proiezione) {
+        int numeroPosti = view.richiediNumeroPosti(MASSIMO_POSTI_VICINI);
+        if (numeroPosti == 0) return false;
+
+        List<Posto> posti = postoDAO.getMiglioriPostiVicini(proiezione.getIdProiezioneInt(), numeroPosti);
+        if (posti.isEmpty()) {
+            view.mostraErrore("Nessun gruppo di " + numeroPosti + " posti vicini disponibile");
+            return false;
+        }
+        if (!view.confermaSelezionePosti(proiezione, posti)) return false;
+
+        List<RisultatoPrenotazione> risultati = prenotazioneDAO.creaPrenotazioniTemporanee(
+                (short) proiezione.getIdProiezioneInt(), posti);
+        if (!risultati.get(0).isSuccesso()) {
+            // mostra il motivo del primo posto che ha fatto fallire il gruppo
+            RisultatoPrenotazione causa = risultati.stream()
+                    .filter(r -> r.getCodiceRisultato() != RisultatoPrenotazione.GRUPPO_NON_PRENOTATO)
+                    .findFirst()
+                    .orElse(risultati.get(0));
+            view.mostraErrore("Errore prenotazione: " + causa.getMessaggio());
+            return false;
+        }
+        if (risultati.size() == 1) {
+            return gestisciConfermaPrenotazione(risultati.get(0), proiezione, posti.get(0));
+        }
+        return gestisciConfermaGruppo(risultati, proiezione);
+    }
+
+    // Il gruppo si conferma o si annulla tutto insieme, con un solo ticket
+    private boolean gestisciConfermaGruppo(List<RisultatoPrenotazione> risultati, Proiezione proiezione) {
+        List<Prenotazione> prenotazioni = new ArrayList<>(risultati.size());
+        List<GestoreScadenze.Scadenza> scadenze = new ArrayList<>(risultati.size());
+        AtomicBoolean scaduta = new AtomicBoolean(false);
+        for (RisultatoPrenotazione risultato : risultati) {
+            Posto posto = risultato.getPosto();
+            Prenotazione prenotazione = new Prenotazione(
+                    risultato.getCodicePrenotazione(),
+                    (short) proiezione.getIdProiezioneInt(),
+                    (byte) proiezione.getNumSalaInt(),
+                    posto.getFila(),
+                    posto.getNumPosto()
+            );
+            prenotazione.setProiezione(proiezione);
+            prenotazione.setPosto(posto);
+            prenotazioni.add(prenotazione);
+            scadenze.add(GestoreScadenze.getInstance().registra(prenotazione, () -> segnalaScadenza(scaduta)));
+        }
+
+        long inizio = System.nanoTime();
+        try {
+            return view.mostraGestionePrenotazioneTemporanea(
+                    prenotazioni.get(0), scaduta,
+                    (p, ticketPag) -> confermaGruppo(prenotazioni, ticketPag),
+                    p -> annullaGruppo(prenotazioni));
+        } finally {
+            scadenze.forEach(GestoreScadenze.Scadenza::annulla);
+            registraDecisione(prenotazioni.get(0), inizio);
+        }
+    }
+
     private boolean gestisciConfermaPrenotazione(RisultatoPrenotazione risultato,
                                                  Proiezione proiezione, Posto posto) {
         String codicePrenotazione = risultato.getCodicePrenotazione();
@@ -138,18 +244,12 @@ public class PrenotazioneController implements Controller {
         prenotazione.setProiezione(proiezione);
         prenotazione.setPosto(posto);
 
-        // Timer di scadenza
-        Timer timerScadenza = new Timer();
+        // Scadenza gestita dal thread condiviso del GestoreScadenze (marcaScaduta compresa)
         AtomicBoolean scaduta = new AtomicBoolean(false);
+        GestoreScadenze.Scadenza scadenza = GestoreScadenze.getInstance()
+                .registra(prenotazione, () -> segnalaScadenza(scaduta));
 
-        timerScadenza.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                scaduta.set(true);
-                prenotazione.marcaScaduta();
-            }
-        }, 10 * 60 * 1000); // 10 minuti
-
+        long inizio = System.nanoTime();
         try {
             // Gestione interfaccia con countdown
             boolean risultatoFinale = view.mostraGestionePrenotazioneTemporanea(
@@ -159,17 +259,25 @@ public class PrenotazioneController implements Controller {
             return risultatoFinale;
 
         } finally {
-            timerScadenza.cancel();
+            scadenza.annulla();
+            registraDecisione(prenotazione, inizio);
         }
     }
 
+    private void registraDecisione(Prenotazione prenotazione, long inizio) {
+        tempoDecisione[prenotazione.getStatoPrenotazione().ordinal()].registra(System.nanoTime() - inizio);
+    }
+
+    // Dal thread del GestoreScadenze: la view in attesa di input se ne accorge subito
+    private void segnalaScadenza(AtomicBoolean scaduta) {
+        scaduta.set(true);
+        view.notificaScadenza();
+    }
+
     private boolean confermaPrenotazione(Prenotazione prenotazione, String ticketPag) {
         try {
             // Chiama la stored procedure di conferma
-            boolean success = prenotazioneDAO.confermaPrenotazione(
-                    prenotazione.getCodicePrenotazione(),
-                    ticketPag
-            );
+            boolean success = prenotazioneDAO.confermaPrenotazione(prenotazione, ticketPag);
 
             if (success) {
                 prenotazione.conferma(ticketPag);
@@ -188,7 +296,7 @@ public class PrenotazioneController implements Controller {
 
     private boolean annullaPrenotazione(Prenotazione prenotazione) {
         try {
-            boolean success = prenotazioneDAO.annullaPrenotazione(prenotazione.getCodicePrenotazione());
+            boolean success = prenotazioneDAO.annullaPrenotazione(prenotazione);
 
             if (success) {
                 prenotazione.annulla();
@@ -203,4 +311,36 @@ public class PrenotazioneController implements Controller {
             return false;
         }
     }
+
+    // Una sola transazione e un solo messaggio per tutto il gruppo
+    private boolean confermaGruppo(List<Prenotazione> prenotazioni, String ticketPag) {
+        try {
+            if (!prenotazioneDAO.confermaPrenotazioni(prenotazioni, ticketPag)) {
+                view.mostraErrore("Errore durante la conferma delle prenotazioni: nessun posto confermato");
+                return false;
+            }
+            prenotazioni.forEach(p -> p.conferma(ticketPag));
+            view.mostraMessaggio("✅ " + prenotazioni.size() + " prenotazioni confermate con successo!");
+            view.mostraRiepilogoPrenotazioni(prenotazioni);
+            return true;
+        } catch (Exception e) {
+            view.mostraErrore("Errore: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean annullaGruppo(List<Prenotazione> prenotazioni) {
+        try {
+            if (!prenotazioneDAO.annullaPrenotazioni(prenotazioni)) {
+                view.mostraErrore("Errore durante l'annullamento: nessuna prenotazione annullata");
+                return false;
+            }
+            prenotazioni.forEach(Prenotazione::annulla);
+            view.mostraMessaggio(prenotazioni.size() + " prenotazioni annullate con successo");
+            return true;
+        } catch (Exception e) {
+            view.mostraErrore("Errore: " + e.getMessage());
+            return false;
+        }
+    }
 }
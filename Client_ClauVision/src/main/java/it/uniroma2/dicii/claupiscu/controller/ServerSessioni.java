@@ -0,0 +1,89 @@
+package it.uniroma2.dicii.claupiscu.controller;
+
+import it.uniroma2.dicii.claupiscu.config.Configurazione;
+import it.uniroma2.dicii.claupiscu.model.dao.ConnectionPool;
+import it.uniroma2.dicii.claupiscu.view.Terminale;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Piu' casse nello stesso processo: ogni connessione TCP (telnet, nc) e' una sessione
+ * StartView -> PrenotazioneController su un proprio virtual thread, con il proprio Terminale.
+ * DAO, cache, lock dei posti e GestoreScadenze sono condivisi; il lavoro sul database resta
+ * limitato da pool.dimensioneMassima, perche' ogni chiamata DAO prende una connessione dal
+ * pool e le sessioni in eccesso attendono in coda senza occupare un thread di piattaforma.
+ */
+public final class ServerSessioni {
+    private final int porta;
+    private final int sessioniMassime;
+    private final int inattivitaMs;
+    private final Semaphore sessioniLibere;
+
+    public ServerSessioni() {
+        this(Configurazione.getInt("server.porta", 5050),
+                Configurazione.getInt("server.sessioniMassime", 500),
+                Configurazione.getLong("server.inattivitaMinuti", 15));
+    }
+
+    public ServerSessioni(int porta, int sessioniMassime, long inattivitaMinuti) {
+        if (sessioniMassime <= 0) {
+            throw new IllegalArgumentException("Il numero massimo di sessioni deve essere positivo");
+        }
+        this.porta = porta;
+        this.sessioniMassime = sessioniMassime;
+        this.inattivitaMs = (int) TimeUnit.MINUTES.toMillis(inattivitaMinuti);
+        this.sessioniLibere = new Semaphore(sessioniMassime);
+    }
+
+    public void avvia() throws IOException {
+        try (ServerSocket server = new ServerSocket(porta);
+             ExecutorService sessioni = Executors.newThreadPerTaskExecutor(
+                     Thread.ofVirtual().name("sessione-", 1).factory())) {
+            System.out.printf("Server sessioni sulla porta %d: al massimo %d sessioni, %d connessioni al database%n",
+                    porta, sessioniMassime, ConnectionPool.getInstance().getDimensioneMassima());
+            while (true) {
+                Socket socket = server.accept();
+                if (!sessioniLibere.tryAcquire()) {
+                    rifiuta(socket);
+                    continue;
+                }
+                sessioni.submit(() -> sessione(socket));
+            }
+        }
+    }
+
+    private void sessione(Socket socket) {
+        try (socket; Terminale terminale = new Terminale(socket.getInputStream(), socket.getOutputStream())) {
+            // un terminale abbandonato non trattiene la sessione per sempre
+            socket.setSoTimeout(inattivitaMs);
+            new ApplicationController(terminale).start();
+        } catch (NoSuchElementException e) {
+            // il terminale ha chiuso la connessione
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println(Thread.currentThread().getName() + " terminata: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println(Thread.currentThread().getName() + " terminata per un errore: " + e);
+        } finally {
+            sessioniLibere.release();
+        }
+    }
+
+    private static void rifiuta(Socket socket) {
+        try (socket) {
+            PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            out.println("Tutte le casse sono occupate, riprova tra poco.");
+        } catch (IOException e) {
+            // il terminale se n'e' gia' andato
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package it.uniroma2.dicii.claupiscu.exception;
+
+public class DAOException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DAOException(String messaggio) {
+        super(messaggio);
+    }
+
+    public DAOException(String messaggio, Throwable causa) {
+        super(messaggio, causa);
+    }
+}
@@ -0,0 +1,57 @@
+package it.uniroma2.dicii.claupiscu.metriche;
+
+import it.uniroma2.dicii.claupiscu.model.domain.ChiavePosto;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR per ogni prenotazione temporanea creata, confermata, annullata o scaduta, con la
+ * durata della chiamata al database. Da registrare con, ad esempio,
+ * -XX:StartFlightRecording=filename=clauvision.jfr; se JFR non e' attivo costa solo begin().
+ */
+@Name("it.uniroma2.dicii.claupiscu.Prenotazione")
+@Label("Prenotazione")
+@Category({"ClauVision", "Prenotazioni"})
+@Description("Prenotazione temporanea creata, confermata, annullata o scaduta")
+@StackTrace(false)
+public final class EventoPrenotazione extends Event {
+    public static final String CREATA = "CREATA";
+    public static final String CONFERMATA = "CONFERMATA";
+    public static final String ANNULLATA = "ANNULLATA";
+    public static final String SCADUTA = "SCADUTA";
+
+    @Label("Operazione")
+    String operazione;
+
+    @Label("Proiezione")
+    @Description("id_proiezione; 0 se non noto")
+    int idProiezione;
+
+    @Label("Posto")
+    @Description("Fila e numero del posto, es. C04; vuoto se non noto")
+    String posto;
+
+    @Label("Codice prenotazione")
+    String codice;
+
+    @Label("Esito")
+    @Description("1 = riuscita; per le creazioni il codice di CreaPrenotazioneTemporanea")
+    int esito;
+
+    // Chiude l'evento iniziato con begin(); i campi vengono valorizzati solo se l'evento e' registrato
+    public void chiudi(String operazione, int idProiezione, char fila, int numPosto, String codice, int esito) {
+        end();
+        if (shouldCommit()) {
+            this.operazione = operazione;
+            this.idProiezione = idProiezione;
+            this.posto = fila == 0 ? "" : ChiavePosto.codice(fila, numPosto);
+            this.codice = codice;
+            this.esito = esito;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package it.uniroma2.dicii.claupiscu.metriche;
+
+import it.uniroma2.dicii.claupiscu.config.Configurazione;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro delle metriche del processo, scelto con metriche.registro: "nessuno" (predefinito),
+ * "memoria" ({@link RegistroMetricheMemoria}) oppure il nome di una classe che implementa
+ * RegistroMetriche con un costruttore senza argomenti. Si puo' sostituire con setRegistro, ma
+ * solo prima di creare DAO e pool: i timer vengono presi una volta sola.
+ *
+ * Il registro "memoria" viene scritto alla chiusura del processo e, se metriche.stampaSecondi e'
+ * positivo, periodicamente su un thread daemon: in metriche.file oppure su standard error.
+ */
+public final class Metriche {
+    private static volatile RegistroMetriche registro;
+
+    private Metriche() {}
+
+    public static RegistroMetriche getRegistro() {
+        RegistroMetriche r = registro;
+        if (r == null) {
+            synchronized (Metriche.class) {
+                r = registro;
+                if (r == null) {
+                    r = crea(Configurazione.get("metriche.registro", "nessuno"));
+                    registro = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    public static synchronized void setRegistro(RegistroMetriche nuovo) {
+        registro = nuovo;
+    }
+
+    private static RegistroMetriche crea(String tipo) {
+        switch (tipo) {
+            case "":
+            case "nessuno":
+                return RegistroMetriche.NESSUNO;
+            case "memoria":
+                RegistroMetricheMemoria memoria = new RegistroMetricheMemoria();
+                pubblica(memoria, Configurazione.getLong("metriche.stampaSecondi", 60),
+                        Configurazione.get("metriche.file", ""));
+                return memoria;
+            default:
+                try {
+                    return Class.forName(tipo).asSubclass(RegistroMetriche.class).getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    Throwable causa = e instanceof InvocationTargetException ? e.getCause() : e;
+                    throw new IllegalStateException("Registro delle metriche non valido: " + tipo, causa);
+                }
+        }
+    }
+
+    private static void pubblica(RegistroMetricheMemoria memoria, long secondi, String file) {
+        Runnable stampa = () -> stampa(memoria, file);
+        if (secondi > 0) {
+            ScheduledExecutorService esecutore = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "stampa-metriche");
+                t.setDaemon(true);
+                return t;
+            });
+            esecutore.scheduleWithFixedDelay(stampa, secondi, secondi, TimeUnit.SECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(stampa, "chiusura-metriche"));
+    }
+
+    private static void stampa(RegistroMetricheMemoria memoria, String file) {
+        String testo = "# metriche " + LocalDateTime.now() + "\n" + memoria.descrivi();
+        if (file.isEmpty()) {
+            System.err.print(testo);
+            return;
+        }
+        try {
+            Files.writeString(Path.of(file), testo, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Metriche non scritte in " + file + ": " + e.getMessage());
+        }
+    }
+}
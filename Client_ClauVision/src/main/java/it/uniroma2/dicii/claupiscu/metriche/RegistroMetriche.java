@@ -0,0 +1,34 @@
+package it.uniroma2.dicii.claupiscu.metriche;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Registro delle metriche: timer, contatori e indicatori identificati da un nome e da coppie
+ * etichetta, valore (es. "esito", "1"). I componenti chiedono timer e contatori una volta sola,
+ * alla costruzione, e sul percorso caldo li aggiornano soltanto: nessuna ricerca per nome.
+ *
+ * L'implementazione del processo si ottiene con {@link Metriche#getRegistro()}; quella
+ * predefinita ({@link #NESSUNO}) non registra nulla.
+ */
+public interface RegistroMetriche {
+    RegistroMetriche NESSUNO = RegistroNullo.INSTANCE;
+
+    Timer timer(String nome, String... etichette);
+
+    Contatore contatore(String nome, String... etichette);
+
+    // Il valore viene letto solo quando il registro lo pubblica
+    void indicatore(String nome, LongSupplier valore);
+
+    interface Timer {
+        void registra(long durataNanos);
+    }
+
+    interface Contatore {
+        void incrementa(long quanti);
+
+        default void incrementa() {
+            incrementa(1);
+        }
+    }
+}
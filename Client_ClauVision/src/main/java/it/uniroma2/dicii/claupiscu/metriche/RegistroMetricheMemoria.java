@@ -0,0 +1,152 @@
+package it.uniroma2.dicii.claupiscu.metriche;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registro in memoria: ogni timer tiene conteggio, totale, massimo e un istogramma a potenze di
+ * due (percentili con errore al piu' 2x), aggiornati senza lock. descrivi() restituisce le
+ * metriche in ordine di nome, una per riga, saltando i timer mai usati.
+ */
+public final class RegistroMetricheMemoria implements RegistroMetriche {
+    private final Map<String, TimerMemoria> timer = new ConcurrentSkipListMap<>();
+    private final Map<String, ContatoreMemoria> contatori = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> indicatori = new ConcurrentSkipListMap<>();
+
+    @Override
+    public TimerMemoria timer(String nome, String... etichette) {
+        return timer.computeIfAbsent(chiave(nome, etichette), k -> new TimerMemoria());
+    }
+
+    @Override
+    public ContatoreMemoria contatore(String nome, String... etichette) {
+        return contatori.computeIfAbsent(chiave(nome, etichette), k -> new ContatoreMemoria());
+    }
+
+    @Override
+    public void indicatore(String nome, LongSupplier valore) {
+        indicatori.put(nome, valore);
+    }
+
+    // null se l'indicatore non e' registrato
+    public Long getIndicatore(String nome) {
+        LongSupplier valore = indicatori.get(nome);
+        return valore == null ? null : valore.getAsLong();
+    }
+
+    // nome{etichetta=valore,...}
+    static String chiave(String nome, String... etichette) {
+        if (etichette.length % 2 != 0) {
+            throw new IllegalArgumentException("Etichette senza valore per la metrica " + nome);
+        }
+        if (etichette.length == 0) {
+            return nome;
+        }
+        StringBuilder sb = new StringBuilder(nome).append('{');
+        for (int i = 0; i < etichette.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(etichette[i]).append('=').append(etichette[i + 1]);
+        }
+        return sb.append('}').toString();
+    }
+
+    public String descrivi() {
+        StringBuilder sb = new StringBuilder();
+        timer.forEach((nome, t) -> {
+            if (t.getConteggio() > 0) {
+                sb.append(nome).append(' ').append(t).append('\n');
+            }
+        });
+        contatori.forEach((nome, c) -> sb.append(nome).append(' ').append(c.getValore()).append('\n'));
+        indicatori.forEach((nome, v) -> sb.append(nome).append(' ').append(v.getAsLong()).append('\n'));
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return descrivi();
+    }
+
+    public static final class TimerMemoria implements Timer {
+        private final LongAdder conteggio = new LongAdder();
+        private final LongAdder totaleNanos = new LongAdder();
+        private final AtomicLong massimoNanos = new AtomicLong();
+        // fascia i: durate in [2^i, 2^(i+1)) nanosecondi
+        private final AtomicLongArray fasce = new AtomicLongArray(64);
+
+        private TimerMemoria() {}
+
+        @Override
+        public void registra(long durataNanos) {
+            long durata = Math.max(0, durataNanos);
+            conteggio.increment();
+            totaleNanos.add(durata);
+            if (durata > massimoNanos.get()) {
+                massimoNanos.accumulateAndGet(durata, Math::max);
+            }
+            fasce.incrementAndGet(63 - Long.numberOfLeadingZeros(durata | 1));
+        }
+
+        public long getConteggio() {
+            return conteggio.sum();
+        }
+
+        public long getTotaleNanos() {
+            return totaleNanos.sum();
+        }
+
+        public long getMassimoNanos() {
+            return massimoNanos.get();
+        }
+
+        public double getMediaNanos() {
+            long n = conteggio.sum();
+            return n == 0 ? 0 : (double) totaleNanos.sum() / n;
+        }
+
+        // Limite superiore della fascia che contiene il percentile (0 < percentile <= 1)
+        public long getPercentileNanos(double percentile) {
+            long totale = 0;
+            for (int i = 0; i < fasce.length(); i++) {
+                totale += fasce.get(i);
+            }
+            long soglia = (long) Math.ceil(totale * percentile);
+            long visti = 0;
+            for (int i = 0; i < fasce.length(); i++) {
+                visti += fasce.get(i);
+                if (visti >= soglia && visti > 0) {
+                    return Math.min(massimoNanos.get(), (1L << (i + 1)) - 1);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d media=%.3fms p50<=%.3fms p99<=%.3fms max=%.3fms", getConteggio(),
+                    getMediaNanos() / 1e6, getPercentileNanos(0.5) / 1e6, getPercentileNanos(0.99) / 1e6,
+                    getMassimoNanos() / 1e6);
+        }
+    }
+
+    public static final class ContatoreMemoria implements Contatore {
+        private final LongAdder valore = new LongAdder();
+
+        private ContatoreMemoria() {}
+
+        @Override
+        public void incrementa(long quanti) {
+            valore.add(quanti);
+        }
+
+        public long getValore() {
+            return valore.sum();
+        }
+    }
+}
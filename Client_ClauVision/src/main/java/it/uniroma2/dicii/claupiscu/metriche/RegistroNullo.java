@@ -0,0 +1,30 @@
+package it.uniroma2.dicii.claupiscu.metriche;
+
+import java.util.function.LongSupplier;
+
+// Registro predefinito: un solo oggetto fa da registro, timer e contatore e scarta tutto
+enum RegistroNullo implements RegistroMetriche, RegistroMetriche.Timer, RegistroMetriche.Contatore {
+    INSTANCE;
+
+    @Override
+    public Timer timer(String nome, String... etichette) {
+        return this;
+    }
+
+    @Override
+    public Contatore contatore(String nome, String... etichette) {
+        return this;
+    }
+
+    @Override
+    public void indicatore(String nome, LongSupplier valore) {
+    }
+
+    @Override
+    public void registra(long durataNanos) {
+    }
+
+    @Override
+    public void incrementa(long quanti) {
+    }
+}
@@ -0,0 +1,39 @@
+package it.uniroma2.dicii.claupiscu.model.cache;
+
+import it.uniroma2.dicii.claupiscu.config.Configurazione;
+import it.uniroma2.dicii.claupiscu.model.domain.Film;
+import it.uniroma2.dicii.claupiscu.model.domain.Sala;
+
+import java.util.concurrent.TimeUnit;
+
+// Film (per titolo_film) e sale (per num_sala) condivisi da tutti i DAO del processo
+public final class CacheCatalogo {
+    private static final CacheCatalogo INSTANCE = new CacheCatalogo(
+            Configurazione.getInt("catalogo.dimensioneMassima", 512),
+            Configurazione.getLong("catalogo.ttlMinuti", 60));
+
+    private final CacheLettura<String, Film> film;
+    private final CacheLettura<Integer, Sala> sale;
+
+    public CacheCatalogo(int dimensioneMassima, long ttlMinuti) {
+        this.film = new CacheLettura<>(dimensioneMassima, ttlMinuti, TimeUnit.MINUTES);
+        this.sale = new CacheLettura<>(dimensioneMassima, ttlMinuti, TimeUnit.MINUTES);
+    }
+
+    public static CacheCatalogo getInstance() {
+        return INSTANCE;
+    }
+
+    public CacheLettura<String, Film> getFilm() {
+        return film;
+    }
+
+    public CacheLettura<Integer, Sala> getSale() {
+        return sale;
+    }
+
+    public void svuota() {
+        film.svuota();
+        sale.svuota();
+    }
+}
@@ -0,0 +1,117 @@
+package it.uniroma2.dicii.claupiscu.model.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache read-through limitata per dati che cambiano raramente (catalogo film e sale).
+ * Le voci vengono rimosse quando si supera dimensioneMassima (la meno usata di recente) o
+ * dopo ttl dal caricamento. Il caricamento avviene fuori dal lock: due thread che mancano
+ * la stessa chiave possono caricarla entrambi, e resta la prima voce registrata.
+ */
+public final class CacheLettura<K, V> {
+    private final int dimensioneMassima;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Voce<V>> voci;
+    private final LongAdder hit = new LongAdder();
+    private final LongAdder miss = new LongAdder();
+    private final LongAdder evizioni = new LongAdder();
+
+    public CacheLettura(int dimensioneMassima, long ttl, TimeUnit unita) {
+        if (dimensioneMassima <= 0) {
+            throw new IllegalArgumentException("La dimensione della cache deve essere positiva");
+        }
+        this.dimensioneMassima = dimensioneMassima;
+        this.ttlNanos = unita.toNanos(ttl);
+        // ordine di accesso: la prima voce e' la meno usata di recente
+        this.voci = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // Restituisce il valore in cache o lo carica; i valori null non vengono memorizzati
+    public V get(K chiave, Function<? super K, ? extends V> caricatore) {
+        long adesso = System.nanoTime();
+        synchronized (this) {
+            Voce<V> voce = voci.get(chiave);
+            if (voce != null) {
+                if (voce.scadenza - adesso > 0) {
+                    hit.increment();
+                    return voce.valore;
+                }
+                voci.remove(chiave);
+                evizioni.increment();
+            }
+        }
+        miss.increment();
+        V valore = caricatore.apply(chiave);
+        if (valore == null) {
+            return null;
+        }
+        synchronized (this) {
+            Voce<V> esistente = voci.get(chiave);
+            if (esistente != null && esistente.scadenza - adesso > 0) {
+                return esistente.valore;
+            }
+            voci.put(chiave, new Voce<>(valore, adesso + ttlNanos));
+            rimuoviEccesso();
+        }
+        return valore;
+    }
+
+    public synchronized void invalida(K chiave) {
+        voci.remove(chiave);
+    }
+
+    public synchronized void svuota() {
+        voci.clear();
+    }
+
+    private void rimuoviEccesso() {
+        Iterator<Voce<V>> it = voci.values().iterator();
+        while (voci.size() > dimensioneMassima && it.hasNext()) {
+            it.next();
+            it.remove();
+            evizioni.increment();
+        }
+    }
+
+    public synchronized int getDimensione() {
+        return voci.size();
+    }
+
+    public long getHit() {
+        return hit.sum();
+    }
+
+    public long getMiss() {
+        return miss.sum();
+    }
+
+    public long getEvizioni() {
+        return evizioni.sum();
+    }
+
+    public double getHitRatio() {
+        long h = hit.sum();
+        long totale = h + miss.sum();
+        return totale == 0 ? 0 : (double) h / totale;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheLettura{voci=%d, hit=%d, miss=%d, evizioni=%d}",
+                getDimensione(), getHit(), getMiss(), getEvizioni());
+    }
+
+    private static final class Voce<V> {
+        private final V valore;
+        private final long scadenza;
+
+        private Voce(V valore, long scadenza) {
+            this.valore = valore;
+            this.scadenza = scadenza;
+        }
+    }
+}
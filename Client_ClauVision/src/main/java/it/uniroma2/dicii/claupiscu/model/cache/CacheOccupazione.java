@@ -0,0 +1,73 @@
+package it.uniroma2.dicii.claupiscu.model.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Occupazioni delle proiezioni e layout delle sale, condivisi da tutti i DAO del processo
+public final class CacheOccupazione {
+    private static final CacheOccupazione INSTANCE = new CacheOccupazione();
+
+    private final Map<Integer, OccupazioneProiezione> occupazioni = new ConcurrentHashMap<>();
+    // letto senza lock; le modifiche (rare) lo sostituiscono sotto il monitor della cache
+    private volatile RegistroLayout layout = RegistroLayout.VUOTO;
+
+    private CacheOccupazione() {}
+
+    public static CacheOccupazione getInstance() {
+        return INSTANCE;
+    }
+
+    public OccupazioneProiezione getOccupazione(int idProiezione) {
+        return occupazioni.get(idProiezione);
+    }
+
+    // Se due thread caricano la stessa proiezione vince il primo, l'altro usa la sua istanza
+    public OccupazioneProiezione registra(OccupazioneProiezione occupazione) {
+        OccupazioneProiezione esistente = occupazioni.putIfAbsent(occupazione.getIdProiezione(), occupazione);
+        return esistente != null ? esistente : occupazione;
+    }
+
+    public void rimuovi(int idProiezione) {
+        occupazioni.remove(idProiezione);
+    }
+
+    public LayoutSala getLayout(int numSala) {
+        return layout.get(numSala);
+    }
+
+    public RegistroLayout getRegistroLayout() {
+        return layout;
+    }
+
+    // Per una sala non ancora nel registro: se due thread la caricano vince il primo
+    public synchronized LayoutSala registraLayout(LayoutSala nuovo) {
+        LayoutSala esistente = layout.get(nuovo.getNumSalaInt());
+        if (esistente != null) {
+            return esistente;
+        }
+        layout = layout.con(nuovo);
+        return nuovo;
+    }
+
+    // Dopo una modifica della sala: le occupazioni costruite sul layout precedente vanno ricaricate
+    public synchronized void sostituisciLayout(LayoutSala nuovo) {
+        layout = layout.con(nuovo);
+        occupazioni.values().removeIf(o -> o.getLayout().getNumSalaInt() == nuovo.getNumSalaInt());
+    }
+
+    // Caricamento in blocco all'avvio: sostituisce tutti i layout
+    public synchronized void sostituisciRegistro(RegistroLayout nuovo) {
+        layout = nuovo;
+        occupazioni.values().removeIf(o -> nuovo.get(o.getLayout().getNumSalaInt()) != o.getLayout());
+    }
+
+    public synchronized void invalidaLayout(int numSala) {
+        layout = layout.senza(numSala);
+        occupazioni.values().removeIf(o -> o.getLayout().getNumSalaInt() == numSala);
+    }
+
+    public synchronized void svuota() {
+        occupazioni.clear();
+        layout = RegistroLayout.VUOTO;
+    }
+}
@@ -0,0 +1,132 @@
+package it.uniroma2.dicii.claupiscu.model.cache;
+
+import it.uniroma2.dicii.claupiscu.model.domain.Proiezione;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Proiezioni PROGRAMMATE ordinate per data_ora_inizio, dall'istante corrente fino a
+ * caricatoFino. La finestra delle prossime proiezioni e' una vista sulla skip list, senza
+ * query: ProiezioneDao la tiene aggiornata con le sole righe cambiate dopo il watermark e la
+ * estende in avanti man mano che il tempo passa.
+ */
+public final class CalendarioProiezioni {
+    private static final CalendarioProiezioni INSTANCE = new CalendarioProiezioni();
+    private static final int MASCHERA_ID = 0xFFFF;
+
+    // (secondi di data_ora_inizio << 16 | id_proiezione): proiezioni alla stessa ora restano distinte
+    private final ConcurrentSkipListMap<Long, Proiezione> perInizio = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Long> chiavePerId = new ConcurrentHashMap<>();
+    // serializza caricamenti e aggiornamenti; le letture non lo prendono
+    private final ReentrantLock lockAggiornamento = new ReentrantLock();
+    private volatile LocalDateTime watermark;
+    private volatile LocalDateTime caricatoFino;
+    private volatile long ultimoAggiornamentoNanos;
+    // differenza tra l'orologio del database e quello locale, misurata all'ultimo aggiornamento
+    private volatile long scartoOrologioMs;
+
+    public static CalendarioProiezioni getInstance() {
+        return INSTANCE;
+    }
+
+    private static long chiave(LocalDateTime inizio, int idProiezione) {
+        return (inizio.toEpochSecond(ZoneOffset.UTC) << 16) | idProiezione;
+    }
+
+    // Inserisce o sposta una proiezione; se non e' piu' PROGRAMMATA la toglie
+    public void applica(Proiezione proiezione) {
+        int id = proiezione.getIdProiezioneInt();
+        rimuovi(id);
+        if (proiezione.getStatoProiezione() == Proiezione.StatoProiezione.PROGRAMMATA) {
+            long chiave = chiave(proiezione.getDataOraInizio(), id);
+            perInizio.put(chiave, proiezione);
+            chiavePerId.put(id, chiave);
+        }
+    }
+
+    public void rimuovi(int idProiezione) {
+        Long chiave = chiavePerId.remove(idProiezione);
+        if (chiave != null) {
+            perInizio.remove(chiave);
+        }
+    }
+
+    // Proiezioni con inizio in [da, a], in ordine di inizio e id
+    public List<Proiezione> getFinestra(LocalDateTime da, LocalDateTime a) {
+        return new ArrayList<>(perInizio.subMap(chiave(da, 0), true, chiave(a, MASCHERA_ID), true).values());
+    }
+
+    // Toglie le proiezioni gia' iniziate: non torneranno piu' in nessuna finestra
+    public void scartaPrimaDi(LocalDateTime istante) {
+        Iterator<Map.Entry<Long, Proiezione>> it = perInizio.headMap(chiave(istante, 0)).entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Proiezione> voce = it.next();
+            chiavePerId.remove((int) (voce.getKey() & MASCHERA_ID), voce.getKey());
+            it.remove();
+        }
+    }
+
+    public void svuota() {
+        lockAggiornamento.lock();
+        try {
+            perInizio.clear();
+            chiavePerId.clear();
+            watermark = null;
+            caricatoFino = null;
+        } finally {
+            lockAggiornamento.unlock();
+        }
+    }
+
+    public boolean isCaricato() {
+        return caricatoFino != null;
+    }
+
+    public ReentrantLock getLockAggiornamento() {
+        return lockAggiornamento;
+    }
+
+    public LocalDateTime getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(LocalDateTime watermark) {
+        this.watermark = watermark;
+    }
+
+    public LocalDateTime getCaricatoFino() {
+        return caricatoFino;
+    }
+
+    public void setCaricatoFino(LocalDateTime caricatoFino) {
+        this.caricatoFino = caricatoFino;
+    }
+
+    public long getUltimoAggiornamentoNanos() {
+        return ultimoAggiornamentoNanos;
+    }
+
+    public void setUltimoAggiornamentoNanos(long ultimoAggiornamentoNanos) {
+        this.ultimoAggiornamentoNanos = ultimoAggiornamentoNanos;
+    }
+
+    public long getScartoOrologioMs() {
+        return scartoOrologioMs;
+    }
+
+    public void setScartoOrologioMs(long scartoOrologioMs) {
+        this.scartoOrologioMs = scartoOrologioMs;
+    }
+
+    public int getDimensione() {
+        return perInizio.size();
+    }
+}
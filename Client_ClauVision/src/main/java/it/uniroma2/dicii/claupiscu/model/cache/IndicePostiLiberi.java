@@ -0,0 +1,162 @@
+package it.uniroma2.dicii.claupiscu.model.cache;
+
+import java.util.Arrays;
+
+/**
+ * Blocchi di posti liberi e vicini (run) di ogni fila, calcolati da una copia della bitmap
+ * di occupazione. Serve a trovare i migliori N posti vicini senza scorrere la sala: le file
+ * con run massima piu' corta di N vengono saltate e nelle altre si guarda una run alla volta.
+ * E' immutabile e resta valido finche' la versione dell'occupazione non cambia.
+ */
+public final class IndicePostiLiberi {
+    private final LayoutSala layout;
+    private final long versione;
+    // file non vuote in ordine alfabetico: f = lettera - 'A'
+    private final int[] file;
+    private final int[] runMassimaFila;
+    // run della fila file[r]: indici primaRun[r]..primaRun[r+1] di inizioRun/lunghezzaRun
+    private final int[] primaRun;
+    private final int[] inizioRun;
+    private final int[] lunghezzaRun;
+    // file visitate dalla piu' centrale alla piu' esterna
+    private final int[] ordineFile;
+
+    IndicePostiLiberi(LayoutSala layout, long[] occupati, long versione) {
+        this.layout = layout;
+        this.versione = versione;
+
+        int numeroFile = 0;
+        for (int f = 0; f < LayoutSala.NUMERO_FILE; f++) {
+            if (layout.getFineFila(f) > layout.getInizioFila(f)) {
+                numeroFile++;
+            }
+        }
+        this.file = new int[numeroFile];
+        this.runMassimaFila = new int[numeroFile];
+        this.primaRun = new int[numeroFile + 1];
+
+        int[] inizi = new int[layout.getNumeroPosti()];
+        int[] lunghezze = new int[inizi.length];
+        long[] inizioBlocco = layout.getInizioBlocco();
+        int run = 0;
+        int r = 0;
+        for (int f = 0; f < LayoutSala.NUMERO_FILE; f++) {
+            int fine = layout.getFineFila(f);
+            int i = layout.getInizioFila(f);
+            if (fine <= i) {
+                continue;
+            }
+            file[r] = f;
+            primaRun[r] = run;
+            while ((i = prossimoLibero(occupati, i, fine)) < fine) {
+                int j = prossimaInterruzione(occupati, inizioBlocco, i + 1, fine);
+                inizi[run] = i;
+                lunghezze[run++] = j - i;
+                runMassimaFila[r] = Math.max(runMassimaFila[r], j - i);
+                i = j;
+            }
+            r++;
+        }
+        primaRun[numeroFile] = run;
+        this.inizioRun = Arrays.copyOf(inizi, run);
+        this.lunghezzaRun = Arrays.copyOf(lunghezze, run);
+
+        // ordine per distanza dalla fila centrale; a parita' prima quella piu' lontana dallo schermo
+        this.ordineFile = new int[numeroFile];
+        int centro2 = numeroFile - 1;
+        int k = 0;
+        for (int d = centro2 & 1; k < numeroFile; d += 2) {
+            int dietro = (centro2 + d) / 2;
+            int davanti = (centro2 - d) / 2;
+            if (dietro < numeroFile) {
+                ordineFile[k++] = dietro;
+            }
+            if (d > 0 && davanti >= 0 && k < numeroFile) {
+                ordineFile[k++] = davanti;
+            }
+        }
+    }
+
+    /**
+     * Cerca i migliori n posti liberi e vicini della stessa fila: il punteggio e' la distanza del
+     * centro del blocco dal centro della sala, in posti piu' file. Restituisce l'indice (di
+     * {@link LayoutSala}) del primo posto del blocco, oppure -1 se non ci sono n posti vicini liberi.
+     */
+    public int cercaMigliori(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Numero di posti non valido: " + n);
+        }
+        int centroFile2 = file.length - 1;
+        int migliore = -1;
+        long punteggioMigliore = Long.MAX_VALUE;
+        for (int r : ordineFile) {
+            // tutte le distanze sono raddoppiate per restare su interi
+            long distanzaFila2 = Math.abs(2L * r - centroFile2);
+            if (distanzaFila2 >= punteggioMigliore) {
+                break;
+            }
+            if (runMassimaFila[r] < n) {
+                continue;
+            }
+            int f = file[r];
+            int primoNumero = layout.getNumPosto(layout.getInizioFila(f));
+            int centroFila2 = primoNumero + layout.getNumPosto(layout.getFineFila(f) - 1);
+            for (int k = primaRun[r]; k < primaRun[r + 1]; k++) {
+                int lunghezza = lunghezzaRun[k];
+                if (lunghezza < n) {
+                    continue;
+                }
+                // nella run il blocco ideale e' quello centrato sulla fila, spostato dentro i bordi
+                int inizioNumero = layout.getNumPosto(inizioRun[k]);
+                int ideale = (centroFila2 - (n - 1)) >> 1;
+                int scelto = Math.max(inizioNumero, Math.min(ideale, inizioNumero + lunghezza - n));
+                long punteggio = distanzaFila2 + Math.abs(2L * scelto + n - 1 - centroFila2);
+                if (punteggio < punteggioMigliore) {
+                    punteggioMigliore = punteggio;
+                    migliore = inizioRun[k] + (scelto - inizioNumero);
+                }
+            }
+        }
+        return migliore;
+    }
+
+    public long getVersione() {
+        return versione;
+    }
+
+    public LayoutSala getLayout() {
+        return layout;
+    }
+
+    // Primo indice libero in [da, limite), oppure limite
+    private static int prossimoLibero(long[] occupati, int da, int limite) {
+        if (da >= limite) {
+            return limite;
+        }
+        int parola = da >>> 6;
+        long liberi = ~occupati[parola] & (-1L << da);
+        while (liberi == 0) {
+            if (++parola << 6 >= limite) {
+                return limite;
+            }
+            liberi = ~occupati[parola];
+        }
+        return Math.min(limite, (parola << 6) + Long.numberOfTrailingZeros(liberi));
+    }
+
+    // Primo indice in [da, limite) occupato o che inizia un nuovo blocco, oppure limite
+    private static int prossimaInterruzione(long[] occupati, long[] inizioBlocco, int da, int limite) {
+        if (da >= limite) {
+            return limite;
+        }
+        int parola = da >>> 6;
+        long barriere = (occupati[parola] | inizioBlocco[parola]) & (-1L << da);
+        while (barriere == 0) {
+            if (++parola << 6 >= limite) {
+                return limite;
+            }
+            barriere = occupati[parola] | inizioBlocco[parola];
+        }
+        return Math.min(limite, (parola << 6) + Long.numberOfTrailingZeros(barriere));
+    }
+}
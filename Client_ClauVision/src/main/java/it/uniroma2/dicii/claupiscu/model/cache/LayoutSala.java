@@ -0,0 +1,106 @@
+package it.uniroma2.dicii.claupiscu.model.cache;
+
+import java.util.Arrays;
+
+/**
+ * Disposizione fisica dei posti di una sala: ogni posto (fila, num_posto) riceve un indice
+ * compatto 0..n-1 nell'ordine fila, numero. Gli indici sono usati come posizione dei bit
+ * nelle strutture di occupazione.
+ */
+public final class LayoutSala {
+    public static final int NUMERO_FILE = 26;
+
+    private final byte numSala;
+    private final int capacita;
+    private final char[] filaDi;
+    private final int[] postoDi;
+    // inizioFila[f]..inizioFila[f+1] sono gli indici della fila 'A'+f
+    private final int[] inizioFila = new int[NUMERO_FILE + 1];
+    // bit a 1 sul primo posto di ogni fila e dopo ogni salto di numerazione (es. un corridoio):
+    // due posti sono vicini solo se il secondo non ha il bit a 1
+    private final long[] inizioBlocco;
+
+    // file e posti devono arrivare ordinati per fila e numero di posto
+    public LayoutSala(byte numSala, int capacita, char[] file, int[] posti) {
+        if (file.length != posti.length) {
+            throw new IllegalArgumentException("File e posti di lunghezza diversa");
+        }
+        this.numSala = numSala;
+        this.capacita = capacita;
+        this.filaDi = file.clone();
+        this.postoDi = posti.clone();
+
+        int indice = 0;
+        for (int f = 0; f < NUMERO_FILE; f++) {
+            inizioFila[f] = indice;
+            while (indice < filaDi.length && filaDi[indice] - 'A' == f) {
+                indice++;
+            }
+        }
+        inizioFila[NUMERO_FILE] = indice;
+        if (indice != filaDi.length) {
+            throw new IllegalArgumentException("Posti non ordinati o fila fuori dall'intervallo A-Z nella sala " + numSala);
+        }
+
+        this.inizioBlocco = new long[(filaDi.length + 63) >>> 6];
+        for (int i = 0; i < filaDi.length; i++) {
+            if (i == 0 || filaDi[i] != filaDi[i - 1] || postoDi[i] != postoDi[i - 1] + 1) {
+                inizioBlocco[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    public int indiceDi(char fila, int numPosto) {
+        int f = fila - 'A';
+        if (f < 0 || f >= NUMERO_FILE) {
+            return -1;
+        }
+        int trovato = Arrays.binarySearch(postoDi, inizioFila[f], inizioFila[f + 1], numPosto);
+        return trovato >= 0 ? trovato : -1;
+    }
+
+    // Indici [getInizioFila(f), getFineFila(f)) della fila 'A'+f; intervallo vuoto se la fila non esiste
+    public int getInizioFila(int f) {
+        return inizioFila[f];
+    }
+
+    public int getFineFila(int f) {
+        return inizioFila[f + 1];
+    }
+
+    public int getPostiInFila(int f) {
+        return inizioFila[f + 1] - inizioFila[f];
+    }
+
+    public boolean isInizioBlocco(int indice) {
+        return (inizioBlocco[indice >>> 6] & (1L << indice)) != 0;
+    }
+
+    long[] getInizioBlocco() {
+        return inizioBlocco;
+    }
+
+    public char getFila(int indice) {
+        return filaDi[indice];
+    }
+
+    public int getNumPosto(int indice) {
+        return postoDi[indice];
+    }
+
+    public int getNumeroPosti() {
+        return filaDi.length;
+    }
+
+    public byte getNumSala() {
+        return numSala;
+    }
+
+    public int getNumSalaInt() {
+        return Byte.toUnsignedInt(numSala);
+    }
+
+    public int getCapacita() {
+        return capacita;
+    }
+}
@@ -0,0 +1,172 @@
+package it.uniroma2.dicii.claupiscu.model.cache;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Mappa con chiavi int primitive (ChiavePosto o chiavi dei lock dei posti), a indirizzamento
+ * aperto con scansione lineare: niente Integer/Long per le chiavi ne' nodi per le voci. La chiave
+ * 0 indica una cella vuota e non puo' essere usata. Non thread-safe.
+ */
+public final class MappaPosti<V> {
+    private static final float CARICO_MASSIMO = 0.5f;
+
+    private int[] chiavi;
+    private Object[] valori;
+    private int maschera;
+    private int dimensione;
+    private int soglia;
+
+    public MappaPosti() {
+        this(16);
+    }
+
+    public MappaPosti(int capacitaAttesa) {
+        alloca(Integer.highestOneBit(Math.max(2, (int) (capacitaAttesa / CARICO_MASSIMO) - 1)) << 1);
+    }
+
+    private void alloca(int celle) {
+        chiavi = new int[celle];
+        valori = new Object[celle];
+        maschera = celle - 1;
+        soglia = (int) (celle * CARICO_MASSIMO);
+    }
+
+    private int cella(int chiave) {
+        int h = chiave * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & maschera;
+    }
+
+    private int trova(int chiave) {
+        for (int i = cella(chiave); ; i = (i + 1) & maschera) {
+            if (chiavi[i] == chiave) {
+                return i;
+            }
+            if (chiavi[i] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int chiave) {
+        int i = trova(chiave);
+        return i >= 0 ? (V) valori[i] : null;
+    }
+
+    public boolean containsKey(int chiave) {
+        return trova(chiave) >= 0;
+    }
+
+    // Restituisce il valore precedente, o null
+    public V put(int chiave, V valore) {
+        return inserisci(chiave, valore, true);
+    }
+
+    public V putIfAbsent(int chiave, V valore) {
+        return inserisci(chiave, valore, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V inserisci(int chiave, V valore, boolean sostituisci) {
+        if (chiave == 0) {
+            throw new IllegalArgumentException("La chiave 0 e' riservata");
+        }
+        int i = cella(chiave);
+        for (; chiavi[i] != 0; i = (i + 1) & maschera) {
+            if (chiavi[i] == chiave) {
+                V precedente = (V) valori[i];
+                if (sostituisci || precedente == null) {
+                    valori[i] = valore;
+                }
+                return precedente;
+            }
+        }
+        chiavi[i] = chiave;
+        valori[i] = valore;
+        if (++dimensione > soglia) {
+            raddoppia();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int chiave) {
+        int i = trova(chiave);
+        if (i < 0) {
+            return null;
+        }
+        V valore = (V) valori[i];
+        rimuoviCella(i);
+        return valore;
+    }
+
+    /**
+     * Rimuove le voci il cui valore soddisfa la condizione. Restituisce quante ne ha rimosse.
+     */
+    @SuppressWarnings("unchecked")
+    public int removeIf(Predicate<? super V> condizione) {
+        int rimosse = 0;
+        for (int i = 0; i < chiavi.length; i++) {
+            // dopo una rimozione la cella puo' ricevere la voce successiva: va ricontrollata
+            while (chiavi[i] != 0 && condizione.test((V) valori[i])) {
+                rimuoviCella(i);
+                rimosse++;
+            }
+        }
+        return rimosse;
+    }
+
+    // Cancellazione senza lapidi: le voci successive della stessa sequenza vengono riportate indietro
+    private void rimuoviCella(int libera) {
+        dimensione--;
+        int i = libera;
+        while (true) {
+            i = (i + 1) & maschera;
+            int chiave = chiavi[i];
+            if (chiave == 0) {
+                break;
+            }
+            int ideale = cella(chiave);
+            // la voce in i passa nella cella libera se la sua cella ideale non cade in (libera, i]
+            if (((i - ideale) & maschera) >= ((i - libera) & maschera)) {
+                chiavi[libera] = chiave;
+                valori[libera] = valori[i];
+                libera = i;
+            }
+        }
+        chiavi[libera] = 0;
+        valori[libera] = null;
+    }
+
+    private void raddoppia() {
+        int[] vecchieChiavi = chiavi;
+        Object[] vecchiValori = valori;
+        alloca(vecchieChiavi.length << 1);
+        for (int j = 0; j < vecchieChiavi.length; j++) {
+            int chiave = vecchieChiavi[j];
+            if (chiave != 0) {
+                int i = cella(chiave);
+                while (chiavi[i] != 0) {
+                    i = (i + 1) & maschera;
+                }
+                chiavi[i] = chiave;
+                valori[i] = vecchiValori[j];
+            }
+        }
+    }
+
+    public int size() {
+        return dimensione;
+    }
+
+    public boolean isEmpty() {
+        return dimensione == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(chiavi, 0);
+        Arrays.fill(valori, null);
+        dimensione = 0;
+    }
+}
@@ -0,0 +1,245 @@
+package it.uniroma2.dicii.claupiscu.model.cache;
+
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione.StatoPrenotazione;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Occupazione dei posti di una proiezione: un bit per posto della sala (indice di {@link LayoutSala}).
+ * Viene tenuta aggiornata applicando solo le prenotazioni cambiate dopo il watermark, quindi un
+ * refresh costa O(posti cambiati) e non alloca nulla oltre alle righe lette dal database.
+ * Le temporanee applicate con applica (le variazioni) scadono anche senza alcuna modifica sul
+ * database: le loro scadenze stanno in un heap di long per liberare i posti senza scorrere tutta
+ * la sala. Quelle del caricamento completo (occupaPosti) non hanno scadenza e restano occupate
+ * finche' la variazione SCADUTA non arriva dal database.
+ */
+public final class OccupazioneProiezione {
+    private static final int BIT_INDICE = 16;
+    private static final long MASCHERA_INDICE = (1L << BIT_INDICE) - 1;
+
+    private final int idProiezione;
+    private final LayoutSala layout;
+    private final long[] occupati;
+    // scadenza (millis locali) della temporanea che occupa il posto, 0 se libero o confermato
+    private final long[] scadenzaTemporanea;
+    // min-heap di (scadenza << 16 | indice); le voci superate vengono scartate alla lettura
+    private long[] heapScadenze = new long[16];
+    private int dimensioneHeap;
+    private LocalDateTime watermark;
+    private long versione;
+    private IndicePostiLiberi indiceLiberi;
+    // serializza i refresh dal database, che devono essere applicati nell'ordine in cui sono letti
+    private final ReentrantLock lockAggiornamento = new ReentrantLock();
+    // ricevono ogni variazione in ordine di versione, sotto il lock della mappa: devono solo accodarla
+    private final List<Consumer<VariazionePosto>> osservatori = new CopyOnWriteArrayList<>();
+
+    public OccupazioneProiezione(int idProiezione, LayoutSala layout) {
+        this.idProiezione = idProiezione;
+        this.layout = layout;
+        int bit = Math.max(layout.getCapacita(), layout.getNumeroPosti());
+        this.occupati = new long[(bit + 63) >>> 6];
+        this.scadenzaTemporanea = new long[bit];
+    }
+
+    /**
+     * Applica lo stato di una prenotazione al posto indicato.
+     * millisAllaScadenza e' calcolato dal database (timestamp_scadenza - NOW()) per non dipendere
+     * dall'orologio del client; vale solo per le temporanee.
+     */
+    public synchronized void applica(char fila, int numPosto, StatoPrenotazione stato,
+                                     long millisAllaScadenza, long adessoMillis) {
+        int indice = layout.indiceDi(fila, numPosto);
+        if (indice < 0) {
+            return;
+        }
+        switch (stato) {
+            case CONFERMATA:
+                occupa(indice);
+                scadenzaTemporanea[indice] = 0;
+                break;
+            case TEMPORANEA:
+                if (millisAllaScadenza > 0) {
+                    long scadenza = adessoMillis + millisAllaScadenza;
+                    occupa(indice);
+                    scadenzaTemporanea[indice] = scadenza;
+                    inserisciScadenza(scadenza, indice);
+                } else {
+                    libera(indice);
+                }
+                break;
+            default:
+                libera(indice);
+                break;
+        }
+    }
+
+    /**
+     * Occupa i posti della fila con il bit a 1 nella maschera (bit i = posto primoPosto + i), senza
+     * scadenza come le confermate: serve al caricamento completo da PostoDao.
+     */
+    public synchronized void occupaPosti(char fila, int primoPosto, long maschera) {
+        for (; maschera != 0; maschera &= maschera - 1) {
+            int indice = layout.indiceDi(fila, primoPosto + Long.numberOfTrailingZeros(maschera));
+            if (indice >= 0) {
+                occupa(indice);
+                scadenzaTemporanea[indice] = 0;
+            }
+        }
+    }
+
+    // Libera i posti delle temporanee scadute: O(scadute · log n)
+    public synchronized void rilasciaScadute(long adessoMillis) {
+        while (dimensioneHeap > 0 && (heapScadenze[0] >>> BIT_INDICE) <= adessoMillis) {
+            long voce = estraiMinimo();
+            int indice = (int) (voce & MASCHERA_INDICE);
+            if (scadenzaTemporanea[indice] == voce >>> BIT_INDICE) {
+                libera(indice);
+            }
+        }
+    }
+
+    public synchronized boolean isOccupato(int indice) {
+        return (occupati[indice >>> 6] & (1L << indice)) != 0;
+    }
+
+    public synchronized boolean isOccupato(char fila, int numPosto) {
+        int indice = layout.indiceDi(fila, numPosto);
+        return indice >= 0 && isOccupato(indice);
+    }
+
+    public synchronized int getPostiOccupati() {
+        int totale = 0;
+        for (long parola : occupati) {
+            totale += Long.bitCount(parola);
+        }
+        return totale;
+    }
+
+    // Copia la bitmap in un array riusabile dal chiamante; restituisce la versione copiata
+    public synchronized long copiaOccupati(long[] destinazione) {
+        System.arraycopy(occupati, 0, destinazione, 0, occupati.length);
+        return versione;
+    }
+
+    // Ricostruito solo se l'occupazione e' cambiata dall'ultima richiesta
+    public synchronized IndicePostiLiberi getIndiceLiberi() {
+        if (indiceLiberi == null || indiceLiberi.getVersione() != versione) {
+            indiceLiberi = new IndicePostiLiberi(layout, occupati, versione);
+        }
+        return indiceLiberi;
+    }
+
+    public void aggiungiOsservatore(Consumer<VariazionePosto> osservatore) {
+        osservatori.add(osservatore);
+    }
+
+    public void rimuoviOsservatore(Consumer<VariazionePosto> osservatore) {
+        osservatori.remove(osservatore);
+    }
+
+    public ReentrantLock getLockAggiornamento() {
+        return lockAggiornamento;
+    }
+
+    public int getNumeroParole() {
+        return occupati.length;
+    }
+
+    public int getIdProiezione() {
+        return idProiezione;
+    }
+
+    public LayoutSala getLayout() {
+        return layout;
+    }
+
+    public synchronized LocalDateTime getWatermark() {
+        return watermark;
+    }
+
+    public synchronized void setWatermark(LocalDateTime watermark) {
+        if (this.watermark == null || watermark.isAfter(this.watermark)) {
+            this.watermark = watermark;
+        }
+    }
+
+    // Cresce a ogni cambio effettivo: permette ai lettori di capire se la mappa e' cambiata
+    public synchronized long getVersione() {
+        return versione;
+    }
+
+    private void occupa(int indice) {
+        long prima = occupati[indice >>> 6];
+        long dopo = prima | (1L << indice);
+        if (dopo != prima) {
+            occupati[indice >>> 6] = dopo;
+            versione++;
+            notifica(indice, true);
+        }
+    }
+
+    private void libera(int indice) {
+        scadenzaTemporanea[indice] = 0;
+        long prima = occupati[indice >>> 6];
+        long dopo = prima & ~(1L << indice);
+        if (dopo != prima) {
+            occupati[indice >>> 6] = dopo;
+            versione++;
+            notifica(indice, false);
+        }
+    }
+
+    private void notifica(int indice, boolean occupato) {
+        if (osservatori.isEmpty()) {
+            return;
+        }
+        VariazionePosto variazione = new VariazionePosto(versione, layout.getFila(indice), layout.getNumPosto(indice), occupato);
+        for (Consumer<VariazionePosto> osservatore : osservatori) {
+            osservatore.accept(variazione);
+        }
+    }
+
+    private void inserisciScadenza(long scadenza, int indice) {
+        if (dimensioneHeap == heapScadenze.length) {
+            heapScadenze = Arrays.copyOf(heapScadenze, dimensioneHeap * 2);
+        }
+        long voce = (scadenza << BIT_INDICE) | indice;
+        int i = dimensioneHeap++;
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            if (heapScadenze[padre] <= voce) {
+                break;
+            }
+            heapScadenze[i] = heapScadenze[padre];
+            i = padre;
+        }
+        heapScadenze[i] = voce;
+    }
+
+    private long estraiMinimo() {
+        long minimo = heapScadenze[0];
+        long ultimo = heapScadenze[--dimensioneHeap];
+        int i = 0;
+        while (true) {
+            int figlio = 2 * i + 1;
+            if (figlio >= dimensioneHeap) {
+                break;
+            }
+            if (figlio + 1 < dimensioneHeap && heapScadenze[figlio + 1] < heapScadenze[figlio]) {
+                figlio++;
+            }
+            if (ultimo <= heapScadenze[figlio]) {
+                break;
+            }
+            heapScadenze[i] = heapScadenze[figlio];
+            i = figlio;
+        }
+        heapScadenze[i] = ultimo;
+        return minimo;
+    }
+}
@@ -0,0 +1,60 @@
+package it.uniroma2.dicii.claupiscu.model.cache;
+
+import java.util.Collection;
+
+/**
+ * Layout di tutte le sale, immutabile: caricato in blocco all'avvio e sostituito per intero
+ * quando una sala cambia (con, senza). I lettori non prendono lock, la lookup e' un accesso
+ * all'array per num_sala.
+ */
+public final class RegistroLayout {
+    // num_sala e' TINYINT UNSIGNED
+    private static final int NUMERO_SALE = 256;
+
+    public static final RegistroLayout VUOTO = new RegistroLayout(new LayoutSala[NUMERO_SALE]);
+
+    private final LayoutSala[] perSala;
+    private final int numeroSale;
+
+    private RegistroLayout(LayoutSala[] perSala) {
+        this.perSala = perSala;
+        int n = 0;
+        for (LayoutSala layout : perSala) {
+            if (layout != null) {
+                n++;
+            }
+        }
+        this.numeroSale = n;
+    }
+
+    public static RegistroLayout di(Collection<LayoutSala> layout) {
+        LayoutSala[] perSala = new LayoutSala[NUMERO_SALE];
+        for (LayoutSala l : layout) {
+            perSala[l.getNumSalaInt()] = l;
+        }
+        return new RegistroLayout(perSala);
+    }
+
+    public LayoutSala get(int numSala) {
+        return numSala >= 0 && numSala < NUMERO_SALE ? perSala[numSala] : null;
+    }
+
+    public RegistroLayout con(LayoutSala layout) {
+        LayoutSala[] copia = perSala.clone();
+        copia[layout.getNumSalaInt()] = layout;
+        return new RegistroLayout(copia);
+    }
+
+    public RegistroLayout senza(int numSala) {
+        if (get(numSala) == null) {
+            return this;
+        }
+        LayoutSala[] copia = perSala.clone();
+        copia[numSala] = null;
+        return new RegistroLayout(copia);
+    }
+
+    public int getNumeroSale() {
+        return numeroSale;
+    }
+}
@@ -0,0 +1,30 @@
+package it.uniroma2.dicii.claupiscu.model.cache;
+
+// Un posto che cambia tra libero e occupato. versione e' il numero di sequenza della proiezione
+// (OccupazioneProiezione.getVersione() subito dopo il cambio): cresce di uno a ogni variazione
+public final class VariazionePosto {
+    private final long versione;
+    private final char fila;
+    private final int numPosto;
+    private final boolean occupato;
+
+    public VariazionePosto(long versione, char fila, int numPosto, boolean occupato) {
+        this.versione = versione;
+        this.fila = fila;
+        this.numPosto = numPosto;
+        this.occupato = occupato;
+    }
+
+    public long getVersione() { return versione; }
+
+    public char getFila() { return fila; }
+
+    public int getNumPosto() { return numPosto; }
+
+    public boolean isOccupato() { return occupato; }
+
+    @Override
+    public String toString() {
+        return String.format("VariazionePosto{versione=%d, posto=%c%d, occupato=%b}", versione, fila, numPosto, occupato);
+    }
+}
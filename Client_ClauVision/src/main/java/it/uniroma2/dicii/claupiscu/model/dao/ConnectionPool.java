@@ -0,0 +1,214 @@
+package it.uniroma2.dicii.claupiscu.model.dao;
+
+import it.uniroma2.dicii.claupiscu.config.Configurazione;
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool limitato di connessioni JDBC condiviso da tutti i DAO.
+ * Le connessioni vengono aperte su richiesta fino a pool.dimensioneMassima; oltre quel limite
+ * il chiamante attende al massimo pool.timeoutAttesaMs prima di ricevere una SQLTimeoutException.
+ */
+public final class ConnectionPool {
+    private static final long FETTA_ATTESA_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static volatile ConnectionPool instance;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int dimensioneMassima;
+    private final long timeoutAttesaMs;
+    private final long validazioneDopoMs;
+    private final int dimensioneCacheStatement;
+    // eseguita su ogni connessione appena aperta (variabili di sessione), null se non serve
+    private final String sqlIniziale;
+
+    // LIFO: la connessione rilasciata per ultima e' la piu' "calda" (statement gia' preparati)
+    private final LinkedBlockingDeque<PooledConnection> libere = new LinkedBlockingDeque<>();
+    private final AtomicInteger totali = new AtomicInteger();
+    private final PoolMetrics metriche = new PoolMetrics();
+    private volatile boolean chiuso;
+
+    private ConnectionPool() {
+        this(Configurazione.get("db.url", "jdbc:mariadb://localhost:3306/claudb"),
+                Configurazione.get("db.user", "root"),
+                Configurazione.get("db.password", ""),
+                Configurazione.getInt("pool.dimensioneMassima", 10),
+                Configurazione.getLong("pool.timeoutAttesaMs", 5000),
+                Configurazione.getLong("pool.validazioneDopoMs", 30000),
+                Configurazione.getInt("pool.cacheStatement", 32),
+                RegistroOperazioni.ATTIVO ? RegistroOperazioni.SQL_SESSIONE : null);
+    }
+
+    public ConnectionPool(String url, String user, String password, int dimensioneMassima,
+                          long timeoutAttesaMs, long validazioneDopoMs, int dimensioneCacheStatement) {
+        this(url, user, password, dimensioneMassima, timeoutAttesaMs, validazioneDopoMs, dimensioneCacheStatement, null);
+    }
+
+    public ConnectionPool(String url, String user, String password, int dimensioneMassima,
+                          long timeoutAttesaMs, long validazioneDopoMs, int dimensioneCacheStatement,
+                          String sqlIniziale) {
+        if (dimensioneMassima <= 0) {
+            throw new IllegalArgumentException("La dimensione del pool deve essere positiva");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.dimensioneMassima = dimensioneMassima;
+        this.timeoutAttesaMs = timeoutAttesaMs;
+        this.validazioneDopoMs = validazioneDopoMs;
+        this.dimensioneCacheStatement = dimensioneCacheStatement;
+        this.sqlIniziale = sqlIniziale;
+    }
+
+    public static ConnectionPool getInstance() {
+        ConnectionPool pool = instance;
+        if (pool == null) {
+            synchronized (ConnectionPool.class) {
+                pool = instance;
+                if (pool == null) {
+                    pool = new ConnectionPool();
+                    pool.metriche.registraIndicatori(Metriche.getRegistro());
+                    instance = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    public PooledConnection getConnection() throws SQLException {
+        if (chiuso) {
+            throw new SQLException("Pool di connessioni chiuso");
+        }
+        long inizio = System.nanoTime();
+        long scadenza = inizio + TimeUnit.MILLISECONDS.toNanos(timeoutAttesaMs);
+
+        while (true) {
+            PooledConnection connessione = libere.pollFirst();
+            if (connessione == null) {
+                connessione = apriSeSottoLimite();
+            }
+            if (connessione == null) {
+                connessione = attendiLibera(scadenza);
+                if (connessione == null) {
+                    continue;
+                }
+            }
+            if (isValida(connessione)) {
+                connessione.presta();
+                metriche.registraAcquisizione(System.nanoTime() - inizio);
+                return connessione;
+            }
+            scarta(connessione);
+        }
+    }
+
+    private PooledConnection apriSeSottoLimite() throws SQLException {
+        int correnti;
+        do {
+            correnti = totali.get();
+            if (correnti >= dimensioneMassima) {
+                return null;
+            }
+        } while (!totali.compareAndSet(correnti, correnti + 1));
+
+        try {
+            Connection connessione = DriverManager.getConnection(url, user, password);
+            if (sqlIniziale != null) {
+                try (Statement st = connessione.createStatement()) {
+                    st.execute(sqlIniziale);
+                } catch (SQLException e) {
+                    connessione.close();
+                    throw e;
+                }
+            }
+            metriche.registraApertura();
+            return new PooledConnection(this, connessione, dimensioneCacheStatement);
+        } catch (SQLException e) {
+            totali.decrementAndGet();
+            throw e;
+        }
+    }
+
+    // Attende a fette brevi: se nel frattempo una connessione viene scartata, il chiamante
+    // torna nel ciclo principale e puo' aprirne una nuova invece di aspettare fino al timeout
+    private PooledConnection attendiLibera(long scadenza) throws SQLException {
+        long rimanente = scadenza - System.nanoTime();
+        if (rimanente <= 0) {
+            metriche.registraTimeout();
+            throw new SQLTimeoutException("Nessuna connessione disponibile entro " + timeoutAttesaMs + " ms");
+        }
+        try {
+            return libere.pollFirst(Math.min(rimanente, FETTA_ATTESA_NANOS), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attesa della connessione interrotta", e);
+        }
+    }
+
+    // Le connessioni inattive da poco si considerano valide senza round trip verso il server
+    private boolean isValida(PooledConnection connessione) {
+        if (System.currentTimeMillis() - connessione.getUltimoUtilizzo() < validazioneDopoMs) {
+            return true;
+        }
+        try {
+            return connessione.getConnection().isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void rilascia(PooledConnection connessione) {
+        metriche.registraRilascio();
+        try {
+            Connection c = connessione.getConnection();
+            if (c.isClosed()) {
+                scarta(connessione);
+                return;
+            }
+            if (!c.getAutoCommit()) {
+                // un DAO ha lasciato una transazione aperta: meglio annullarla che consegnarla al prossimo
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            scarta(connessione);
+            return;
+        }
+        if (chiuso) {
+            scarta(connessione);
+        } else {
+            libere.offerFirst(connessione);
+        }
+    }
+
+    private void scarta(PooledConnection connessione) {
+        connessione.chiudiFisicamente();
+        totali.decrementAndGet();
+        metriche.registraChiusura();
+    }
+
+    public void chiudi() {
+        chiuso = true;
+        PooledConnection connessione;
+        while ((connessione = libere.pollFirst()) != null) {
+            scarta(connessione);
+        }
+    }
+
+    public PoolMetrics getMetriche() {
+        return metriche;
+    }
+
+    public int getDimensioneMassima() {
+        return dimensioneMassima;
+    }
+}
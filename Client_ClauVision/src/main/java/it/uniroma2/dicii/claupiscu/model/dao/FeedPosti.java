@@ -0,0 +1,214 @@
+package it.uniroma2.dicii.claupiscu.model.dao;
+
+import it.uniroma2.dicii.claupiscu.config.Configurazione;
+import it.uniroma2.dicii.claupiscu.exception.DAOException;
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+import it.uniroma2.dicii.claupiscu.model.cache.LayoutSala;
+import it.uniroma2.dicii.claupiscu.model.cache.OccupazioneProiezione;
+import it.uniroma2.dicii.claupiscu.model.cache.VariazionePosto;
+import it.uniroma2.dicii.claupiscu.model.domain.Posto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Variazioni dei posti delle proiezioni che qualche sessione sta guardando, invece del refresh
+ * manuale della sala. Un solo thread per processo rilegge dal database le prenotazioni cambiate
+ * (refresh incrementale di PostoDao) delle sole proiezioni con iscritti, ogni feed.intervalloMs
+ * o subito dopo una prenotazione, conferma, annullamento o scadenza fatta da questo nodo
+ * (segnala). Ogni posto che cambia arriva agli iscritti come VariazionePosto numerata.
+ */
+public final class FeedPosti {
+    // variazioni non ancora applicate da una sessione oltre le quali si passa alla risincronizzazione
+    private static final int MASSIMO_IN_CODA = 1024;
+
+    private static volatile FeedPosti instance;
+
+    private final PostoDao postoDao;
+    private final long intervalloMs;
+    private final Map<Integer, AtomicInteger> iscrittiPerProiezione = new ConcurrentHashMap<>();
+    private final BlockingQueue<Boolean> richieste = new ArrayBlockingQueue<>(1);
+    private Thread aggiornatore;
+
+    public FeedPosti(PostoDao postoDao, long intervalloMs) {
+        this.postoDao = postoDao;
+        this.intervalloMs = intervalloMs;
+    }
+
+    public static FeedPosti getInstance() {
+        FeedPosti feed = instance;
+        if (feed == null) {
+            synchronized (FeedPosti.class) {
+                feed = instance;
+                if (feed == null) {
+                    feed = new FeedPosti(new PostoDao(), Configurazione.getLong("feed.intervalloMs", 1000));
+                    Metriche.getRegistro().indicatore("feed.proiezioniSeguite", feed::getProiezioniSeguite);
+                    instance = feed;
+                }
+            }
+        }
+        return feed;
+    }
+
+    /**
+     * Iscrive una sessione alle variazioni della proiezione. allaVariazione viene chiamato dal
+     * thread che applica la variazione e deve solo svegliare la sessione, che poi chiama
+     * {@link Iscrizione#applica}. L'iscrizione va chiusa quando la sessione lascia la sala.
+     */
+    public Iscrizione iscrivi(int idProiezione, Runnable allaVariazione) {
+        OccupazioneProiezione occupazione = postoDao.getOccupazione(idProiezione);
+        Iscrizione iscrizione = new Iscrizione(occupazione, allaVariazione);
+        occupazione.aggiungiOsservatore(iscrizione.osservatore);
+        iscrittiPerProiezione.computeIfAbsent(idProiezione, id -> new AtomicInteger()).incrementAndGet();
+        avviaAggiornatore();
+        return iscrizione;
+    }
+
+    // Qualcosa e' cambiato sul database: il prossimo giro parte subito (piu' richieste ne fanno uno)
+    public void segnala() {
+        if (!iscrittiPerProiezione.isEmpty()) {
+            richieste.offer(Boolean.TRUE);
+        }
+    }
+
+    private synchronized void avviaAggiornatore() {
+        if (aggiornatore == null) {
+            aggiornatore = new Thread(this::aggiorna, "feed-posti");
+            aggiornatore.setDaemon(true);
+            aggiornatore.start();
+        }
+    }
+
+    private void aggiorna() {
+        while (true) {
+            try {
+                richieste.poll(intervalloMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (Integer idProiezione : iscrittiPerProiezione.keySet()) {
+                try {
+                    // applica le righe cambiate e libera le temporanee scadute: gli iscritti ricevono le variazioni
+                    postoDao.getOccupazione(idProiezione);
+                } catch (DAOException e) {
+                    System.err.println("Feed posti: proiezione " + idProiezione + " non aggiornata: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void disiscrivi(int idProiezione) {
+        iscrittiPerProiezione.computeIfPresent(idProiezione, (id, iscritti) -> iscritti.decrementAndGet() == 0 ? null : iscritti);
+    }
+
+    public int getProiezioniSeguite() {
+        return iscrittiPerProiezione.size();
+    }
+
+    /**
+     * Le variazioni ricevute da una sessione. Vengono applicate in ordine di versione; un buco
+     * nella sequenza (o troppe variazioni non applicate) fa ricopiare tutta l'occupazione.
+     */
+    public final class Iscrizione implements AutoCloseable {
+        private final OccupazioneProiezione occupazione;
+        private final Runnable allaVariazione;
+        private final Queue<VariazionePosto> variazioni = new ArrayBlockingQueue<>(MASSIMO_IN_CODA);
+        // la stessa istanza per aggiungere e rimuovere l'osservatore
+        private final Consumer<VariazionePosto> osservatore = this::ricevi;
+        private volatile boolean risincronizza = true; // la prima applica copia tutta la sala
+        private long ultimaVersione;
+        private long risincronizzazioni;
+
+        private Iscrizione(OccupazioneProiezione occupazione, Runnable allaVariazione) {
+            this.occupazione = occupazione;
+            this.allaVariazione = allaVariazione;
+        }
+
+        private void ricevi(VariazionePosto variazione) {
+            if (!variazioni.offer(variazione)) {
+                risincronizza = true;
+            }
+            allaVariazione.run();
+        }
+
+        /**
+         * Dal thread della sessione: aggiorna lo stato dei posti di postiPerFila (come restituita
+         * da PostoDao.getPostiRaggruppatiPerFila). Restituisce true se qualche posto e' cambiato.
+         */
+        public boolean applica(Map<Character, List<Posto>> postiPerFila) {
+            boolean cambiata = false;
+            VariazionePosto variazione;
+            while (!risincronizza && (variazione = variazioni.poll()) != null) {
+                if (variazione.getVersione() <= ultimaVersione) {
+                    continue; // gia' compresa nell'ultima copia completa
+                }
+                if (variazione.getVersione() != ultimaVersione + 1) {
+                    risincronizza = true;
+                    break;
+                }
+                cambiata |= imposta(postiPerFila, variazione.getFila(), variazione.getNumPosto(), variazione.isOccupato());
+                ultimaVersione = variazione.getVersione();
+            }
+            if (risincronizza) {
+                cambiata |= risincronizza(postiPerFila);
+            }
+            return cambiata;
+        }
+
+        private boolean risincronizza(Map<Character, List<Posto>> postiPerFila) {
+            risincronizza = false;
+            variazioni.clear();
+            // copia e versione sono coerenti: le variazioni successive hanno versione maggiore
+            long[] occupati = new long[occupazione.getNumeroParole()];
+            ultimaVersione = occupazione.copiaOccupati(occupati);
+            risincronizzazioni++;
+
+            LayoutSala layout = occupazione.getLayout();
+            boolean cambiata = false;
+            for (int i = 0; i < layout.getNumeroPosti(); i++) {
+                boolean occupato = (occupati[i >>> 6] & (1L << i)) != 0;
+                cambiata |= imposta(postiPerFila, layout.getFila(i), layout.getNumPosto(i), occupato);
+            }
+            return cambiata;
+        }
+
+        private boolean imposta(Map<Character, List<Posto>> postiPerFila, char fila, int numPosto, boolean occupato) {
+            List<Posto> posti = postiPerFila.get(fila);
+            if (posti == null) {
+                return false;
+            }
+            Posto.StatoPosto stato = occupato ? Posto.StatoPosto.OCCUPATO : Posto.StatoPosto.DISPONIBILE;
+            for (Posto posto : posti) {
+                if (posto.getNumPostoInt() == numPosto) {
+                    if (posto.getStato() == stato) {
+                        return false;
+                    }
+                    posto.setStato(stato);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public long getUltimaVersione() {
+            return ultimaVersione;
+        }
+
+        public long getRisincronizzazioni() {
+            return risincronizzazioni;
+        }
+
+        @Override
+        public void close() {
+            occupazione.rimuoviOsservatore(osservatore);
+            disiscrivi(occupazione.getIdProiezione());
+        }
+    }
+}
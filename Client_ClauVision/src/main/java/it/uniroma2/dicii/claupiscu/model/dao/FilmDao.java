@@ -1,4 +1,87 @@
 package it.uniroma2.dicii.claupiscu.model.dao;
 
+import it.uniroma2.dicii.claupiscu.config.Configurazione;
+import it.uniroma2.dicii.claupiscu.exception.DAOException;
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+import it.uniroma2.dicii.claupiscu.metriche.RegistroMetriche.Timer;
+import it.uniroma2.dicii.claupiscu.model.cache.CacheCatalogo;
+import it.uniroma2.dicii.claupiscu.model.domain.Film;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
 public class FilmDao {
+    private static final String SELECT_FILM =
+            "SELECT titolo_film, durata_minuti, casa_cinematografica, cast_attori FROM film WHERE titolo_film = ?";
+
+    // con film.castPigro il JSON del cast viene letto solo se qualcuno chiede gli attori
+    private static final boolean CAST_PIGRO = Configurazione.getBoolean("film.castPigro", false);
+
+    private final ConnectionPool pool;
+    private final CacheCatalogo catalogo;
+    private final Timer tempoLettura;
+
+    public FilmDao() {
+        this(ConnectionPool.getInstance(), CacheCatalogo.getInstance());
+    }
+
+    public FilmDao(ConnectionPool pool, CacheCatalogo catalogo) {
+        this.pool = pool;
+        this.catalogo = catalogo;
+        this.tempoLettura = Metriche.getRegistro().timer("dao.film.leggi");
+    }
+
+    // Letto dal database solo se non e' in cache (o e' scaduto)
+    public Film getFilmByTitolo(String titoloFilm) {
+        long inizio = System.nanoTime();
+        try {
+            return catalogo.getFilm().get(titoloFilm, titolo -> {
+                try (PooledConnection conn = pool.getConnection()) {
+                    return caricaFilm(conn, titolo);
+                } catch (SQLException e) {
+                    throw new DAOException("Errore nel caricamento del film '" + titolo + "'", e);
+                }
+            });
+        } finally {
+            tempoLettura.registra(System.nanoTime() - inizio);
+        }
+    }
+
+    // Per i DAO che hanno gia' una connessione: un miss non ne chiede una seconda al pool
+    Film getFilmByTitolo(PooledConnection conn, String titoloFilm) {
+        return catalogo.getFilm().get(titoloFilm, titolo -> {
+            try {
+                return caricaFilm(conn, titolo);
+            } catch (SQLException e) {
+                throw new DAOException("Errore nel caricamento del film '" + titolo + "'", e);
+            }
+        });
+    }
+
+    // Da chiamare dopo ogni modifica di un film
+    public void invalidaFilm(String titoloFilm) {
+        catalogo.getFilm().invalida(titoloFilm);
+    }
+
+    private static Film caricaFilm(PooledConnection conn, String titoloFilm) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(SELECT_FILM);
+        ps.setString(1, titoloFilm);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? mappaFilm(rs) : null;
+        }
+    }
+
+    static Film mappaFilm(ResultSet rs) throws SQLException {
+        Film film = new Film();
+        film.setTitoloFilm(rs.getString("titolo_film"));
+        film.setDurataMinuti((byte) rs.getInt("durata_minuti"));
+        film.setCasaCinematografica(rs.getString("casa_cinematografica"));
+        if (CAST_PIGRO) {
+            film.setCastAttoriPigro(rs.getString("cast_attori"));
+        } else {
+            film.setCastAttori(rs.getString("cast_attori"));
+        }
+        return film;
+    }
 }
@@ -0,0 +1,125 @@
+package it.uniroma2.dicii.claupiscu.model.dao;
+
+import it.uniroma2.dicii.claupiscu.config.Configurazione;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Codici di prenotazione generati dal client, passati alle procedure di creazione: niente
+ * RAND() sul database, quindi nessuna collisione sulla chiave primaria e nessun nuovo tentativo.
+ *
+ * Un codice e' di 14 caratteri Crockford base32: 9 per i millisecondi dal 2024, 2 per il nodo
+ * (codici.nodo, diverso per ogni processo che prenota), 2 per la sequenza nel millisecondo e uno
+ * di controllo (Luhn mod 32). I codici crescono col tempo e finiscono in coda all'indice di
+ * prenotazione. Oltre 1024 codici in un millisecondo la sequenza prosegue nel successivo.
+ */
+public final class GeneratoreCodici {
+    static final String ALFABETO = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+    public static final int LUNGHEZZA = 14;
+    public static final int NODI = 1024;
+    // 2024-01-01T00:00:00Z
+    private static final long EPOCA_MS = 1_704_067_200_000L;
+    private static final int CIFRE_TEMPO = 9;
+    private static final int BIT_SEQUENZA = 10;
+    private static final int[] VALORE = new int[128];
+
+    static {
+        Arrays.fill(VALORE, -1);
+        for (int i = 0; i < ALFABETO.length(); i++) {
+            VALORE[ALFABETO.charAt(i)] = i;
+            VALORE[Character.toLowerCase(ALFABETO.charAt(i))] = i;
+        }
+    }
+
+    private static final GeneratoreCodici INSTANCE = crea();
+
+    private final int nodo;
+    private final LongSupplier orologio;
+    // ultimo codice emesso: millisecondi dall'epoca << BIT_SEQUENZA | sequenza
+    private final AtomicLong ultimo;
+
+    public GeneratoreCodici(int nodo, LongSupplier orologio) {
+        if (nodo < 0 || nodo >= NODI) {
+            throw new IllegalArgumentException("codici.nodo deve essere tra 0 e " + (NODI - 1) + ": " + nodo);
+        }
+        this.nodo = nodo;
+        this.orologio = orologio;
+        // si parte dal millisecondo successivo, per non riprendere quello di un processo appena chiuso
+        this.ultimo = new AtomicLong(((orologio.getAsLong() - EPOCA_MS + 1) << BIT_SEQUENZA) - 1);
+    }
+
+    public static GeneratoreCodici getInstance() {
+        return INSTANCE;
+    }
+
+    // Senza codici.nodo si usa 0. Se non tutte le proiezioni sono locali altri nodi possono prenotare
+    // sullo stesso database, e due nodi lasciati a 0 genererebbero gli stessi codici
+    private static GeneratoreCodici crea() {
+        String nodo = Configurazione.get("codici.nodo", "");
+        if (nodo.isEmpty() && !"*".equals(Configurazione.get("lock.proiezioniLocali", ""))) {
+            System.err.println("codici.nodo non impostato: si usa 0. Se piu' nodi prenotano sullo stesso "
+                    + "database ognuno deve avere un numero diverso, altrimenti i codici si ripetono");
+        }
+        return new GeneratoreCodici(nodo.isEmpty() ? 0 : Integer.parseInt(nodo), System::currentTimeMillis);
+    }
+
+    public String nuovoCodice() {
+        long adesso = (orologio.getAsLong() - EPOCA_MS) << BIT_SEQUENZA;
+        long precedente;
+        long valore;
+        do {
+            precedente = ultimo.get();
+            // anche se l'orologio torna indietro il valore non si ripete
+            valore = Math.max(precedente + 1, adesso);
+        } while (!ultimo.compareAndSet(precedente, valore));
+
+        char[] codice = new char[LUNGHEZZA];
+        long tempo = valore >>> BIT_SEQUENZA;
+        for (int i = CIFRE_TEMPO - 1; i >= 0; i--) {
+            codice[i] = ALFABETO.charAt((int) (tempo & 31));
+            tempo >>>= 5;
+        }
+        codice[9] = ALFABETO.charAt(nodo >>> 5);
+        codice[10] = ALFABETO.charAt(nodo & 31);
+        int sequenza = (int) valore & ((1 << BIT_SEQUENZA) - 1);
+        codice[11] = ALFABETO.charAt(sequenza >>> 5);
+        codice[12] = ALFABETO.charAt(sequenza & 31);
+        codice[13] = ALFABETO.charAt(controllo(codice, LUNGHEZZA - 1));
+        return new String(codice);
+    }
+
+    /**
+     * Vero se il codice ha il formato del generatore e il carattere di controllo torna: rileva
+     * ogni carattere sbagliato e quasi tutti gli scambi di due caratteri vicini.
+     */
+    public static boolean isValido(String codice) {
+        if (codice == null || codice.length() != LUNGHEZZA) {
+            return false;
+        }
+        char[] caratteri = codice.toCharArray();
+        for (char c : caratteri) {
+            if (c >= VALORE.length || VALORE[c] < 0) {
+                return false;
+            }
+        }
+        return controllo(caratteri, LUNGHEZZA - 1) == VALORE[caratteri[LUNGHEZZA - 1]];
+    }
+
+    // Luhn mod 32 sui primi n caratteri
+    private static int controllo(char[] codice, int n) {
+        int somma = 0;
+        boolean doppio = true;
+        for (int i = n - 1; i >= 0; i--) {
+            int v = VALORE[codice[i]];
+            if (doppio) {
+                v *= 2;
+                v = v / 32 + v % 32;
+            }
+            somma += v;
+            doppio = !doppio;
+        }
+        return (32 - somma % 32) % 32;
+    }
+}
@@ -0,0 +1,168 @@
+package it.uniroma2.dicii.claupiscu.model.dao;
+
+import it.uniroma2.dicii.claupiscu.config.Configurazione;
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+import it.uniroma2.dicii.claupiscu.model.cache.MappaPosti;
+import it.uniroma2.dicii.claupiscu.model.domain.ChiavePosto;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock dei posti in memoria per le proiezioni gestite interamente da questo nodo: le sessioni che
+ * si contendono lo stesso posto si fermano qui invece di attendere sulla riga di posto_occupato
+ * e perdere la gara sul database. Le chiavi sono divise in segmenti, ognuno con il proprio
+ * ReentrantLock, cosi' posti diversi non si contendono lo stesso monitor. Ogni lock ha una
+ * durata massima (TTL), oltre la quale un posto non rilasciato torna contendibile.
+ *
+ * Le proiezioni non elencate in lock.proiezioniLocali vanno direttamente su posto_occupato,
+ * perche' su di esse possono competere anche altri nodi.
+ */
+public final class LockPostiLocale {
+    private static final int SOGLIA_PULIZIA = 64;
+
+    private static final LockPostiLocale INSTANCE = new LockPostiLocale(
+            Configurazione.getInt("lock.segmenti", 64),
+            TimeUnit.MINUTES.toNanos(Configurazione.getLong("lock.ttlMinuti", 10)),
+            Configurazione.get("lock.proiezioniLocali", ""));
+
+    static {
+        // posti tenuti in memoria da prenotazioni temporanee di questo nodo
+        Metriche.getRegistro().indicatore("prenotazioni.lockLocali", INSTANCE::getLockAttivi);
+    }
+
+    private final Segmento[] segmenti;
+    private final int mascheraSegmenti;
+    private final long ttlNanos;
+    private final boolean tutteLocali;
+    private final Set<Integer> proiezioniLocali = new HashSet<>();
+    private final AtomicLong generatoreToken = new AtomicLong();
+    // lock trattenuti dalle prenotazioni temporanee, da rilasciare a conferma/annullamento:
+    // codice -> {chiave, token, scadenza in nanoTime}
+    private final Map<String, long[]> lockPerPrenotazione = new ConcurrentHashMap<>();
+    private final AtomicLong associazioniDaPulizia = new AtomicLong();
+
+    public LockPostiLocale(int numeroSegmenti, long ttlNanos, String proiezioniLocali) {
+        int n = Integer.highestOneBit(Math.max(1, numeroSegmenti - 1)) << 1;
+        this.segmenti = new Segmento[n];
+        for (int i = 0; i < n; i++) {
+            segmenti[i] = new Segmento();
+        }
+        this.mascheraSegmenti = n - 1;
+        this.ttlNanos = ttlNanos;
+        this.tutteLocali = "*".equals(proiezioniLocali.trim());
+        if (!tutteLocali) {
+            for (String id : proiezioniLocali.split(",")) {
+                if (!id.isBlank()) {
+                    this.proiezioniLocali.add(Integer.parseInt(id.trim()));
+                }
+            }
+        }
+    }
+
+    public static LockPostiLocale getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean gestisce(int idProiezione) {
+        return tutteLocali || proiezioniLocali.contains(idProiezione);
+    }
+
+    // Come ChiavePosto con id_proiezione (16 bit, SMALLINT UNSIGNED) al posto di num_sala, che ne e' determinato
+    public static int chiave(int idProiezione, char fila, int numPosto) {
+        return (idProiezione << 16) | ChiavePosto.postoInSala(fila, numPosto);
+    }
+
+    // Restituisce un token (> 0) da usare per il rilascio, oppure 0 se il posto e' gia' bloccato
+    public long acquisisci(int chiave) {
+        Segmento segmento = segmentoDi(chiave);
+        long adesso = System.nanoTime();
+        segmento.lock.lock();
+        try {
+            long[] detentore = segmento.detentori.get(chiave);
+            if (detentore != null && detentore[1] - adesso > 0) {
+                return 0;
+            }
+            long token = generatoreToken.incrementAndGet();
+            if (detentore != null) {
+                // lock scaduto: si riusa la voce
+                detentore[0] = token;
+                detentore[1] = adesso + ttlNanos;
+            } else {
+                segmento.detentori.put(chiave, new long[]{token, adesso + ttlNanos});
+            }
+            if (++segmento.acquisizioniDaPulizia >= SOGLIA_PULIZIA) {
+                segmento.rimuoviScaduti(adesso);
+            }
+            return token;
+        } finally {
+            segmento.lock.unlock();
+        }
+    }
+
+    // Rilascia solo se il lock appartiene ancora al token (dopo il TTL puo' averlo preso un altro)
+    public boolean rilascia(int chiave, long token) {
+        Segmento segmento = segmentoDi(chiave);
+        segmento.lock.lock();
+        try {
+            long[] detentore = segmento.detentori.get(chiave);
+            if (detentore == null || detentore[0] != token) {
+                return false;
+            }
+            segmento.detentori.remove(chiave);
+            return true;
+        } finally {
+            segmento.lock.unlock();
+        }
+    }
+
+    public void associa(String codicePrenotazione, int chiave, long token) {
+        long adesso = System.nanoTime();
+        lockPerPrenotazione.put(codicePrenotazione, new long[]{chiave, token, adesso + ttlNanos});
+        // le prenotazioni fatte scadere da un altro nodo non passano da rilasciaPrenotazione:
+        // le loro associazioni vengono rimosse qui, dopo il TTL del lock
+        if (associazioniDaPulizia.incrementAndGet() % SOGLIA_PULIZIA == 0) {
+            lockPerPrenotazione.values().removeIf(l -> l[2] - adesso <= 0);
+        }
+    }
+
+    public boolean rilasciaPrenotazione(String codicePrenotazione) {
+        long[] lock = lockPerPrenotazione.remove(codicePrenotazione);
+        return lock != null && rilascia((int) lock[0], lock[1]);
+    }
+
+    public int getLockAttivi() {
+        int totale = 0;
+        for (Segmento segmento : segmenti) {
+            segmento.lock.lock();
+            try {
+                totale += segmento.detentori.size();
+            } finally {
+                segmento.lock.unlock();
+            }
+        }
+        return totale;
+    }
+
+    private Segmento segmentoDi(int chiave) {
+        int h = chiave * 0x9E3779B9;
+        return segmenti[(h >>> 16) & mascheraSegmenti];
+    }
+
+    private static final class Segmento {
+        private final ReentrantLock lock = new ReentrantLock();
+        // chiave -> {token, scadenza in nanoTime}
+        private final MappaPosti<long[]> detentori = new MappaPosti<>();
+        private int acquisizioniDaPulizia;
+
+        private void rimuoviScaduti(long adesso) {
+            acquisizioniDaPulizia = 0;
+            detentori.removeIf(d -> d[1] - adesso <= 0);
+        }
+    }
+}
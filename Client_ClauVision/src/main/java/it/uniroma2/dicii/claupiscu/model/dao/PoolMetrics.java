@@ -0,0 +1,92 @@
+package it.uniroma2.dicii.claupiscu.model.dao;
+
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+import it.uniroma2.dicii.claupiscu.metriche.RegistroMetriche;
+import it.uniroma2.dicii.claupiscu.metriche.RegistroMetriche.Timer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Contatori del pool di connessioni, aggiornati senza lock dai thread che usano il pool
+public final class PoolMetrics {
+    private final AtomicInteger connessioniAttive = new AtomicInteger();
+    private final AtomicInteger connessioniAperte = new AtomicInteger();
+    private final LongAdder acquisizioni = new LongAdder();
+    private final LongAdder timeoutAttesa = new LongAdder();
+    private final LongAdder attesaTotaleNanos = new LongAdder();
+    private final AtomicLong attesaMassimaNanos = new AtomicLong();
+    private final LongAdder statementCacheHit = new LongAdder();
+    private final LongAdder statementCacheMiss = new LongAdder();
+    private final Timer tempoAttesa = Metriche.getRegistro().timer("pool.attesa");
+
+    void registraAcquisizione(long attesaNanos) {
+        acquisizioni.increment();
+        attesaTotaleNanos.add(attesaNanos);
+        attesaMassimaNanos.accumulateAndGet(attesaNanos, Math::max);
+        connessioniAttive.incrementAndGet();
+        tempoAttesa.registra(attesaNanos);
+    }
+
+    void registraRilascio() {
+        connessioniAttive.decrementAndGet();
+    }
+
+    void registraTimeout() {
+        timeoutAttesa.increment();
+    }
+
+    void registraApertura() {
+        connessioniAperte.incrementAndGet();
+    }
+
+    void registraChiusura() {
+        connessioniAperte.decrementAndGet();
+    }
+
+    void registraStatement(boolean hit) {
+        if (hit) {
+            statementCacheHit.increment();
+        } else {
+            statementCacheMiss.increment();
+        }
+    }
+
+    // Indicatori del pool condiviso del processo
+    void registraIndicatori(RegistroMetriche registro) {
+        registro.indicatore("pool.connessioni.attive", this::getConnessioniAttive);
+        registro.indicatore("pool.connessioni.aperte", this::getConnessioniAperte);
+        registro.indicatore("pool.timeoutAttesa", this::getTimeoutAttesa);
+        registro.indicatore("pool.statementCacheMiss", this::getStatementCacheMiss);
+    }
+
+    public int getConnessioniAttive() { return connessioniAttive.get(); }
+    public int getConnessioniAperte() { return connessioniAperte.get(); }
+    public long getAcquisizioni() { return acquisizioni.sum(); }
+    public long getTimeoutAttesa() { return timeoutAttesa.sum(); }
+    public long getStatementCacheHit() { return statementCacheHit.sum(); }
+    public long getStatementCacheMiss() { return statementCacheMiss.sum(); }
+
+    public double getAttesaMediaMs() {
+        long n = acquisizioni.sum();
+        return n == 0 ? 0 : attesaTotaleNanos.sum() / 1_000_000.0 / n;
+    }
+
+    public double getAttesaMassimaMs() {
+        return attesaMassimaNanos.get() / 1_000_000.0;
+    }
+
+    public double getStatementCacheHitRatio() {
+        long hit = statementCacheHit.sum();
+        long totale = hit + statementCacheMiss.sum();
+        return totale == 0 ? 0 : (double) hit / totale;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Pool{attive=%d, aperte=%d, acquisizioni=%d, attesaMedia=%.3fms, attesaMax=%.3fms, " +
+                        "timeout=%d, stmtHit=%d, stmtMiss=%d}",
+                getConnessioniAttive(), getConnessioniAperte(), getAcquisizioni(), getAttesaMediaMs(),
+                getAttesaMassimaMs(), getTimeoutAttesa(), getStatementCacheHit(), getStatementCacheMiss());
+    }
+}
@@ -0,0 +1,107 @@
+package it.uniroma2.dicii.claupiscu.model.dao;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Connessione fisica presa in prestito dal {@link ConnectionPool}. Mantiene una cache LRU
+ * di PreparedStatement/CallableStatement indicizzata dal testo SQL: gli statement restituiti
+ * appartengono alla cache e non vanno chiusi dal chiamante (vanno chiusi solo i ResultSet).
+ * close() restituisce la connessione al pool.
+ */
+public final class PooledConnection implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final Connection connessione;
+    private final Map<String, PreparedStatement> cacheStatement;
+    private long ultimoUtilizzo;
+    private boolean inPrestito;
+
+    PooledConnection(ConnectionPool pool, Connection connessione, int dimensioneCache) {
+        this.pool = pool;
+        this.connessione = connessione;
+        this.ultimoUtilizzo = System.currentTimeMillis();
+        this.cacheStatement = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> piuVecchio) {
+                if (size() > dimensioneCache) {
+                    chiudiSilenziosamente(piuVecchio.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement ps = cacheStatement.get(sql);
+        boolean hit = ps != null && !ps.isClosed();
+        if (hit) {
+            ps.clearParameters();
+        } else {
+            ps = connessione.prepareStatement(sql);
+            cacheStatement.put(sql, ps);
+        }
+        pool.getMetriche().registraStatement(hit);
+        return ps;
+    }
+
+    public CallableStatement prepareCall(String sql) throws SQLException {
+        PreparedStatement ps = cacheStatement.get(sql);
+        boolean hit = ps instanceof CallableStatement && !ps.isClosed();
+        if (hit) {
+            ps.clearParameters();
+        } else {
+            ps = connessione.prepareCall(sql);
+            cacheStatement.put(sql, ps);
+        }
+        pool.getMetriche().registraStatement(hit);
+        return (CallableStatement) ps;
+    }
+
+    // Accesso diretto per le operazioni non coperte dalla cache (transazioni, metadata)
+    public Connection getConnection() {
+        return connessione;
+    }
+
+    @Override
+    public void close() {
+        if (inPrestito) {
+            inPrestito = false;
+            ultimoUtilizzo = System.currentTimeMillis();
+            pool.rilascia(this);
+        }
+    }
+
+    void presta() {
+        inPrestito = true;
+    }
+
+    long getUltimoUtilizzo() {
+        return ultimoUtilizzo;
+    }
+
+    void chiudiFisicamente() {
+        for (PreparedStatement ps : cacheStatement.values()) {
+            chiudiSilenziosamente(ps);
+        }
+        cacheStatement.clear();
+        try {
+            connessione.close();
+        } catch (SQLException ignored) {
+            // la connessione viene comunque scartata
+        }
+    }
+
+    private static void chiudiSilenziosamente(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // statement gia' invalidato lato server
+        }
+    }
+}
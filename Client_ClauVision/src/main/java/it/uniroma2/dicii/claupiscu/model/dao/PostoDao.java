@@ -1,4 +1,312 @@
 package it.uniroma2.dicii.claupiscu.model.dao;
 
+import it.uniroma2.dicii.claupiscu.exception.DAOException;
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+import it.uniroma2.dicii.claupiscu.metriche.RegistroMetriche.Timer;
+import it.uniroma2.dicii.claupiscu.model.cache.CacheOccupazione;
+import it.uniroma2.dicii.claupiscu.model.cache.LayoutSala;
+import it.uniroma2.dicii.claupiscu.model.cache.OccupazioneProiezione;
+import it.uniroma2.dicii.claupiscu.model.cache.RegistroLayout;
+import it.uniroma2.dicii.claupiscu.model.domain.Posto;
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione.StatoPrenotazione;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class PostoDao {
+    // Le righe modificate poco prima del watermark vengono rilette: una transazione che committa
+    // in ritardo puo' avere un timestamp_modifica precedente all'ultimo letto
+    private static final long MARGINE_WATERMARK_MS = 5_000;
+
+    // Layout delle sale in una riga per fila (una ogni 64 posti: num_posto arriva a 255) invece di
+    // una per posto: il bit i di posti e' il posto parola * 64 + i + 1, i gruppi seguono la chiave
+    // primaria di posto
+    private static final String COLONNE_LAYOUT =
+            "SELECT p.num_sala, MAX(s.capacita) AS capacita, p.fila, (p.num_posto - 1) DIV 64 AS parola, " +
+            "       CAST(BIT_OR(1 << ((p.num_posto - 1) % 64)) AS SIGNED) AS posti " +
+            "FROM posto p JOIN sala s ON s.num_sala = p.num_sala ";
+    private static final String RAGGRUPPA_LAYOUT =
+            "GROUP BY p.num_sala, p.fila, parola ORDER BY p.num_sala, p.fila, parola";
+    private static final String SELECT_LAYOUT = COLONNE_LAYOUT + RAGGRUPPA_LAYOUT;
+    private static final String SELECT_LAYOUT_SALA = COLONNE_LAYOUT + "WHERE p.num_sala = ? " + RAGGRUPPA_LAYOUT;
+    // Solo i posti occupati della proiezione, con le stesse maschere per fila: il layout e' nel
+    // registro. Senza posti occupati torna una riga con fila NULL, per sala e NOW
+    private static final String SELECT_OCCUPATI =
+            "SELECT MAX(pr.num_sala) AS num_sala, NOW(3) AS adesso, o.fila, (o.num_posto - 1) DIV 64 AS parola, " +
+            "       CAST(BIT_OR(1 << ((o.num_posto - 1) % 64)) AS SIGNED) AS occupati " +
+            "FROM proiezione pr " +
+            "LEFT JOIN posto_occupato o ON o.id_proiezione = pr.id_proiezione " +
+            "WHERE pr.id_proiezione = ? " +
+            "GROUP BY o.fila, parola ORDER BY o.fila, parola";
+    private static final int MASSIMO_RIGHE_MAPPA = LayoutSala.NUMERO_FILE * 4;
+    private static final String SELECT_ADESSO = "SELECT NOW(3)";
+    private static final String COLONNE_PRENOTAZIONE =
+            "SELECT fila, num_posto, stato_prenotazione, " +
+            "       TIMESTAMPDIFF(MICROSECOND, NOW(3), timestamp_scadenza) DIV 1000 AS ms_alla_scadenza " +
+            "FROM prenotazione ";
+    // usa idx_proiezione_modifica: legge solo le prenotazioni cambiate dopo il watermark.
+    // timestamp_modifica ha i millisecondi: un annullamento e la nuova temporanea sullo stesso posto
+    // possono avere lo stesso valore. Un posto ha al piu' una prenotazione attiva, quindi a parita'
+    // di istante le attive si applicano per ultime
+    private static final String SELECT_VARIAZIONI = COLONNE_PRENOTAZIONE +
+            "WHERE id_proiezione = ? AND timestamp_modifica >= ? " +
+            "ORDER BY timestamp_modifica, stato_prenotazione IN ('TEMPORANEA', 'CONFERMATA')";
+
+    private final ConnectionPool pool;
+    private final CacheOccupazione cache;
+    private final Timer tempoOccupazione;
+    private final Timer tempoMiglioriVicini;
+
+    public PostoDao() {
+        this(ConnectionPool.getInstance(), CacheOccupazione.getInstance());
+    }
+
+    public PostoDao(ConnectionPool pool, CacheOccupazione cache) {
+        this.pool = pool;
+        this.cache = cache;
+        this.tempoOccupazione = Metriche.getRegistro().timer("dao.posto.occupazione");
+        this.tempoMiglioriVicini = Metriche.getRegistro().timer("dao.posto.miglioriVicini");
+    }
+
+    // File ordinate alfabeticamente, posti di ogni fila ordinati per numero
+    public Map<Character, List<Posto>> getPostiRaggruppatiPerFila(int idProiezione) {
+        return raggruppaPerFila(getOccupazione(idProiezione));
+    }
+
+    // Nuova a ogni chiamata: la sessione aggiorna lo stato dei suoi Posto
+    public static Map<Character, List<Posto>> raggruppaPerFila(OccupazioneProiezione occupazione) {
+        LayoutSala layout = occupazione.getLayout();
+        Map<Character, List<Posto>> postiPerFila = new LinkedHashMap<>();
+        for (int f = 0; f < LayoutSala.NUMERO_FILE; f++) {
+            if (layout.getPostiInFila(f) == 0) {
+                continue;
+            }
+            List<Posto> posti = new ArrayList<>(layout.getPostiInFila(f));
+            for (int i = layout.getInizioFila(f); i < layout.getFineFila(f); i++) {
+                Posto posto = new Posto(layout.getNumSala(), layout.getFila(i), (byte) layout.getNumPosto(i));
+                posto.setStato(occupazione.isOccupato(i) ? Posto.StatoPosto.OCCUPATO : Posto.StatoPosto.DISPONIBILE);
+                posti.add(posto);
+            }
+            postiPerFila.put((char) ('A' + f), posti);
+        }
+        return postiPerFila;
+    }
+
+    /**
+     * Migliori n posti liberi e vicini nella stessa fila, il piu' possibile al centro della sala.
+     * Restituisce i posti in stato SELEZIONATO, oppure una lista vuota se non ci sono n posti vicini.
+     */
+    public List<Posto> getMiglioriPostiVicini(int idProiezione, int numeroPosti) {
+        long inizio = System.nanoTime();
+        try {
+            OccupazioneProiezione occupazione = getOccupazione(idProiezione);
+            int primo = occupazione.getIndiceLiberi().cercaMigliori(numeroPosti);
+            if (primo < 0) {
+                return List.of();
+            }
+            LayoutSala layout = occupazione.getLayout();
+            List<Posto> posti = new ArrayList<>(numeroPosti);
+            for (int i = primo; i < primo + numeroPosti; i++) {
+                Posto posto = new Posto(layout.getNumSala(), layout.getFila(i), (byte) layout.getNumPosto(i));
+                posto.setStato(Posto.StatoPosto.SELEZIONATO);
+                posti.add(posto);
+            }
+            return posti;
+        } finally {
+            tempoMiglioriVicini.registra(System.nanoTime() - inizio);
+        }
+    }
+
+    // Al primo accesso carica l'occupazione completa, poi applica solo le variazioni
+    public OccupazioneProiezione getOccupazione(int idProiezione) {
+        long inizio = System.nanoTime();
+        try {
+            OccupazioneProiezione occupazione = cache.getOccupazione(idProiezione);
+            try (PooledConnection conn = pool.getConnection()) {
+                if (occupazione == null) {
+                    occupazione = cache.registra(caricaOccupazione(conn, idProiezione));
+                } else {
+                    aggiornaOccupazione(conn, occupazione);
+                }
+            } catch (SQLException e) {
+                throw new DAOException("Errore nel caricamento dell'occupazione della proiezione " + idProiezione, e);
+            }
+            occupazione.rilasciaScadute(System.currentTimeMillis());
+            return occupazione;
+        } finally {
+            tempoOccupazione.registra(System.nanoTime() - inizio);
+        }
+    }
+
+    /**
+     * Carica in una sola lettura il layout di tutte le sale e sostituisce il registro. Da chiamare
+     * all'avvio, cosi' per ogni proiezione si leggono solo i posti occupati. Restituisce il numero
+     * di sale caricate.
+     */
+    public int caricaLayout() {
+        try (PooledConnection conn = pool.getConnection()) {
+            RegistroLayout registro = RegistroLayout.di(leggiLayout(conn.prepareStatement(SELECT_LAYOUT)));
+            cache.sostituisciRegistro(registro);
+            return registro.getNumeroSale();
+        } catch (SQLException e) {
+            throw new DAOException("Errore nel caricamento del layout delle sale", e);
+        }
+    }
+
+    // Da chiamare dopo ogni modifica dei posti di una sala, insieme a SalaDao.invalidaSala
+    public void ricaricaLayout(int numSala) {
+        try (PooledConnection conn = pool.getConnection()) {
+            LayoutSala layout = caricaLayoutSala(conn, numSala);
+            if (layout != null) {
+                cache.sostituisciLayout(layout);
+            } else {
+                cache.invalidaLayout(numSala);
+            }
+        } catch (SQLException e) {
+            throw new DAOException("Errore nel caricamento del layout della sala " + numSala, e);
+        }
+    }
+
+    private OccupazioneProiezione caricaOccupazione(PooledConnection conn, int idProiezione) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(SELECT_OCCUPATI);
+        ps.setInt(1, idProiezione);
+        char[] file = new char[MASSIMO_RIGHE_MAPPA];
+        int[] parole = new int[MASSIMO_RIGHE_MAPPA];
+        long[] occupati = new long[MASSIMO_RIGHE_MAPPA];
+        int righe = 0;
+        int numSala = 0;
+        LocalDateTime adesso = null;
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                if (adesso == null) {
+                    numSala = rs.getInt(1);
+                    adesso = rs.getTimestamp(2).toLocalDateTime();
+                }
+                String fila = rs.getString(3);
+                if (fila != null) {
+                    file[righe] = fila.charAt(0);
+                    parole[righe] = rs.getInt(4);
+                    occupati[righe] = rs.getLong(5);
+                    righe++;
+                }
+            }
+        }
+        if (adesso == null) {
+            throw new DAOException("Proiezione " + idProiezione + " inesistente");
+        }
+
+        LayoutSala layout = cache.getLayout(numSala);
+        if (layout == null) {
+            // sala aggiunta dopo l'avvio
+            LayoutSala caricato = caricaLayoutSala(conn, numSala);
+            if (caricato == null) {
+                throw new DAOException("La sala " + numSala + " della proiezione " + idProiezione + " non ha posti");
+            }
+            layout = cache.registraLayout(caricato);
+        }
+        // le temporanee scadute restano occupate finche' la pulizia non le marca SCADUTA:
+        // la variazione arriva poi con aggiornaOccupazione
+        OccupazioneProiezione occupazione = new OccupazioneProiezione(idProiezione, layout);
+        for (int i = 0; i < righe; i++) {
+            occupazione.occupaPosti(file[i], parole[i] * 64 + 1, occupati[i]);
+        }
+        occupazione.setWatermark(adesso.minusNanos(MARGINE_WATERMARK_MS * 1_000_000));
+        return occupazione;
+    }
+
+    private void aggiornaOccupazione(PooledConnection conn, OccupazioneProiezione occupazione) throws SQLException {
+        occupazione.getLockAggiornamento().lock();
+        try {
+            LocalDateTime adesso = leggiAdesso(conn);
+            PreparedStatement ps = conn.prepareStatement(SELECT_VARIAZIONI);
+            ps.setInt(1, occupazione.getIdProiezione());
+            ps.setTimestamp(2, Timestamp.valueOf(occupazione.getWatermark()));
+            applicaRighe(ps, occupazione);
+            occupazione.setWatermark(adesso.minusNanos(MARGINE_WATERMARK_MS * 1_000_000));
+        } finally {
+            occupazione.getLockAggiornamento().unlock();
+        }
+    }
+
+    private static void applicaRighe(PreparedStatement ps, OccupazioneProiezione occupazione) throws SQLException {
+        long adessoMillis = System.currentTimeMillis();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                occupazione.applica(rs.getString(1).charAt(0), rs.getInt(2),
+                        StatoPrenotazione.valueOf(rs.getString(3)), rs.getLong(4), adessoMillis);
+            }
+        }
+    }
+
+    private static LocalDateTime leggiAdesso(PooledConnection conn) throws SQLException {
+        try (ResultSet rs = conn.prepareStatement(SELECT_ADESSO).executeQuery()) {
+            rs.next();
+            return rs.getTimestamp(1).toLocalDateTime();
+        }
+    }
+
+    private static LayoutSala caricaLayoutSala(PooledConnection conn, int numSala) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(SELECT_LAYOUT_SALA);
+        ps.setInt(1, numSala);
+        List<LayoutSala> layout = leggiLayout(ps);
+        return layout.isEmpty() ? null : layout.get(0);
+    }
+
+    // Righe ordinate per sala, fila e parola: i posti escono gia' nell'ordine di LayoutSala
+    private static List<LayoutSala> leggiLayout(PreparedStatement ps) throws SQLException {
+        List<LayoutSala> layout = new ArrayList<>();
+        char[] file = new char[MASSIMO_RIGHE_MAPPA];
+        int[] parole = new int[MASSIMO_RIGHE_MAPPA];
+        long[] posti = new long[MASSIMO_RIGHE_MAPPA];
+        int righe = 0;
+        int numSala = -1;
+        int capacita = 0;
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int sala = rs.getInt(1);
+                if (sala != numSala) {
+                    if (righe > 0) {
+                        layout.add(layoutDaMappa(numSala, capacita, file, parole, posti, righe));
+                    }
+                    numSala = sala;
+                    capacita = rs.getInt(2);
+                    righe = 0;
+                }
+                file[righe] = rs.getString(3).charAt(0);
+                parole[righe] = rs.getInt(4);
+                posti[righe] = rs.getLong(5);
+                righe++;
+            }
+        }
+        if (righe > 0) {
+            layout.add(layoutDaMappa(numSala, capacita, file, parole, posti, righe));
+        }
+        return layout;
+    }
+
+    private static LayoutSala layoutDaMappa(int numSala, int capacita, char[] file, int[] parole,
+                                            long[] posti, int righe) {
+        int numeroPosti = 0;
+        for (int i = 0; i < righe; i++) {
+            numeroPosti += Long.bitCount(posti[i]);
+        }
+        char[] filaDi = new char[numeroPosti];
+        int[] postoDi = new int[numeroPosti];
+        int indice = 0;
+        for (int i = 0; i < righe; i++) {
+            for (long maschera = posti[i]; maschera != 0; maschera &= maschera - 1) {
+                filaDi[indice] = file[i];
+                postoDi[indice] = parole[i] * 64 + Long.numberOfTrailingZeros(maschera) + 1;
+                indice++;
+            }
+        }
+        return new LayoutSala((byte) numSala, capacita, filaDi, postoDi);
+    }
 }
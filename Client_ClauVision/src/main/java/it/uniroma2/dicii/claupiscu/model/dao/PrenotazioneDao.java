@@ -1,4 +1,526 @@
 package it.uniroma2.dicii.claupiscu.model.dao;
 
+import it.uniroma2.dicii.claupiscu.exception.DAOException;
+import it.uniroma2.dicii.claupiscu.metriche.EventoPrenotazione;
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+import it.uniroma2.dicii.claupiscu.metriche.RegistroMetriche;
+import it.uniroma2.dicii.claupiscu.metriche.RegistroMetriche.Timer;
+import it.uniroma2.dicii.claupiscu.model.cache.MappaPosti;
+import it.uniroma2.dicii.claupiscu.model.dao.RegistroOperazioni.Operazione;
+import it.uniroma2.dicii.claupiscu.model.domain.Posto;
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione;
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione.StatoPrenotazione;
+import it.uniroma2.dicii.claupiscu.model.domain.RisultatoPrenotazione;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
 public class PrenotazioneDao {
+    private static final String CALL_CREA = "{call CreaPrenotazioneTemporanea(?, ?, ?, ?, ?)}";
+    private static final String CALL_CREA_MULTIPLE = "{call CreaPrenotazioniMultiple(?, ?, ?)}";
+    private static final String CALL_CONFERMA = "{call ConfermaPrenotazione(?, ?, ?)}";
+    private static final String CALL_ANNULLA = "{call AnnullaPrenotazione(?, ?)}";
+    private static final String CALL_CONFERMA_MULTIPLE = "{call ConfermaPrenotazioniMultiple(?, ?, ?)}";
+    private static final String CALL_ANNULLA_MULTIPLE = "{call AnnullaPrenotazioniMultiple(?, ?)}";
+    private static final String COLONNE_PRENOTAZIONE =
+            "codice_prenotazione, id_proiezione, num_sala, fila, num_posto, data_ora_prenotazione, data_ora_conferma, " +
+            "stato_prenotazione, timestamp_creazione, ticket_pag, timestamp_conferma, timestamp_scadenza";
+    // prima le prenotazioni correnti; l'archivio (proiezioni dei mesi chiusi) solo se non e' li'
+    private static final String SELECT_PRENOTAZIONE =
+            "SELECT " + COLONNE_PRENOTAZIONE + " FROM prenotazione WHERE codice_prenotazione = ? " +
+            "UNION ALL " +
+            "SELECT " + COLONNE_PRENOTAZIONE + " FROM prenotazione_archivio WHERE codice_prenotazione = ? " +
+            "LIMIT 1";
+
+    // esiti delle procedure, da GRUPPO_NON_PRENOTATO (-3) a NESSUN_CAMBIO (2); l'ultimo timer e' per le eccezioni
+    private static final int ESITO_MINIMO = RisultatoPrenotazione.GRUPPO_NON_PRENOTATO;
+    private static final int ESITO_MASSIMO = RisultatoPrenotazione.NESSUN_CAMBIO;
+    private static final int TIMER_ERRORE = ESITO_MASSIMO - ESITO_MINIMO + 1;
+
+    private final ConnectionPool pool;
+    private final LockPostiLocale lockLocali;
+    private final RegistroOperazioni registro;
+    private final GeneratoreCodici codici;
+    private final Timer[] tempoCrea;
+    private final Timer[] tempoCreaGruppo;
+    private final Timer[] tempoConferma;
+    private final Timer[] tempoAnnulla;
+    private final Timer[] tempoConfermaGruppo;
+    private final Timer[] tempoAnnullaGruppo;
+    private final Timer tempoLettura;
+
+    public PrenotazioneDao() {
+        this(ConnectionPool.getInstance(), LockPostiLocale.getInstance(), RegistroOperazioni.getInstance());
+    }
+
+    public PrenotazioneDao(ConnectionPool pool, LockPostiLocale lockLocali) {
+        this(pool, lockLocali, RegistroOperazioni.DISATTIVATO);
+    }
+
+    public PrenotazioneDao(ConnectionPool pool, LockPostiLocale lockLocali, RegistroOperazioni registro) {
+        this(pool, lockLocali, registro, GeneratoreCodici.getInstance());
+    }
+
+    public PrenotazioneDao(ConnectionPool pool, LockPostiLocale lockLocali, RegistroOperazioni registro,
+                           GeneratoreCodici codici) {
+        this.pool = pool;
+        this.lockLocali = lockLocali;
+        this.registro = registro;
+        this.codici = codici;
+        RegistroMetriche metriche = Metriche.getRegistro();
+        this.tempoCrea = timerPerEsito(metriche, "dao.prenotazione.crea");
+        this.tempoCreaGruppo = timerPerEsito(metriche, "dao.prenotazione.creaGruppo");
+        this.tempoConferma = timerPerEsito(metriche, "dao.prenotazione.conferma");
+        this.tempoAnnulla = timerPerEsito(metriche, "dao.prenotazione.annulla");
+        this.tempoConfermaGruppo = timerPerEsito(metriche, "dao.prenotazione.confermaGruppo");
+        this.tempoAnnullaGruppo = timerPerEsito(metriche, "dao.prenotazione.annullaGruppo");
+        this.tempoLettura = metriche.timer("dao.prenotazione.leggi");
+    }
+
+    private static Timer[] timerPerEsito(RegistroMetriche metriche, String nome) {
+        Timer[] timer = new Timer[TIMER_ERRORE + 1];
+        for (int esito = ESITO_MINIMO; esito <= ESITO_MASSIMO; esito++) {
+            timer[esito - ESITO_MINIMO] = metriche.timer(nome, "esito", String.valueOf(esito));
+        }
+        timer[TIMER_ERRORE] = metriche.timer(nome, "esito", "errore");
+        return timer;
+    }
+
+    // null = eccezione
+    private static void registraTempo(Timer[] timer, Integer esito, long inizio) {
+        int i = esito == null || esito < ESITO_MINIMO || esito > ESITO_MASSIMO
+                ? TIMER_ERRORE : esito - ESITO_MINIMO;
+        timer[i].registra(System.nanoTime() - inizio);
+    }
+
+    public RisultatoPrenotazione creaPrenotazioneTemporanea(short idProiezione, char fila, byte numPosto) {
+        EventoPrenotazione evento = new EventoPrenotazione();
+        evento.begin();
+        long inizio = System.nanoTime();
+        RisultatoPrenotazione risultato = null;
+        try {
+            risultato = creaTemporanea(idProiezione, fila, numPosto);
+            return risultato;
+        } finally {
+            Integer esito = risultato == null ? null : risultato.getCodiceRisultato();
+            registraTempo(tempoCrea, esito, inizio);
+            evento.chiudi(EventoPrenotazione.CREATA, Short.toUnsignedInt(idProiezione), fila, Byte.toUnsignedInt(numPosto),
+                    risultato == null ? null : risultato.getCodicePrenotazione(),
+                    esito == null ? RisultatoPrenotazione.ERRORE_GENERICO : esito);
+        }
+    }
+
+    private RisultatoPrenotazione creaTemporanea(short idProiezione, char fila, byte numPosto) {
+        int id = Short.toUnsignedInt(idProiezione);
+        if (!lockLocali.gestisce(id)) {
+            // proiezione condivisa con altri nodi: decide solo posto_occupato
+            return registraCreazione(chiamaCreaPrenotazione(id, fila, numPosto));
+        }
+
+        int chiave = LockPostiLocale.chiave(id, fila, Byte.toUnsignedInt(numPosto));
+        long token = lockLocali.acquisisci(chiave);
+        if (token == 0) {
+            // un'altra sessione di questo nodo sta gia' prenotando il posto: nessun round trip
+            return new RisultatoPrenotazione(null, RisultatoPrenotazione.POSTO_OCCUPATO);
+        }
+        RisultatoPrenotazione risultato = null;
+        try {
+            risultato = chiamaCreaPrenotazione(id, fila, numPosto);
+            if (risultato.isSuccesso()) {
+                lockLocali.associa(risultato.getCodicePrenotazione(), chiave, token);
+            }
+            return registraCreazione(risultato);
+        } finally {
+            if (risultato == null || !risultato.isSuccesso()) {
+                lockLocali.rilascia(chiave, token);
+            }
+        }
+    }
+
+    private RisultatoPrenotazione chiamaCreaPrenotazione(int idProiezione, char fila, byte numPosto) {
+        try (PooledConnection conn = pool.getConnection()) {
+            CallableStatement cs = conn.prepareCall(CALL_CREA);
+            cs.setInt(1, idProiezione);
+            cs.setString(2, String.valueOf(fila));
+            cs.setInt(3, Byte.toUnsignedInt(numPosto));
+            cs.setString(4, codici.nuovoCodice());
+            cs.registerOutParameter(4, Types.VARCHAR);
+            cs.registerOutParameter(5, Types.INTEGER);
+            cs.execute();
+            int risultato = cs.getInt(5);
+            return new RisultatoPrenotazione(risultato == RisultatoPrenotazione.SUCCESSO ? cs.getString(4) : null, risultato);
+        } catch (SQLException e) {
+            throw new DAOException("Errore nella creazione della prenotazione temporanea", e);
+        }
+    }
+
+    private RisultatoPrenotazione registraCreazione(RisultatoPrenotazione risultato) {
+        if (risultato.isSuccesso()) {
+            registro.registra(Operazione.PRENOTAZIONE_CREATA, risultato.getCodicePrenotazione());
+            FeedPosti.getInstance().segnala();
+        }
+        return risultato;
+    }
+
+    private List<RisultatoPrenotazione> registraCreazioni(List<RisultatoPrenotazione> risultati) {
+        boolean create = false;
+        for (RisultatoPrenotazione risultato : risultati) {
+            if (risultato.isSuccesso()) {
+                registro.registra(Operazione.PRENOTAZIONE_CREATA, risultato.getCodicePrenotazione());
+                create = true;
+            }
+        }
+        if (create) {
+            FeedPosti.getInstance().segnala();
+        }
+        return risultati;
+    }
+
+    /**
+     * Prenota tutti i posti indicati della stessa proiezione in un'unica transazione: o vengono
+     * prenotati tutti o nessuno. Restituisce un risultato per posto, nello stesso ordine della lista.
+     */
+    public List<RisultatoPrenotazione> creaPrenotazioniTemporanee(short idProiezione, List<Posto> posti) {
+        if (posti.isEmpty()) {
+            throw new IllegalArgumentException("Nessun posto da prenotare");
+        }
+        // un evento per posto, tutti con la durata della chiamata di gruppo
+        EventoPrenotazione[] eventi = new EventoPrenotazione[posti.size()];
+        for (int i = 0; i < eventi.length; i++) {
+            eventi[i] = new EventoPrenotazione();
+            eventi[i].begin();
+        }
+        long inizio = System.nanoTime();
+        List<RisultatoPrenotazione> risultati = null;
+        try {
+            risultati = creaTemporanee(idProiezione, posti);
+            return risultati;
+        } finally {
+            registraTempo(tempoCreaGruppo, risultati == null ? null : esitoGruppo(risultati), inizio);
+            for (int i = 0; i < eventi.length; i++) {
+                RisultatoPrenotazione risultato = risultati == null ? null : risultati.get(i);
+                eventi[i].chiudi(EventoPrenotazione.CREATA, Short.toUnsignedInt(idProiezione),
+                        Character.toUpperCase(posti.get(i).getFila()), posti.get(i).getNumPostoInt(),
+                        risultato == null ? null : risultato.getCodicePrenotazione(),
+                        risultato == null ? RisultatoPrenotazione.ERRORE_GENERICO : risultato.getCodiceRisultato());
+            }
+        }
+    }
+
+    // 1 se il gruppo e' prenotato, altrimenti l'esito del posto che l'ha impedito
+    private static int esitoGruppo(List<RisultatoPrenotazione> risultati) {
+        for (RisultatoPrenotazione risultato : risultati) {
+            if (risultato.getCodiceRisultato() != RisultatoPrenotazione.SUCCESSO
+                    && risultato.getCodiceRisultato() != RisultatoPrenotazione.GRUPPO_NON_PRENOTATO) {
+                return risultato.getCodiceRisultato();
+            }
+        }
+        return risultati.get(0).getCodiceRisultato();
+    }
+
+    private List<RisultatoPrenotazione> creaTemporanee(short idProiezione, List<Posto> posti) {
+        int id = Short.toUnsignedInt(idProiezione);
+        int[] chiavi = new int[posti.size()];
+        MappaPosti<Integer> indicePerChiave = new MappaPosti<>(chiavi.length);
+        for (int i = 0; i < chiavi.length; i++) {
+            Posto posto = posti.get(i);
+            chiavi[i] = LockPostiLocale.chiave(id, Character.toUpperCase(posto.getFila()), posto.getNumPostoInt());
+            if (indicePerChiave.putIfAbsent(chiavi[i], i) != null) {
+                throw new IllegalArgumentException("Posto ripetuto: " + posto.getCodiceCompleto());
+            }
+        }
+        if (!lockLocali.gestisce(id)) {
+            return registraCreazioni(chiamaCreaPrenotazioni(id, posti, indicePerChiave));
+        }
+
+        // tutti i lock o nessuno: al primo posto gia' bloccato si rilasciano quelli presi
+        long[] token = new long[chiavi.length];
+        for (int i = 0; i < chiavi.length; i++) {
+            token[i] = lockLocali.acquisisci(chiavi[i]);
+            if (token[i] == 0) {
+                rilasciaLock(chiavi, token, i);
+                List<RisultatoPrenotazione> risultati = new ArrayList<>(posti.size());
+                for (int j = 0; j < posti.size(); j++) {
+                    int esito = j == i ? RisultatoPrenotazione.POSTO_OCCUPATO : RisultatoPrenotazione.GRUPPO_NON_PRENOTATO;
+                    risultati.add(new RisultatoPrenotazione(null, esito, posti.get(j)));
+                }
+                return risultati;
+            }
+        }
+        List<RisultatoPrenotazione> risultati = null;
+        try {
+            risultati = chiamaCreaPrenotazioni(id, posti, indicePerChiave);
+            if (risultati.get(0).isSuccesso()) {
+                for (int i = 0; i < chiavi.length; i++) {
+                    lockLocali.associa(risultati.get(i).getCodicePrenotazione(), chiavi[i], token[i]);
+                }
+            }
+            return registraCreazioni(risultati);
+        } finally {
+            if (risultati == null || !risultati.get(0).isSuccesso()) {
+                rilasciaLock(chiavi, token, chiavi.length);
+            }
+        }
+    }
+
+    private List<RisultatoPrenotazione> chiamaCreaPrenotazioni(int idProiezione, List<Posto> posti,
+                                                               MappaPosti<Integer> indicePerChiave) {
+        StringBuilder json = new StringBuilder("[");
+        for (Posto posto : posti) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("{\"fila\":\"").append(Character.toUpperCase(posto.getFila()))
+                    .append("\",\"num_posto\":").append(posto.getNumPostoInt())
+                    .append(",\"codice\":\"").append(codici.nuovoCodice()).append("\"}");
+        }
+        json.append(']');
+
+        try (PooledConnection conn = pool.getConnection()) {
+            CallableStatement cs = conn.prepareCall(CALL_CREA_MULTIPLE);
+            cs.setInt(1, idProiezione);
+            cs.setString(2, json.toString());
+            cs.registerOutParameter(3, Types.INTEGER);
+            boolean haRisultati = cs.execute();
+
+            // la procedura restituisce una riga per posto; se termina per un errore SQL non ne restituisce
+            RisultatoPrenotazione[] perPosto = new RisultatoPrenotazione[posti.size()];
+            if (haRisultati) {
+                try (ResultSet rs = cs.getResultSet()) {
+                    while (rs.next()) {
+                        int chiave = LockPostiLocale.chiave(idProiezione, rs.getString("fila").charAt(0), rs.getInt("num_posto"));
+                        int i = indicePerChiave.get(chiave);
+                        perPosto[i] = new RisultatoPrenotazione(rs.getString("codice_prenotazione"), rs.getInt("esito"), posti.get(i));
+                    }
+                }
+            }
+            int risultato = cs.getInt(3);
+            List<RisultatoPrenotazione> risultati = new ArrayList<>(perPosto.length);
+            for (int i = 0; i < perPosto.length; i++) {
+                risultati.add(perPosto[i] != null ? perPosto[i] : new RisultatoPrenotazione(null, risultato, posti.get(i)));
+            }
+            return risultati;
+        } catch (SQLException e) {
+            throw new DAOException("Errore nella creazione delle prenotazioni temporanee di gruppo", e);
+        }
+    }
+
+    private void rilasciaLock(int[] chiavi, long[] token, int quanti) {
+        for (int i = 0; i < quanti; i++) {
+            lockLocali.rilascia(chiavi[i], token[i]);
+        }
+    }
+
+    // Cerca anche tra le prenotazioni archiviate; null se il codice non esiste
+    public Prenotazione getPrenotazione(String codicePrenotazione) {
+        // un codice del generatore con il controllo sbagliato e' un errore di battitura: niente query
+        if (codicePrenotazione.length() == GeneratoreCodici.LUNGHEZZA && !GeneratoreCodici.isValido(codicePrenotazione)) {
+            return null;
+        }
+        long inizio = System.nanoTime();
+        try (PooledConnection conn = pool.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(SELECT_PRENOTAZIONE);
+            ps.setString(1, codicePrenotazione);
+            ps.setString(2, codicePrenotazione);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? leggiPrenotazione(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new DAOException("Errore nella lettura della prenotazione " + codicePrenotazione, e);
+        } finally {
+            tempoLettura.registra(System.nanoTime() - inizio);
+        }
+    }
+
+    private static Prenotazione leggiPrenotazione(ResultSet rs) throws SQLException {
+        Prenotazione prenotazione = new Prenotazione(rs.getString("codice_prenotazione"),
+                (short) rs.getInt("id_proiezione"), (byte) rs.getInt("num_sala"),
+                rs.getString("fila").charAt(0), (byte) rs.getInt("num_posto"));
+        prenotazione.setDataOraPrenotazione(dataOra(rs.getTimestamp("data_ora_prenotazione")));
+        prenotazione.setDataOraConferma(dataOra(rs.getTimestamp("data_ora_conferma")));
+        prenotazione.setStatoPrenotazione(StatoPrenotazione.valueOf(rs.getString("stato_prenotazione")));
+        prenotazione.setTimestampCreazione(dataOra(rs.getTimestamp("timestamp_creazione")));
+        prenotazione.setTicketPag(rs.getString("ticket_pag"));
+        prenotazione.setTimestampConferma(dataOra(rs.getTimestamp("timestamp_conferma")));
+        prenotazione.setTimestampScadenza(dataOra(rs.getTimestamp("timestamp_scadenza")));
+        return prenotazione;
+    }
+
+    private static LocalDateTime dataOra(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    public boolean confermaPrenotazione(String codicePrenotazione, String ticketPag) {
+        return conferma(codicePrenotazione, ticketPag, 0, (char) 0, 0);
+    }
+
+    // Come confermaPrenotazione(codice, ticket); proiezione e posto finiscono anche nell'evento JFR
+    public boolean confermaPrenotazione(Prenotazione prenotazione, String ticketPag) {
+        return conferma(prenotazione.getCodicePrenotazione(), ticketPag,
+                prenotazione.getIdProiezioneInt(), prenotazione.getFila(), prenotazione.getNumPostoInt());
+    }
+
+    private boolean conferma(String codicePrenotazione, String ticketPag, int idProiezione, char fila, int numPosto) {
+        EventoPrenotazione evento = new EventoPrenotazione();
+        evento.begin();
+        long inizio = System.nanoTime();
+        Integer esito = null;
+        try (PooledConnection conn = pool.getConnection()) {
+            CallableStatement cs = conn.prepareCall(CALL_CONFERMA);
+            cs.setString(1, codicePrenotazione);
+            cs.setString(2, ticketPag);
+            cs.registerOutParameter(3, Types.INTEGER);
+            cs.execute();
+            esito = cs.getInt(3);
+        } catch (SQLException e) {
+            throw new DAOException("Errore nella conferma della prenotazione " + codicePrenotazione, e);
+        } finally {
+            registraTempo(tempoConferma, esito, inizio);
+            evento.chiudi(EventoPrenotazione.CONFERMATA, idProiezione, fila, numPosto, codicePrenotazione,
+                    esito == null ? RisultatoPrenotazione.ERRORE_GENERICO : esito);
+        }
+        boolean confermata = esito == 1;
+        if (confermata) {
+            // da qui il posto e' protetto dalla riga CONFERMATA
+            lockLocali.rilasciaPrenotazione(codicePrenotazione);
+            registro.registra(Operazione.PRENOTAZIONE_CONFERMATA, codicePrenotazione);
+        }
+        return confermata;
+    }
+
+    public boolean annullaPrenotazione(String codicePrenotazione) {
+        return annulla(codicePrenotazione, 0, (char) 0, 0);
+    }
+
+    // Come annullaPrenotazione(codice); proiezione e posto finiscono anche nell'evento JFR
+    public boolean annullaPrenotazione(Prenotazione prenotazione) {
+        return annulla(prenotazione.getCodicePrenotazione(),
+                prenotazione.getIdProiezioneInt(), prenotazione.getFila(), prenotazione.getNumPostoInt());
+    }
+
+    private boolean annulla(String codicePrenotazione, int idProiezione, char fila, int numPosto) {
+        EventoPrenotazione evento = new EventoPrenotazione();
+        evento.begin();
+        long inizio = System.nanoTime();
+        Integer esito = null;
+        try (PooledConnection conn = pool.getConnection()) {
+            CallableStatement cs = conn.prepareCall(CALL_ANNULLA);
+            cs.setString(1, codicePrenotazione);
+            cs.registerOutParameter(2, Types.INTEGER);
+            cs.execute();
+            esito = cs.getInt(2);
+        } catch (SQLException e) {
+            throw new DAOException("Errore nell'annullamento della prenotazione " + codicePrenotazione, e);
+        } finally {
+            registraTempo(tempoAnnulla, esito, inizio);
+            evento.chiudi(EventoPrenotazione.ANNULLATA, idProiezione, fila, numPosto, codicePrenotazione,
+                    esito == null ? RisultatoPrenotazione.ERRORE_GENERICO : esito);
+        }
+        // gia' annullata o scaduta: per il chiamante e' annullata, ma non c'e' nessuna transizione da registrare
+        boolean annullata = esito == RisultatoPrenotazione.SUCCESSO || esito == RisultatoPrenotazione.NESSUN_CAMBIO;
+        if (annullata) {
+            lockLocali.rilasciaPrenotazione(codicePrenotazione);
+        }
+        if (esito == RisultatoPrenotazione.SUCCESSO) {
+            registro.registra(Operazione.PRENOTAZIONE_ANNULLATA, codicePrenotazione);
+            FeedPosti.getInstance().segnala();
+        }
+        return annullata;
+    }
+
+    /**
+     * Conferma con lo stesso ticket tutte le temporanee di un gruppo in un'unica transazione:
+     * o vengono confermate tutte o nessuna.
+     */
+    public boolean confermaPrenotazioni(List<Prenotazione> prenotazioni, String ticketPag) {
+        boolean confermate = chiamaGruppo(CALL_CONFERMA_MULTIPLE, prenotazioni, true, ticketPag, null,
+                tempoConfermaGruppo, EventoPrenotazione.CONFERMATA, "Errore nella conferma delle prenotazioni di gruppo") == 1;
+        if (confermate) {
+            for (Prenotazione prenotazione : prenotazioni) {
+                lockLocali.rilasciaPrenotazione(prenotazione.getCodicePrenotazione());
+                registro.registra(Operazione.PRENOTAZIONE_CONFERMATA, prenotazione.getCodicePrenotazione());
+            }
+        }
+        return confermate;
+    }
+
+    // Annulla tutte le prenotazioni di un gruppo in un'unica transazione, o nessuna
+    public boolean annullaPrenotazioni(List<Prenotazione> prenotazioni) {
+        // la procedura restituisce i codici che ha davvero annullato: solo quelli vanno nel registro
+        List<String> cambiate = new ArrayList<>(prenotazioni.size());
+        boolean annullate = chiamaGruppo(CALL_ANNULLA_MULTIPLE, prenotazioni, false, null, cambiate,
+                tempoAnnullaGruppo, EventoPrenotazione.ANNULLATA, "Errore nell'annullamento delle prenotazioni di gruppo") == 1;
+        if (annullate) {
+            for (Prenotazione prenotazione : prenotazioni) {
+                lockLocali.rilasciaPrenotazione(prenotazione.getCodicePrenotazione());
+            }
+            for (String codice : cambiate) {
+                registro.registra(Operazione.PRENOTAZIONE_ANNULLATA, codice);
+            }
+            if (!cambiate.isEmpty()) {
+                FeedPosti.getInstance().segnala();
+            }
+        }
+        return annullate;
+    }
+
+    // conTicket dice se la procedura ha il parametro ticket_pag, che viene passato anche se null;
+    // se cambiate non e' null vi finiscono i codici restituiti dalla procedura
+    private int chiamaGruppo(String chiamata, List<Prenotazione> prenotazioni, boolean conTicket, String ticketPag,
+                             List<String> cambiate, Timer[] timer, String tipoEvento, String messaggioErrore) {
+        if (prenotazioni.isEmpty()) {
+            throw new IllegalArgumentException("Nessuna prenotazione nel gruppo");
+        }
+        // un evento per posto, tutti con la durata della chiamata di gruppo
+        EventoPrenotazione[] eventi = new EventoPrenotazione[prenotazioni.size()];
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < eventi.length; i++) {
+            eventi[i] = new EventoPrenotazione();
+            eventi[i].begin();
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(prenotazioni.get(i).getCodicePrenotazione()).append('"');
+        }
+        json.append(']');
+
+        long inizio = System.nanoTime();
+        Integer esito = null;
+        try (PooledConnection conn = pool.getConnection()) {
+            CallableStatement cs = conn.prepareCall(chiamata);
+            int parametro = 1;
+            cs.setString(parametro++, json.toString());
+            if (conTicket) {
+                cs.setString(parametro++, ticketPag);
+            }
+            cs.registerOutParameter(parametro, Types.INTEGER);
+            boolean haRisultati = cs.execute();
+            if (haRisultati && cambiate != null) {
+                try (ResultSet rs = cs.getResultSet()) {
+                    while (rs.next()) {
+                        cambiate.add(rs.getString(1));
+                    }
+                }
+            }
+            esito = cs.getInt(parametro);
+            return esito;
+        } catch (SQLException e) {
+            throw new DAOException(messaggioErrore, e);
+        } finally {
+            registraTempo(timer, esito, inizio);
+            for (int i = 0; i < eventi.length; i++) {
+                Prenotazione prenotazione = prenotazioni.get(i);
+                eventi[i].chiudi(tipoEvento, prenotazione.getIdProiezioneInt(), prenotazione.getFila(),
+                        prenotazione.getNumPostoInt(), prenotazione.getCodicePrenotazione(),
+                        esito == null ? RisultatoPrenotazione.ERRORE_GENERICO : esito);
+            }
+        }
+    }
 }
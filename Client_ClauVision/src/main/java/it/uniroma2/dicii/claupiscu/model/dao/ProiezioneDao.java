@@ -1,4 +1,178 @@
 package it.uniroma2.dicii.claupiscu.model.dao;
 
+import it.uniroma2.dicii.claupiscu.config.Configurazione;
+import it.uniroma2.dicii.claupiscu.exception.DAOException;
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+import it.uniroma2.dicii.claupiscu.metriche.RegistroMetriche.Timer;
+import it.uniroma2.dicii.claupiscu.model.cache.CacheCatalogo;
+import it.uniroma2.dicii.claupiscu.model.cache.CalendarioProiezioni;
+import it.uniroma2.dicii.claupiscu.model.domain.Film;
+import it.uniroma2.dicii.claupiscu.model.domain.Proiezione;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 public class ProiezioneDao {
+    // Proiezioni prenotabili: iniziano tra 30 minuti e 2 ore
+    private static final Duration INIZIO_FINESTRA = Duration.ofMinutes(30);
+    private static final Duration FINE_FINESTRA = Duration.ofHours(2);
+    // come in PostoDao: le righe modificate poco prima del watermark vengono rilette
+    private static final long MARGINE_WATERMARK_MS = 5_000;
+
+    private static final String COLONNE =
+            "SELECT id_proiezione, titolo_film, num_sala, prezzo, data_ora_inizio, data_ora_fine, stato_proiezione " +
+            "FROM proiezione ";
+    // usa idx_data_inizio; film e sala arrivano dalla cache del catalogo, non dal join
+    private static final String SELECT_INTERVALLO = COLONNE +
+            "WHERE data_ora_inizio >= ? AND data_ora_inizio < ? AND stato_proiezione = 'PROGRAMMATA'";
+    // usa idx_modifica: solo le proiezioni inserite o cambiate dopo il watermark
+    private static final String SELECT_VARIAZIONI = COLONNE +
+            "WHERE timestamp_modifica >= ? ORDER BY timestamp_modifica";
+    private static final String SELECT_ADESSO = "SELECT NOW(3)";
+
+    private final ConnectionPool pool;
+    private final FilmDao filmDao;
+    private final SalaDao salaDao;
+    private final CalendarioProiezioni calendario;
+    private final Duration orizzonte;
+    private final long aggiornamentoNanos;
+    private final Timer tempoProssime;
+
+    public ProiezioneDao() {
+        this(ConnectionPool.getInstance(), CacheCatalogo.getInstance(), CalendarioProiezioni.getInstance(),
+                Duration.ofHours(Configurazione.getLong("calendario.orizzonteOre", 24)),
+                Configurazione.getLong("calendario.aggiornamentoMs", 5000));
+    }
+
+    public ProiezioneDao(ConnectionPool pool, CacheCatalogo catalogo, CalendarioProiezioni calendario,
+                         Duration orizzonte, long aggiornamentoMs) {
+        if (orizzonte.compareTo(FINE_FINESTRA.multipliedBy(2)) < 0) {
+            throw new IllegalArgumentException("L'orizzonte del calendario deve coprire almeno due finestre");
+        }
+        this.pool = pool;
+        this.filmDao = new FilmDao(pool, catalogo);
+        this.salaDao = new SalaDao(pool, catalogo);
+        this.calendario = calendario;
+        this.orizzonte = orizzonte;
+        this.aggiornamentoNanos = TimeUnit.MILLISECONDS.toNanos(aggiornamentoMs);
+        this.tempoProssime = Metriche.getRegistro().timer("dao.proiezione.prossime");
+    }
+
+    // Letta dal calendario in memoria; il database viene interrogato al piu' ogni calendario.aggiornamentoMs
+    public List<Proiezione> getProiezioniProssime() {
+        long inizio = System.nanoTime();
+        try {
+            aggiornaCalendario();
+            LocalDateTime adesso = LocalDateTime.now().plusNanos(calendario.getScartoOrologioMs() * 1_000_000);
+            return calendario.getFinestra(adesso.plus(INIZIO_FINESTRA), adesso.plus(FINE_FINESTRA));
+        } finally {
+            tempoProssime.registra(System.nanoTime() - inizio);
+        }
+    }
+
+    private void aggiornaCalendario() {
+        if (calendario.isCaricato() && !daAggiornare()) {
+            return;
+        }
+        calendario.getLockAggiornamento().lock();
+        try {
+            // un altro thread puo' aver appena aggiornato mentre si aspettava il lock
+            if (calendario.isCaricato() && !daAggiornare()) {
+                return;
+            }
+            try (PooledConnection conn = pool.getConnection()) {
+                LocalDateTime adesso = leggiAdesso(conn);
+                calendario.setScartoOrologioMs(Duration.between(LocalDateTime.now(), adesso).toMillis());
+                LocalDateTime watermark = adesso.minusNanos(MARGINE_WATERMARK_MS * 1_000_000);
+
+                if (!calendario.isCaricato()) {
+                    caricaIntervallo(conn, adesso, adesso.plus(orizzonte));
+                } else {
+                    applicaVariazioni(conn);
+                    // consumata meta' dell'orizzonte: si carica il tratto successivo
+                    if (!adesso.plus(orizzonte.dividedBy(2)).isBefore(calendario.getCaricatoFino())) {
+                        caricaIntervallo(conn, calendario.getCaricatoFino(), adesso.plus(orizzonte));
+                    }
+                    calendario.scartaPrimaDi(adesso);
+                }
+                calendario.setWatermark(watermark);
+                calendario.setUltimoAggiornamentoNanos(System.nanoTime());
+            } catch (SQLException e) {
+                throw new DAOException("Errore nell'aggiornamento del calendario delle proiezioni", e);
+            }
+        } finally {
+            calendario.getLockAggiornamento().unlock();
+        }
+    }
+
+    private boolean daAggiornare() {
+        return System.nanoTime() - calendario.getUltimoAggiornamentoNanos() >= aggiornamentoNanos;
+    }
+
+    private void caricaIntervallo(PooledConnection conn, LocalDateTime da, LocalDateTime a) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(SELECT_INTERVALLO);
+        ps.setTimestamp(1, Timestamp.valueOf(da));
+        ps.setTimestamp(2, Timestamp.valueOf(a));
+        for (Proiezione proiezione : leggiProiezioni(conn, ps)) {
+            calendario.applica(proiezione);
+        }
+        calendario.setCaricatoFino(a);
+    }
+
+    // Proiezioni oltre caricatoFino vengono ignorate: arriveranno con il prossimo tratto
+    private void applicaVariazioni(PooledConnection conn) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(SELECT_VARIAZIONI);
+        ps.setTimestamp(1, Timestamp.valueOf(calendario.getWatermark()));
+        LocalDateTime caricatoFino = calendario.getCaricatoFino();
+        for (Proiezione proiezione : leggiProiezioni(conn, ps)) {
+            if (proiezione.getDataOraInizio().isBefore(caricatoFino)) {
+                calendario.applica(proiezione);
+            } else {
+                calendario.rimuovi(proiezione.getIdProiezioneInt());
+            }
+        }
+    }
+
+    private List<Proiezione> leggiProiezioni(PooledConnection conn, PreparedStatement ps) throws SQLException {
+        List<Proiezione> proiezioni = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                proiezioni.add(mappaProiezione(rs));
+            }
+        }
+        // a ResultSet chiuso: i miss della cache riusano la stessa connessione
+        for (Proiezione proiezione : proiezioni) {
+            Film film = filmDao.getFilmByTitolo(conn, proiezione.getTitoloFilm());
+            proiezione.setFilm(film);
+            proiezione.setDurataMinuti(film.getDurataMinuti());
+            proiezione.setSala(salaDao.getSala(conn, proiezione.getNumSalaInt()));
+        }
+        return proiezioni;
+    }
+
+    private static LocalDateTime leggiAdesso(PooledConnection conn) throws SQLException {
+        try (ResultSet rs = conn.prepareStatement(SELECT_ADESSO).executeQuery()) {
+            rs.next();
+            return rs.getTimestamp(1).toLocalDateTime();
+        }
+    }
+
+    private static Proiezione mappaProiezione(ResultSet rs) throws SQLException {
+        Proiezione proiezione = new Proiezione();
+        proiezione.setIdProiezione((short) rs.getInt("id_proiezione"));
+        proiezione.setTitoloFilm(rs.getString("titolo_film"));
+        proiezione.setNumSala((byte) rs.getInt("num_sala"));
+        proiezione.setPrezzo(rs.getBigDecimal("prezzo"));
+        proiezione.setDataOraInizio(rs.getTimestamp("data_ora_inizio").toLocalDateTime());
+        proiezione.setDataOraFine(rs.getTimestamp("data_ora_fine").toLocalDateTime());
+        proiezione.setStatoProiezione(Proiezione.StatoProiezione.valueOf(rs.getString("stato_proiezione")));
+        return proiezione;
+    }
 }
@@ -0,0 +1,244 @@
+package it.uniroma2.dicii.claupiscu.model.dao;
+
+import it.uniroma2.dicii.claupiscu.config.Configurazione;
+import it.uniroma2.dicii.claupiscu.exception.DAOException;
+import it.uniroma2.dicii.claupiscu.metriche.EventoPrenotazione;
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+import it.uniroma2.dicii.claupiscu.metriche.RegistroMetriche;
+import it.uniroma2.dicii.claupiscu.model.dao.RegistroOperazioni.Operazione;
+
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Scadenza delle temporanee sul database ogni pochi secondi (scadenze.intervalloSecondi), invece
+ * di attendere i 5 minuti dell'evento cleanup_prenotazioni_scadute. Ogni passata chiama
+ * ScadiPrenotazioni a blocchi di scadenze.blocco righe, una transazione breve per blocco, finche'
+ * non restano temporanee scadute. Piu' nodi possono eseguirla insieme: la procedura salta le
+ * righe gia' bloccate da un altro.
+ */
+public final class PuliziaScadenze {
+    private static final String CALL_SCADI = "{call ScadiPrenotazioni(?, ?, ?, ?)}";
+
+    private static volatile PuliziaScadenze instance;
+
+    private final ConnectionPool pool;
+    private final LockPostiLocale lockLocali;
+    private final RegistroOperazioni registro;
+    private final int blocco;
+    private final long intervalloMs;
+    private final List<Consumer<Esito>> ascoltatori = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService esecutore;
+
+    private final LongAdder passate = new LongAdder();
+    private final LongAdder liberatiTotali = new LongAdder();
+    private final LongAdder errori = new LongAdder();
+    private final AtomicLong durataMassimaNanos = new AtomicLong();
+    private volatile Esito ultimoEsito;
+    private final RegistroMetriche.Timer tempoPassata;
+    private final RegistroMetriche.Contatore scaduteRegistrate;
+
+    public PuliziaScadenze(ConnectionPool pool, LockPostiLocale lockLocali, RegistroOperazioni registro,
+                           int blocco, long intervalloMs) {
+        if (blocco <= 0) {
+            throw new IllegalArgumentException("La dimensione del blocco deve essere positiva");
+        }
+        this.pool = pool;
+        this.lockLocali = lockLocali;
+        this.registro = registro;
+        this.blocco = blocco;
+        this.intervalloMs = intervalloMs;
+        this.tempoPassata = Metriche.getRegistro().timer("scadenze.passata");
+        this.scaduteRegistrate = Metriche.getRegistro().contatore("scadenze.liberate");
+    }
+
+    public static PuliziaScadenze getInstance() {
+        PuliziaScadenze pulizia = instance;
+        if (pulizia == null) {
+            synchronized (PuliziaScadenze.class) {
+                pulizia = instance;
+                if (pulizia == null) {
+                    pulizia = new PuliziaScadenze(ConnectionPool.getInstance(), LockPostiLocale.getInstance(),
+                            RegistroOperazioni.getInstance(),
+                            Configurazione.getInt("scadenze.blocco", 200),
+                            TimeUnit.SECONDS.toMillis(Configurazione.getLong("scadenze.intervalloSecondi", 5)));
+                    instance = pulizia;
+                }
+            }
+        }
+        return pulizia;
+    }
+
+    // Avvia le passate periodiche su un thread daemon; chiamate successive non fanno nulla
+    public synchronized void avvia() {
+        if (esecutore != null || intervalloMs <= 0) {
+            return;
+        }
+        esecutore = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pulizia-scadenze");
+            t.setDaemon(true);
+            return t;
+        });
+        esecutore.scheduleWithFixedDelay(() -> {
+            try {
+                esegui();
+            } catch (DAOException e) {
+                // database non raggiungibile: si riprova alla prossima passata
+                errori.increment();
+                System.err.println("Pulizia scadenze fallita: " + e.getMessage());
+            }
+        }, intervalloMs, intervalloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Una passata completa: restituisce quante prenotazioni ha fatto scadere. I posti tenuti da
+     * questo nodo vengono rilasciati anche nei lock in memoria, dopo aver restituito la connessione:
+     * il registro delle operazioni puo' attendere e ha bisogno a sua volta del pool.
+     */
+    public synchronized Esito esegui() {
+        long inizio = System.nanoTime();
+        int liberati = 0;
+        int blocchi = 0;
+        Timestamp dopoScadenza = null;
+        String dopoCodice = null;
+        List<Scaduta> scaduteNellaPassata = new ArrayList<>();
+        try (PooledConnection conn = pool.getConnection()) {
+            CallableStatement cs = conn.prepareCall(CALL_SCADI);
+            int scadute;
+            do {
+                cs.setInt(1, blocco);
+                cs.setTimestamp(2, dopoScadenza);
+                cs.setString(3, dopoCodice);
+                cs.registerOutParameter(2, Types.TIMESTAMP);
+                cs.registerOutParameter(3, Types.VARCHAR);
+                cs.registerOutParameter(4, Types.INTEGER);
+                if (cs.execute()) {
+                    try (ResultSet rs = cs.getResultSet()) {
+                        while (rs.next()) {
+                            scaduteNellaPassata.add(new Scaduta(rs.getString("codice_prenotazione"),
+                                    rs.getInt("id_proiezione"), rs.getString("fila").charAt(0), rs.getInt("num_posto")));
+                        }
+                    }
+                }
+                scadute = cs.getInt(4);
+                dopoScadenza = cs.getTimestamp(2);
+                dopoCodice = cs.getString(3);
+                liberati += scadute;
+                blocchi++;
+            } while (scadute == blocco);
+        } catch (SQLException e) {
+            throw new DAOException("Errore nella scadenza delle prenotazioni temporanee", e);
+        }
+
+        for (Scaduta scaduta : scaduteNellaPassata) {
+            lockLocali.rilasciaPrenotazione(scaduta.codice);
+            registro.registra(Operazione.PRENOTAZIONE_SCADUTA, scaduta.codice);
+            new EventoPrenotazione().chiudi(EventoPrenotazione.SCADUTA, scaduta.idProiezione,
+                    scaduta.fila, scaduta.numPosto, scaduta.codice, 1);
+        }
+        if (liberati > 0) {
+            FeedPosti.getInstance().segnala();
+        }
+        Esito esito = new Esito(liberati, blocchi, System.nanoTime() - inizio);
+        tempoPassata.registra(esito.durataNanos);
+        scaduteRegistrate.incrementa(liberati);
+        passate.increment();
+        liberatiTotali.add(liberati);
+        durataMassimaNanos.accumulateAndGet(esito.durataNanos, Math::max);
+        ultimoEsito = esito;
+        for (Consumer<Esito> ascoltatore : ascoltatori) {
+            ascoltatore.accept(esito);
+        }
+        return esito;
+    }
+
+    // Chiamato dal thread della pulizia dopo ogni passata: deve essere breve
+    public void aggiungiAscoltatore(Consumer<Esito> ascoltatore) {
+        ascoltatori.add(ascoltatore);
+    }
+
+    public synchronized void chiudi() {
+        if (esecutore != null) {
+            esecutore.shutdownNow();
+            esecutore = null;
+        }
+    }
+
+    public long getPassate() {
+        return passate.sum();
+    }
+
+    public long getLiberatiTotali() {
+        return liberatiTotali.sum();
+    }
+
+    public long getErrori() {
+        return errori.sum();
+    }
+
+    public long getDurataMassimaNanos() {
+        return durataMassimaNanos.get();
+    }
+
+    // null prima della prima passata
+    public Esito getUltimoEsito() {
+        return ultimoEsito;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PuliziaScadenze{passate=%d, liberati=%d, errori=%d, durataMassima=%.1fms, ultima=%s}",
+                getPassate(), getLiberatiTotali(), getErrori(), getDurataMassimaNanos() / 1e6, ultimoEsito);
+    }
+
+    // Una riga restituita da ScadiPrenotazioni
+    private static final class Scaduta {
+        private final String codice;
+        private final int idProiezione;
+        private final char fila;
+        private final int numPosto;
+
+        private Scaduta(String codice, int idProiezione, char fila, int numPosto) {
+            this.codice = codice;
+            this.idProiezione = idProiezione;
+            this.fila = fila;
+            this.numPosto = numPosto;
+        }
+    }
+
+    // Risultato di una passata: posti liberati, blocchi (transazioni) e durata
+    public static final class Esito {
+        private final int liberati;
+        private final int blocchi;
+        private final long durataNanos;
+
+        private Esito(int liberati, int blocchi, long durataNanos) {
+            this.liberati = liberati;
+            this.blocchi = blocchi;
+            this.durataNanos = durataNanos;
+        }
+
+        public int getLiberati() { return liberati; }
+
+        public int getBlocchi() { return blocchi; }
+
+        public long getDurataNanos() { return durataNanos; }
+
+        @Override
+        public String toString() {
+            return String.format("Esito{liberati=%d, blocchi=%d, durata=%.1fms}", liberati, blocchi, durataNanos / 1e6);
+        }
+    }
+}
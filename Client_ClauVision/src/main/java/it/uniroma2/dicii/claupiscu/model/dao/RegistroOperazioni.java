@@ -0,0 +1,367 @@
+package it.uniroma2.dicii.claupiscu.model.dao;
+
+import it.uniroma2.dicii.claupiscu.config.Configurazione;
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Scrittura di log_operazioni dal client invece che dalle procedure (audit.applicativo=true).
+ * Le connessioni del pool impostano @audit_applicativo, quindi procedure e trigger non scrivono
+ * piu' il log dentro la transazione della prenotazione. I DAO accodano qui un evento dopo il
+ * commit. Un thread dedicato lo scrive insieme agli altri in un'unica INSERT multiriga.
+ *
+ * La coda e' un ring buffer limitato (audit.capacita). Quando e' piena, audit.sePieno decide
+ * se chi registra attende (fino a audit.attesaMassimaMs) o se l'evento viene scartato e
+ * contato in getPersi(). Con audit.attendiScrittura=true registra() ritorna solo dopo che
+ * l'evento e' stato scritto. Altrimenti un crash puo' perdere al piu' gli eventi ancora in coda.
+ * Alla chiusura del processo la coda viene svuotata.
+ */
+public final class RegistroOperazioni {
+    public static final boolean ATTIVO = Configurazione.getBoolean("audit.applicativo", false);
+    static final String SQL_SESSIONE = "SET @audit_applicativo = TRUE";
+    // registro spento: registra() non fa nulla e il log resta alle procedure
+    public static final RegistroOperazioni DISATTIVATO = new RegistroOperazioni();
+
+    // una riga per evento; id_proiezione, posto e prezzo si leggono qui, fuori dal percorso della
+    // prenotazione. I DAO accodano solo transizioni avvenute, quindi ogni evento viene scritto
+    private static final String INSERT_EVENTI =
+            "INSERT INTO log_operazioni (operazione, codice_prenotazione, id_proiezione, dettagli, timestamp_operazione) " +
+            "SELECT e.operazione, e.codice, p.id_proiezione, " +
+            "       CASE WHEN p.codice_prenotazione IS NULL THEN NULL " +
+            "            WHEN e.operazione = 'PRENOTAZIONE_CREATA' " +
+            "            THEN JSON_OBJECT('posto', CONCAT(p.fila, p.num_posto), 'prezzo', pr.prezzo) " +
+            "            ELSE JSON_OBJECT('posto', CONCAT(p.fila, p.num_posto)) END, " +
+            "       e.istante " +
+            "FROM JSON_TABLE(?, '$[*]' COLUMNS (" +
+            "       ordine FOR ORDINALITY, " +
+            "       operazione VARCHAR(30) PATH '$.operazione', " +
+            "       codice VARCHAR(20) PATH '$.codice', " +
+            "       istante DATETIME(3) PATH '$.istante')) e " +
+            "LEFT JOIN prenotazione p ON p.codice_prenotazione = e.codice " +
+            "LEFT JOIN proiezione pr ON pr.id_proiezione = p.id_proiezione " +
+            "ORDER BY e.ordine";
+    private static final DateTimeFormatter FORMATO_ISTANTE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final long ATTESA_MASSIMA_RIPROVA_MS = 5_000;
+    private static final int TENTATIVI_IN_CHIUSURA = 3;
+
+    private static volatile RegistroOperazioni instance;
+
+    public enum Operazione { PRENOTAZIONE_CREATA, PRENOTAZIONE_CONFERMATA, PRENOTAZIONE_ANNULLATA, PRENOTAZIONE_SCADUTA }
+
+    public enum SePieno { ATTENDI, SCARTA }
+
+    private final ConnectionPool pool;
+    private final ArrayBlockingQueue<Evento> coda;
+    private final int batchMassimo;
+    private final long attesaBatchNanos;
+    private final SePieno sePieno;
+    private final long attesaMassimaMs;
+    private final boolean attendiScrittura;
+    private final long chiusuraMs;
+    private final Thread scrittore;
+    // usati solo dal thread scrittore: ultime transizioni scritte, per scartare i doppioni
+    private final Map<String, Boolean> recenti;
+    private final ReentrantLock lockScritti = new ReentrantLock();
+    private final Condition scritti = lockScritti.newCondition();
+    private volatile boolean chiuso;
+
+    private final LongAdder accodati = new LongAdder();
+    private final LongAdder scrittiTotali = new LongAdder();
+    private final LongAdder duplicati = new LongAdder();
+    private final LongAdder persi = new LongAdder();
+    private final LongAdder batch = new LongAdder();
+
+    private RegistroOperazioni() {
+        this.pool = null;
+        this.coda = null;
+        this.batchMassimo = 0;
+        this.attesaBatchNanos = 0;
+        this.sePieno = SePieno.SCARTA;
+        this.attesaMassimaMs = 0;
+        this.attendiScrittura = false;
+        this.chiusuraMs = 0;
+        this.scrittore = null;
+        this.recenti = null;
+    }
+
+    public RegistroOperazioni(ConnectionPool pool, int capacita, int batchMassimo, long attesaBatchMs,
+                              SePieno sePieno, long attesaMassimaMs, boolean attendiScrittura, long chiusuraMs) {
+        if (capacita <= 0 || batchMassimo <= 0) {
+            throw new IllegalArgumentException("Capacita' e dimensione del batch devono essere positive");
+        }
+        this.pool = pool;
+        this.coda = new ArrayBlockingQueue<>(capacita);
+        this.batchMassimo = batchMassimo;
+        this.attesaBatchNanos = TimeUnit.MILLISECONDS.toNanos(attesaBatchMs);
+        this.sePieno = sePieno;
+        this.attesaMassimaMs = attesaMassimaMs;
+        this.attendiScrittura = attendiScrittura;
+        this.chiusuraMs = chiusuraMs;
+        this.recenti = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> piuVecchia) {
+                return size() > capacita;
+            }
+        };
+        this.scrittore = new Thread(this::scrivi, "registro-operazioni");
+        scrittore.setDaemon(true);
+        scrittore.start();
+    }
+
+    public static RegistroOperazioni getInstance() {
+        if (!ATTIVO) {
+            return DISATTIVATO;
+        }
+        RegistroOperazioni registro = instance;
+        if (registro == null) {
+            synchronized (RegistroOperazioni.class) {
+                registro = instance;
+                if (registro == null) {
+                    registro = new RegistroOperazioni(ConnectionPool.getInstance(),
+                            Configurazione.getInt("audit.capacita", 8192),
+                            Configurazione.getInt("audit.batchMassimo", 500),
+                            Configurazione.getLong("audit.attesaBatchMs", 20),
+                            SePieno.valueOf(Configurazione.get("audit.sePieno", "attendi").toUpperCase(Locale.ROOT)),
+                            Configurazione.getLong("audit.attesaMassimaMs", 1000),
+                            Configurazione.getBoolean("audit.attendiScrittura", false),
+                            Configurazione.getLong("audit.chiusuraMs", 5000));
+                    Runtime.getRuntime().addShutdownHook(new Thread(registro::chiudi, "chiusura-registro-operazioni"));
+                    Metriche.getRegistro().indicatore("audit.inCoda", registro::getInCoda);
+                    Metriche.getRegistro().indicatore("audit.persi", registro::getPersi);
+                    instance = registro;
+                }
+            }
+        }
+        return registro;
+    }
+
+    // Da chiamare dopo il commit dell'operazione e dopo aver restituito la connessione al pool
+    public void registra(Operazione operazione, String codicePrenotazione) {
+        if (coda == null) {
+            return;
+        }
+        Evento evento = new Evento(operazione, codicePrenotazione, LocalDateTime.now());
+        if (accoda(evento) && attendiScrittura) {
+            attendiScritto(evento);
+        }
+    }
+
+    private boolean accoda(Evento evento) {
+        boolean accodato = false;
+        if (!chiuso) {
+            if (sePieno == SePieno.SCARTA) {
+                accodato = coda.offer(evento);
+            } else {
+                try {
+                    accodato = coda.offer(evento, attesaMassimaMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (accodato) {
+            accodati.increment();
+        } else {
+            persi.increment();
+        }
+        return accodato;
+    }
+
+    private void attendiScritto(Evento evento) {
+        long rimanenti = TimeUnit.MILLISECONDS.toNanos(attesaMassimaMs);
+        lockScritti.lock();
+        try {
+            while (!evento.scritto && rimanenti > 0) {
+                rimanenti = scritti.awaitNanos(rimanenti);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lockScritti.unlock();
+        }
+    }
+
+    private void scrivi() {
+        List<Evento> eventi = new ArrayList<>(batchMassimo);
+        while (!chiuso || !coda.isEmpty()) {
+            try {
+                Evento primo = coda.poll(100, TimeUnit.MILLISECONDS);
+                if (primo == null) {
+                    continue;
+                }
+                eventi.add(primo);
+                raccogli(eventi);
+                scriviBatch(eventi);
+                eventi.clear();
+            } catch (InterruptedException e) {
+                // solo chiudi() interrompe: si continua a svuotare la coda
+                chiuso = true;
+            }
+        }
+    }
+
+    // Riempie il batch con quanto e' gia' in coda, aspettando al massimo audit.attesaBatchMs
+    private void raccogli(List<Evento> eventi) throws InterruptedException {
+        long fine = System.nanoTime() + attesaBatchNanos;
+        coda.drainTo(eventi, batchMassimo - eventi.size());
+        while (eventi.size() < batchMassimo && !chiuso) {
+            long rimanenti = fine - System.nanoTime();
+            Evento evento = rimanenti > 0 ? coda.poll(rimanenti, TimeUnit.NANOSECONDS) : null;
+            if (evento == null) {
+                return;
+            }
+            eventi.add(evento);
+            coda.drainTo(eventi, batchMassimo - eventi.size());
+        }
+    }
+
+    private void scriviBatch(List<Evento> eventi) {
+        // una sola riga per transizione: la stessa operazione sulla stessa prenotazione si scrive una volta
+        List<Evento> daScrivere = new ArrayList<>(eventi.size());
+        for (Evento evento : eventi) {
+            if (recenti.put(evento.operazione + ":" + evento.codicePrenotazione, Boolean.TRUE) == null) {
+                daScrivere.add(evento);
+            } else {
+                duplicati.increment();
+            }
+        }
+
+        long attesaMs = 100;
+        for (int tentativo = 1; !daScrivere.isEmpty(); tentativo++) {
+            try {
+                inserisci(daScrivere);
+                scrittiTotali.add(daScrivere.size());
+                batch.increment();
+                break;
+            } catch (SQLException e) {
+                // finche' il database non risponde la coda si riempie e interviene audit.sePieno
+                if (chiuso && tentativo >= TENTATIVI_IN_CHIUSURA) {
+                    persi.add(daScrivere.size());
+                    System.err.println("Registro operazioni: " + daScrivere.size() + " eventi persi: " + e.getMessage());
+                    break;
+                }
+                try {
+                    Thread.sleep(attesaMs);
+                } catch (InterruptedException ie) {
+                    chiuso = true;
+                }
+                attesaMs = Math.min(attesaMs * 2, ATTESA_MASSIMA_RIPROVA_MS);
+            }
+        }
+
+        lockScritti.lock();
+        try {
+            for (Evento evento : eventi) {
+                evento.scritto = true;
+            }
+            scritti.signalAll();
+        } finally {
+            lockScritti.unlock();
+        }
+    }
+
+    private void inserisci(List<Evento> eventi) throws SQLException {
+        StringBuilder json = new StringBuilder(eventi.size() * 96).append('[');
+        for (Evento evento : eventi) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("{\"operazione\":\"").append(evento.operazione.name())
+                    .append("\",\"codice\":\"");
+            appendiEscape(json, evento.codicePrenotazione);
+            json.append("\",\"istante\":\"").append(FORMATO_ISTANTE.format(evento.istante)).append("\"}");
+        }
+        json.append(']');
+
+        try (PooledConnection conn = pool.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(INSERT_EVENTI);
+            ps.setString(1, json.toString());
+            ps.executeUpdate();
+        }
+    }
+
+    private static void appendiEscape(StringBuilder json, String valore) {
+        for (int i = 0; i < valore.length(); i++) {
+            char c = valore.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\');
+            }
+            json.append(c);
+        }
+    }
+
+    // Smette di accettare eventi e attende (al massimo audit.chiusuraMs) che la coda sia scritta
+    public void chiudi() {
+        if (scrittore == null) {
+            return;
+        }
+        chiuso = true;
+        try {
+            scrittore.join(chiusuraMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isAttivo() {
+        return coda != null;
+    }
+
+    public int getInCoda() {
+        return coda == null ? 0 : coda.size();
+    }
+
+    public long getAccodati() {
+        return accodati.sum();
+    }
+
+    public long getScritti() {
+        return scrittiTotali.sum();
+    }
+
+    public long getDuplicati() {
+        return duplicati.sum();
+    }
+
+    public long getPersi() {
+        return persi.sum();
+    }
+
+    public long getBatch() {
+        return batch.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RegistroOperazioni{inCoda=%d, accodati=%d, scritti=%d, batch=%d, duplicati=%d, persi=%d}",
+                getInCoda(), getAccodati(), getScritti(), getBatch(), getDuplicati(), getPersi());
+    }
+
+    private static final class Evento {
+        private final Operazione operazione;
+        private final String codicePrenotazione;
+        private final LocalDateTime istante;
+        // scritto (o scartato) dal thread del registro; letto sotto lockScritti
+        private boolean scritto;
+
+        private Evento(Operazione operazione, String codicePrenotazione, LocalDateTime istante) {
+            this.operazione = operazione;
+            this.codicePrenotazione = codicePrenotazione;
+            this.istante = istante;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package it.uniroma2.dicii.claupiscu.model.dao;
+
+import it.uniroma2.dicii.claupiscu.config.Configurazione;
+import it.uniroma2.dicii.claupiscu.exception.DAOException;
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+import it.uniroma2.dicii.claupiscu.metriche.RegistroMetriche;
+import it.uniroma2.dicii.claupiscu.metriche.RegistroMetriche.Timer;
+import it.uniroma2.dicii.claupiscu.model.domain.ReportMensile;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Report mensile per sala. I trigger su prenotazione accumulano le variazioni dei contatori,
+ * AggiornaReport (evento aggiorna_report, ogni minuto) le somma in report: leggere un mese e'
+ * una lettura per chiave primaria, senza aggregare le prenotazioni.
+ */
+public class ReportDao {
+    private static final String SELECT_MESE =
+            "SELECT anno, mese, num_sala, prenotazioni, confermate, annullate, scadute, incasso, perc_annullati, perc_confermati " +
+            "FROM report WHERE anno = ? AND mese = ? ORDER BY num_sala";
+    private static final String CALL_AGGIORNA = "{call AggiornaReport(?)}";
+    private static final String CALL_RICOSTRUISCI = "{call RicostruisciReport()}";
+
+    private final ConnectionPool pool;
+    private final int bloccoAggiornamento;
+    private final Timer tempoMese;
+    private final Timer tempoAggiorna;
+    private final Timer tempoRicostruisci;
+
+    public ReportDao() {
+        this(ConnectionPool.getInstance(), Configurazione.getInt("report.bloccoAggiornamento", 1000));
+    }
+
+    public ReportDao(ConnectionPool pool, int bloccoAggiornamento) {
+        this.pool = pool;
+        this.bloccoAggiornamento = bloccoAggiornamento;
+        RegistroMetriche metriche = Metriche.getRegistro();
+        this.tempoMese = metriche.timer("dao.report.mese");
+        this.tempoAggiorna = metriche.timer("dao.report.aggiorna");
+        this.tempoRicostruisci = metriche.timer("dao.report.ricostruisci");
+    }
+
+    // aggiornato=true somma prima le variazioni in attesa, per non essere indietro di un minuto
+    public List<ReportMensile> getReportMensile(int anno, int mese, boolean aggiornato) {
+        if (aggiornato) {
+            aggiorna();
+        }
+        long inizio = System.nanoTime();
+        try (PooledConnection conn = pool.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(SELECT_MESE);
+            ps.setInt(1, anno);
+            ps.setInt(2, mese);
+            List<ReportMensile> righe = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    righe.add(new ReportMensile(rs.getInt("anno"), rs.getInt("mese"), (byte) rs.getInt("num_sala"),
+                            rs.getInt("prenotazioni"), rs.getInt("confermate"), rs.getInt("annullate"),
+                            rs.getInt("scadute"), rs.getBigDecimal("incasso"),
+                            rs.getBigDecimal("perc_annullati"), rs.getBigDecimal("perc_confermati")));
+                }
+            }
+            return righe;
+        } catch (SQLException e) {
+            throw new DAOException("Errore nella lettura del report " + mese + "/" + anno, e);
+        } finally {
+            tempoMese.registra(System.nanoTime() - inizio);
+        }
+    }
+
+    public void aggiorna() {
+        long inizio = System.nanoTime();
+        try (PooledConnection conn = pool.getConnection()) {
+            CallableStatement cs = conn.prepareCall(CALL_AGGIORNA);
+            cs.setInt(1, bloccoAggiornamento);
+            cs.execute();
+        } catch (SQLException e) {
+            throw new DAOException("Errore nell'aggiornamento del report", e);
+        } finally {
+            tempoAggiorna.registra(System.nanoTime() - inizio);
+        }
+    }
+
+    // Ricalcola tutti i mesi dallo storico (es. dopo l'installazione del report): un mese per transazione
+    public void ricostruisci() {
+        long inizio = System.nanoTime();
+        try (PooledConnection conn = pool.getConnection()) {
+            conn.prepareCall(CALL_RICOSTRUISCI).execute();
+        } catch (SQLException e) {
+            throw new DAOException("Errore nella ricostruzione del report", e);
+        } finally {
+            tempoRicostruisci.registra(System.nanoTime() - inizio);
+        }
+    }
+}
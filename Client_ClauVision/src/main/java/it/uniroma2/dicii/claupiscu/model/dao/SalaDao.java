@@ -0,0 +1,72 @@
+package it.uniroma2.dicii.claupiscu.model.dao;
+
+import it.uniroma2.dicii.claupiscu.exception.DAOException;
+import it.uniroma2.dicii.claupiscu.metriche.Metriche;
+import it.uniroma2.dicii.claupiscu.metriche.RegistroMetriche.Timer;
+import it.uniroma2.dicii.claupiscu.model.cache.CacheCatalogo;
+import it.uniroma2.dicii.claupiscu.model.domain.Sala;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class SalaDao {
+    private static final String SELECT_SALA = "SELECT num_sala, nome_sala, capacita FROM sala WHERE num_sala = ?";
+
+    private final ConnectionPool pool;
+    private final CacheCatalogo catalogo;
+    private final Timer tempoLettura;
+
+    public SalaDao() {
+        this(ConnectionPool.getInstance(), CacheCatalogo.getInstance());
+    }
+
+    public SalaDao(ConnectionPool pool, CacheCatalogo catalogo) {
+        this.pool = pool;
+        this.catalogo = catalogo;
+        this.tempoLettura = Metriche.getRegistro().timer("dao.sala.leggi");
+    }
+
+    // Letta dal database solo se non e' in cache (o e' scaduta)
+    public Sala getSala(int numSala) {
+        long inizio = System.nanoTime();
+        try {
+            return catalogo.getSale().get(numSala, num -> {
+                try (PooledConnection conn = pool.getConnection()) {
+                    return caricaSala(conn, num);
+                } catch (SQLException e) {
+                    throw new DAOException("Errore nel caricamento della sala " + num, e);
+                }
+            });
+        } finally {
+            tempoLettura.registra(System.nanoTime() - inizio);
+        }
+    }
+
+    // Per i DAO che hanno gia' una connessione: un miss non ne chiede una seconda al pool
+    Sala getSala(PooledConnection conn, int numSala) {
+        return catalogo.getSale().get(numSala, num -> {
+            try {
+                return caricaSala(conn, num);
+            } catch (SQLException e) {
+                throw new DAOException("Errore nel caricamento della sala " + num, e);
+            }
+        });
+    }
+
+    // Da chiamare dopo ogni modifica di una sala; se cambiano i posti anche PostoDao.ricaricaLayout
+    public void invalidaSala(int numSala) {
+        catalogo.getSale().invalida(numSala);
+    }
+
+    private static Sala caricaSala(PooledConnection conn, int numSala) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(SELECT_SALA);
+        ps.setInt(1, numSala);
+        try (ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) {
+                return null;
+            }
+            return new Sala((byte) rs.getInt("num_sala"), rs.getString("nome_sala"), (byte) rs.getInt("capacita"));
+        }
+    }
+}
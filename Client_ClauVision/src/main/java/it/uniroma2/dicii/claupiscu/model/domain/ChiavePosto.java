@@ -0,0 +1,55 @@
+package it.uniroma2.dicii.claupiscu.model.domain;
+
+/**
+ * Identita' di un posto compressa in un int: num_sala nei 16 bit alti, fila e num_posto nei 16
+ * bassi (sala << 16 | fila << 8 | posto). Mai 0, perche' la fila e' una lettera. I 16 bit bassi
+ * da soli identificano il posto nella sala e possono essere combinati con altri id (es. la
+ * proiezione nei lock dei posti).
+ */
+public final class ChiavePosto {
+    private static final int NUMERO_FILE = 26;
+    // codici "A01".."Z255" creati alla prima richiesta: ogni render della sala li riusa
+    private static final String[] CODICI = new String[NUMERO_FILE << 8];
+
+    private ChiavePosto() {}
+
+    public static int di(int numSala, char fila, int numPosto) {
+        return (numSala << 16) | postoInSala(fila, numPosto);
+    }
+
+    public static int postoInSala(char fila, int numPosto) {
+        return (fila & 0xFF) << 8 | (numPosto & 0xFF);
+    }
+
+    public static int numSala(int chiave) {
+        return chiave >>> 16;
+    }
+
+    public static char fila(int chiave) {
+        return (char) ((chiave >>> 8) & 0xFF);
+    }
+
+    public static int numPosto(int chiave) {
+        return chiave & 0xFF;
+    }
+
+    public static String codice(int chiave) {
+        return codice(fila(chiave), numPosto(chiave));
+    }
+
+    // Come String.format("%c%02d", fila, numPosto)
+    public static String codice(char fila, int numPosto) {
+        int f = fila - 'A';
+        if (f < 0 || f >= NUMERO_FILE || numPosto < 0 || numPosto > 0xFF) {
+            return numPosto < 10 ? fila + "0" + numPosto : fila + String.valueOf(numPosto);
+        }
+        int i = f << 8 | numPosto;
+        String codice = CODICI[i];
+        if (codice == null) {
+            // String e' immutabile: una scrittura concorrente al piu' crea la stessa stringa due volte
+            codice = numPosto < 10 ? fila + "0" + numPosto : fila + String.valueOf(numPosto);
+            CODICI[i] = codice;
+        }
+        return codice;
+    }
+}
@@ -6,16 +6,24 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 
 public class Film {
+    // ObjectMapper e' costoso da creare: reader e writer condivisi, immutabili e thread-safe
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<Attore>> TIPO_ATTORI = new TypeReference<>() {};
+    private static final ObjectReader LETTORE_ATTORI = MAPPER.readerFor(TIPO_ATTORI);
+    private static final ObjectWriter SCRITTORE_ATTORI = MAPPER.writerFor(TIPO_ATTORI);
+
     private String titoloFilm;
     private byte durataMinuti;
     private String casaCinematografica;
     private String castAttori; // JSON string nel database
 
-    //lista degli attori deserializzata dal JSON
-    private List<Attore> attori;
+    //lista degli attori deserializzata dal JSON; null finche' il cast caricato in modo pigro non viene letto
+    private volatile List<Attore> attori;
 
     public static class Attore{
         @JsonProperty("id_attore") private int idAttore;
@@ -59,7 +67,20 @@ public class Film {
         this.castAttori = castAttori;
         this.attori = deserializzaAttori(castAttori);
     }
-    public List<Attore> getAttori() { return attori; }
+    // Il JSON viene deserializzato solo alla prima getAttori()/getAttoriStringa()
+    public void setCastAttoriPigro(String castAttori) {
+        this.castAttori = castAttori;
+        this.attori = null;
+    }
+    public List<Attore> getAttori() {
+        List<Attore> lista = attori;
+        if (lista == null) {
+            // due thread possono deserializzare insieme: stesso risultato, nessun lock
+            lista = deserializzaAttori(castAttori);
+            attori = lista;
+        }
+        return lista;
+    }
     public void setAttori(List<Attore> attori) {
         this.attori = attori;
         this.castAttori = serializzaAttori(attori);
@@ -81,7 +102,8 @@ public class Film {
     }
 
     public String getAttoriStringa() {
-        if (attori == null || attori.isEmpty()) {
+        List<Attore> attori = getAttori();
+        if (attori.isEmpty()) {
             return "N/A";
         }
         return attori.stream()
@@ -96,8 +118,7 @@ public class Film {
             return List.of();
         }
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            return mapper.readValue(jsonAttori, new TypeReference<List<Attore>>() {});
+            return LETTORE_ATTORI.readValue(jsonAttori);
         } catch (JsonProcessingException e) {
             System.err.println("Errore deserializzazione attori: " + e.getMessage());
             return List.of();
@@ -109,8 +130,7 @@ public class Film {
             return "[]";
         }
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            return mapper.writeValueAsString(attori);
+            return SCRITTORE_ATTORI.writeValueAsString(attori);
         } catch (JsonProcessingException e) {
             System.err.println("Errore serializzazione attori: " + e.getMessage());
             return "[]";
@@ -1,11 +1,14 @@
 package it.uniroma2.dicii.claupiscu.model.domain;
 
-import java.util.Objects;
-
 public class Posto {
+    public enum StatoPosto {
+        DISPONIBILE, OCCUPATO, SELEZIONATO
+    }
+
     private byte numSala;
     private char fila;
     private byte numPosto;
+    private StatoPosto stato = StatoPosto.DISPONIBILE;
 
     public Posto() {}
 
@@ -25,9 +28,20 @@ public class Posto {
     public byte getNumPosto() { return numPosto; }
     public void setNumPosto(byte numPosto) { this.numPosto = numPosto; }
 
+    public StatoPosto getStato() { return stato; }
+    public void setStato(StatoPosto stato) { this.stato = stato; }
+
     // Metodi utility
     public String getCodiceCompleto() {
-        return String.format("%c%02d", fila, Byte.toUnsignedInt(numPosto));
+        return ChiavePosto.codice(fila, getNumPostoInt());
+    }
+
+    public int getChiave() {
+        return ChiavePosto.di(getNumSalaInt(), fila, getNumPostoInt());
+    }
+
+    public boolean isDisponibile() {
+        return stato == StatoPosto.DISPONIBILE;
     }
 
     public boolean isValid() {
@@ -52,11 +66,11 @@ public class Posto {
 
     @Override
     public int hashCode() {
-        return Objects.hash(numSala, fila, numPosto);
+        return getChiave();
     }
 
     @Override
     public String toString() {
-        return String.format("Posto{sala=%d, posto=%s}", getNumSalaInt(), getCodiceCompleto());
+        return "Posto{sala=" + getNumSalaInt() + ", posto=" + getCodiceCompleto() + "}";
     }
 }
\ No newline at end of file
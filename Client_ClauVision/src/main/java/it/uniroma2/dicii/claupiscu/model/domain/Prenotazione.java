@@ -100,7 +100,11 @@ public class Prenotazione {
     }
 
     public String getCodicePosto() {
-        return String.format("%c%02d", fila, getNumPostoInt());
+        return ChiavePosto.codice(fila, getNumPostoInt());
+    }
+
+    public int getChiavePosto() {
+        return ChiavePosto.di(getNumSalaInt(), fila, getNumPostoInt());
     }
 
     public boolean isScaduta() {
@@ -0,0 +1,59 @@
+package it.uniroma2.dicii.claupiscu.model.domain;
+
+import java.math.BigDecimal;
+
+// Una riga di report: prenotazioni create nel mese in una sala e quante di esse sono confermate, annullate o scadute
+public class ReportMensile {
+    private final int anno;
+    private final int mese;
+    private final byte numSala;
+    private final int prenotazioni;
+    private final int confermate;
+    private final int annullate;
+    private final int scadute;
+    private final BigDecimal incasso;
+    private final BigDecimal percAnnullati;
+    private final BigDecimal percConfermati;
+
+    public ReportMensile(int anno, int mese, byte numSala, int prenotazioni, int confermate, int annullate,
+                         int scadute, BigDecimal incasso, BigDecimal percAnnullati, BigDecimal percConfermati) {
+        this.anno = anno;
+        this.mese = mese;
+        this.numSala = numSala;
+        this.prenotazioni = prenotazioni;
+        this.confermate = confermate;
+        this.annullate = annullate;
+        this.scadute = scadute;
+        this.incasso = incasso;
+        this.percAnnullati = percAnnullati;
+        this.percConfermati = percConfermati;
+    }
+
+    public int getAnno() { return anno; }
+
+    public int getMese() { return mese; }
+
+    public byte getNumSala() { return numSala; }
+
+    public int getNumSalaInt() { return Byte.toUnsignedInt(numSala); }
+
+    public int getPrenotazioni() { return prenotazioni; }
+
+    public int getConfermate() { return confermate; }
+
+    public int getAnnullate() { return annullate; }
+
+    public int getScadute() { return scadute; }
+
+    public BigDecimal getIncasso() { return incasso; }
+
+    public BigDecimal getPercAnnullati() { return percAnnullati; }
+
+    public BigDecimal getPercConfermati() { return percConfermati; }
+
+    @Override
+    public String toString() {
+        return String.format("ReportMensile{%d/%02d, sala=%d, prenotazioni=%d, confermate=%d, annullate=%d, scadute=%d, incasso=%s}",
+                anno, mese, getNumSalaInt(), prenotazioni, confermate, annullate, scadute, incasso);
+    }
+}
@@ -0,0 +1,58 @@
+package it.uniroma2.dicii.claupiscu.model.domain;
+
+// Esito di CreaPrenotazioneTemporanea: 1=successo, 0=posto occupato, -1=errore_proiezione, -2=errore_generico.
+// Nelle prenotazioni di gruppo c'e' un risultato per posto, e -3 indica un posto libero non prenotato perche' un altro del gruppo non lo era.
+// AnnullaPrenotazione restituisce 2 se la prenotazione era gia' annullata o scaduta e non e' cambiato nulla
+public class RisultatoPrenotazione {
+    public static final int SUCCESSO = 1;
+    public static final int POSTO_OCCUPATO = 0;
+    public static final int ERRORE_PROIEZIONE = -1;
+    public static final int ERRORE_GENERICO = -2;
+    public static final int GRUPPO_NON_PRENOTATO = -3;
+    public static final int NESSUN_CAMBIO = 2;
+
+    private final String codicePrenotazione;
+    private final int codiceRisultato;
+    private final Posto posto;
+
+    public RisultatoPrenotazione(String codicePrenotazione, int codiceRisultato) {
+        this(codicePrenotazione, codiceRisultato, null);
+    }
+
+    public RisultatoPrenotazione(String codicePrenotazione, int codiceRisultato, Posto posto) {
+        this.codicePrenotazione = codicePrenotazione;
+        this.codiceRisultato = codiceRisultato;
+        this.posto = posto;
+    }
+
+    public String getCodicePrenotazione() { return codicePrenotazione; }
+
+    public int getCodiceRisultato() { return codiceRisultato; }
+
+    // Valorizzato solo nei risultati delle prenotazioni di gruppo
+    public Posto getPosto() { return posto; }
+
+    public boolean isSuccesso() {
+        return codiceRisultato == SUCCESSO;
+    }
+
+    public String getMessaggio() {
+        switch (codiceRisultato) {
+            case SUCCESSO:
+                return "Prenotazione temporanea creata";
+            case POSTO_OCCUPATO:
+                return "Il posto e' gia' occupato o in fase di prenotazione";
+            case ERRORE_PROIEZIONE:
+                return "Proiezione o posto non validi";
+            case GRUPPO_NON_PRENOTATO:
+                return "Posto libero, ma non prenotato perche' altri posti del gruppo non erano disponibili";
+            default:
+                return "Errore generico durante la prenotazione";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RisultatoPrenotazione{codice='%s', risultato=%d, posto=%s}", codicePrenotazione, codiceRisultato, posto);
+    }
+}
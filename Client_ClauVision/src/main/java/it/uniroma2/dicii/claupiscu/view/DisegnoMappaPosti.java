@@ -0,0 +1,140 @@
+package it.uniroma2.dicii.claupiscu.view;
+
+import it.uniroma2.dicii.claupiscu.model.domain.ChiavePosto;
+import it.uniroma2.dicii.claupiscu.model.domain.Posto;
+import it.uniroma2.dicii.claupiscu.model.domain.Posto.StatoPosto;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mappa dei posti della sala scritta in uno StringBuilder del chiamante, senza ordinamenti ne'
+ * printf: le file e i posti arrivano gia' ordinati da PostoDao.getPostiRaggruppatiPerFila. Ricorda
+ * stato e colonna di ogni cella disegnata, cosi' a una variazione dei posti si riscrivono solo le
+ * celle cambiate invece di tutta la schermata.
+ */
+public final class DisegnoMappaPosti {
+    private static final String INTESTAZIONE =
+            "\n                           🎬 SCHERMO 🎬\n" +
+            "    ┌─────────────────────────────────────────────────────┐\n";
+    private static final String CHIUSURA =
+            "    └─────────────────────────────────────────────────────┘\n" +
+            "    Legenda: [N] = Disponibile, ██ = Occupato\n";
+    // righe di CHIUSURA, tra l'ultima fila e la riga successiva alla mappa
+    private static final int RIGHE_CHIUSURA = 2;
+    // " A  │ " prima della prima cella
+    private static final int COLONNA_PRIMA_CELLA = 6;
+    private static final StatoPosto[] STATI = StatoPosto.values();
+
+    // per ogni cella disegnata, nell'ordine: posto (ChiavePosto.postoInSala), stato, fila e colonna
+    private int[] posti = new int[0];
+    private byte[] stati = new byte[0];
+    private int[] filaDi = new int[0];
+    private int[] colonne = new int[0];
+    private int numeroCelle;
+    private int numeroFile;
+
+    public void disegna(StringBuilder sb, Map<Character, List<Posto>> postiPerFila) {
+        numeroCelle = 0;
+        numeroFile = 0;
+        sb.append(INTESTAZIONE);
+        for (Map.Entry<Character, List<Posto>> voce : postiPerFila.entrySet()) {
+            char fila = voce.getKey();
+            sb.append(' ').append(fila).append("  │ ");
+            int colonna = COLONNA_PRIMA_CELLA;
+            for (Posto posto : voce.getValue()) {
+                int i = numeroCelle++;
+                if (i == posti.length) {
+                    cresci();
+                }
+                posti[i] = ChiavePosto.postoInSala(fila, posto.getNumPostoInt());
+                stati[i] = (byte) posto.getStato().ordinal();
+                filaDi[i] = numeroFile;
+                colonne[i] = colonna;
+                colonna += cella(sb, posto.getStato(), posto.getNumPostoInt());
+            }
+            sb.append(" │\n");
+            numeroFile++;
+        }
+        sb.append(CHIUSURA);
+    }
+
+    /**
+     * Aggiunge a sb le sequenze ANSI che riscrivono solo le celle cambiate dall'ultimo disegna,
+     * con il cursore righeSotto righe sotto la fine della mappa (es. sul prompt); il cursore torna
+     * dov'era. Restituisce false, senza aggiungere nulla, se i posti non sono piu' gli stessi o
+     * una cella cambia larghezza: serve un disegna completo.
+     */
+    public boolean aggiorna(StringBuilder sb, Map<Character, List<Posto>> postiPerFila, int righeSotto) {
+        int inizio = sb.length();
+        int i = 0;
+        for (Map.Entry<Character, List<Posto>> voce : postiPerFila.entrySet()) {
+            char fila = voce.getKey();
+            for (Posto posto : voce.getValue()) {
+                int numPosto = posto.getNumPostoInt();
+                if (i == numeroCelle || posti[i] != ChiavePosto.postoInSala(fila, numPosto)) {
+                    sb.setLength(inizio);
+                    return false;
+                }
+                StatoPosto stato = posto.getStato();
+                if (stati[i] != stato.ordinal()) {
+                    if (larghezza(STATI[stati[i]], numPosto) != larghezza(stato, numPosto)) {
+                        sb.setLength(inizio);
+                        return false;
+                    }
+                    stati[i] = (byte) stato.ordinal();
+                    int righeSopra = righeSotto + RIGHE_CHIUSURA + numeroFile - filaDi[i];
+                    sb.append("\0337\033[").append(righeSopra).append("A\r\033[").append(colonne[i]).append('C');
+                    cella(sb, stato, numPosto);
+                    sb.append("\0338");
+                }
+                i++;
+            }
+        }
+        if (i != numeroCelle) {
+            sb.setLength(inizio);
+            return false;
+        }
+        return true;
+    }
+
+    // Come printf("%2d ") / "██ " / printf("[%d]"): restituisce le colonne occupate
+    private static int cella(StringBuilder sb, StatoPosto stato, int numPosto) {
+        switch (stato) {
+            case DISPONIBILE:
+                if (numPosto < 10) {
+                    sb.append(' ');
+                }
+                sb.append(numPosto).append(' ');
+                break;
+            case OCCUPATO:
+                sb.append("██ ");
+                break;
+            case SELEZIONATO:
+                sb.append('[').append(numPosto).append(']');
+                break;
+        }
+        return larghezza(stato, numPosto);
+    }
+
+    private static int larghezza(StatoPosto stato, int numPosto) {
+        int cifre = numPosto < 10 ? 1 : numPosto < 100 ? 2 : 3;
+        switch (stato) {
+            case DISPONIBILE:
+                return Math.max(2, cifre) + 1;
+            case OCCUPATO:
+                return 3;
+            default:
+                return cifre + 2;
+        }
+    }
+
+    private void cresci() {
+        int n = Math.max(64, posti.length * 2);
+        posti = Arrays.copyOf(posti, n);
+        stati = Arrays.copyOf(stati, n);
+        filaDi = Arrays.copyOf(filaDi, n);
+        colonne = Arrays.copyOf(colonne, n);
+    }
+}
@@ -2,26 +2,52 @@ package it.uniroma2.dicii.claupiscu.view;
 
 import it.uniroma2.dicii.claupiscu.model.domain.Film;
 import it.uniroma2.dicii.claupiscu.model.domain.Posto;
+import it.uniroma2.dicii.claupiscu.model.domain.Posto.StatoPosto;
 import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione;
 import it.uniroma2.dicii.claupiscu.model.domain.Proiezione;
 
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Formatter;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
 public class PrenotazioneView{
-    private Scanner scanner;
+    // righe stampate tra quella del countdown e il prompt in mostraPrenotazioneTemporanea
+    private static final int RIGHE_SOTTO_TEMPO = 6;
+    // righe tra la fine della mappa dei posti e il prompt in disegnaDettagliProiezione
+    private static final int RIGHE_SOTTO_MAPPA = 7;
+
+    private final Terminale terminale;
+    private final PrintStream out;
+    // schermata dei dettagli costruita qui e scritta con un solo flush; riusati a ogni disegno
+    private final StringBuilder schermata = new StringBuilder(4096);
+    private final Formatter formato = new Formatter(schermata);
+    private final DisegnoMappaPosti mappa = new DisegnoMappaPosti();
+    // false se dopo l'ultimo disegno sono state scritte altre righe: le celle non sono piu' dove la mappa le ricorda
+    private boolean mappaAllineata;
 
     public PrenotazioneView() {
-        this.scanner = new Scanner(System.in);
+        this(Terminale.console());
+    }
+
+    public PrenotazioneView(Terminale terminale) {
+        this.terminale = terminale;
+        this.out = terminale.getOutput();
     }
 
     public int mostraMenuSelezioneProiezione(List<Proiezione> proiezioni) {
         clearScreen();
-        System.out.println("╔══════════════════════════════════════════════════════════════════╗");
-        System.out.println("║                    SELEZIONE PROIEZIONE                         ║");
-        System.out.println("╠══════════════════════════════════════════════════════════════════╣");
+        out.println("╔══════════════════════════════════════════════════════════════════╗");
+        out.println("║                    SELEZIONE PROIEZIONE                         ║");
+        out.println("╠══════════════════════════════════════════════════════════════════╣");
 
         for (int i = 0; i < proiezioni.size(); i++) {
             Proiezione p = proiezioni.get(i);
@@ -30,149 +56,134 @@ public class PrenotazioneView{
                     p.getDataOraInizio()
             ).toMinutes();
 
-            System.out.printf("║ [%d] %-40s ║%n", i + 1, p.getTitoloFilm());
-            System.out.printf("║     🎬 %s  ⏰ %s (tra %d min) ║%n",
+            out.printf("║ [%d] %-40s ║%n", i + 1, p.getTitoloFilm());
+            out.printf("║     🎬 %s  ⏰ %s (tra %d min) ║%n",
                     p.getNomeSala(),
                     p.getOrarioFormattato(),
                     minutiMancanti);
-            System.out.printf("║     ⏱️  %d min     💰 €%.2f                    ║%n",
+            out.printf("║     ⏱️  %d min     💰 €%.2f                    ║%n",
                     p.getDurataMinuti(), p.getPrezzo());
-            System.out.println("╠══════════════════════════════════════════════════════════════════╣");
+            out.println("╠══════════════════════════════════════════════════════════════════╣");
         }
 
-        System.out.println("║ [0] Torna al menu principale                                     ║");
-        System.out.println("╚══════════════════════════════════════════════════════════════════╝");
-        System.out.print("Seleziona proiezione: ");
+        out.println("║ [0] Torna al menu principale                                     ║");
+        out.println("╚══════════════════════════════════════════════════════════════════╝");
+        out.print("Seleziona proiezione: ");
 
         return leggiIntero(0, proiezioni.size());
     }
 
+    /**
+     * aggiornaPosti applica a postiPerFila le variazioni arrivate e dice se qualche posto e'
+     * cambiato: la schermata viene ridisegnata senza attendere l'azione dell'utente.
+     */
     public int mostraDettagliProiezione(Proiezione proiezione, Film film,
-                                        Map<Character, List<Posto>> postiPerFila) {
-        clearScreen();
+                                        Map<Character, List<Posto>> postiPerFila,
+                                        BooleanSupplier aggiornaPosti) {
+        disegnaDettagliProiezione(proiezione, film, postiPerFila);
+        while (true) {
+            // svegliata da notificaVariazionePosti: nessun polling dalla sessione
+            String input = terminale.attendiRiga(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            if (input == null) {
+                if (aggiornaPosti.getAsBoolean()) {
+                    aggiornaMappaPosti(proiezione, film, postiPerFila);
+                }
+                continue;
+            }
+            Integer azione = interoTra(input, 0, 3);
+            if (azione != null) {
+                return azione;
+            }
+            mappaAllineata = false;
+        }
+    }
+
+    // Riscrive solo le celle cambiate; tutta la schermata se la mappa non e' piu' dove era stata disegnata
+    private void aggiornaMappaPosti(Proiezione proiezione, Film film, Map<Character, List<Posto>> postiPerFila) {
+        schermata.setLength(0);
+        if (mappaAllineata && mappa.aggiorna(schermata, postiPerFila, RIGHE_SOTTO_MAPPA)) {
+            scriviSchermata();
+        } else {
+            disegnaDettagliProiezione(proiezione, film, postiPerFila);
+        }
+    }
+
+    // Chiamato dal thread del feed dei posti: interrompe l'attesa della sessione
+    public void notificaVariazionePosti() {
+        terminale.sveglia();
+    }
+
+    private void disegnaDettagliProiezione(Proiezione proiezione, Film film,
+                                           Map<Character, List<Posto>> postiPerFila) {
+        schermata.setLength(0);
+        schermata.append("\033[2J\033[H");
 
         // Header informazioni film
-        System.out.println("╔══════════════════════════════════════════════════════════════════╗");
-        System.out.printf("║ 🎬 %-60s ║%n", film.getTitoloFilm());
-        System.out.println("╠══════════════════════════════════════════════════════════════════╣");
-        System.out.printf("║ 🏢 Casa: %-54s ║%n", film.getCasaCinematografica());
-        System.out.printf("║ ⏱️  Durata: %d minuti                                          ║%n", film.getDurataMinuti());
+        schermata.append("╔══════════════════════════════════════════════════════════════════╗\n");
+        formato.format("║ 🎬 %-60s ║%n", film.getTitoloFilm());
+        schermata.append("╠══════════════════════════════════════════════════════════════════╣\n");
+        formato.format("║ 🏢 Casa: %-54s ║%n", film.getCasaCinematografica());
+        formato.format("║ ⏱️  Durata: %d minuti                                          ║%n", film.getDurataMinutiInt());
 
         // Gestisci cast lungo
         String cast = film.getCastAttori();
         if (cast.length() > 55) {
-            System.out.printf("║ 🎭 Cast: %-55s ║%n", cast.substring(0, 52) + "...");
+            formato.format("║ 🎭 Cast: %-55s ║%n", cast.substring(0, 52) + "...");
         } else {
-            System.out.printf("║ 🎭 Cast: %-55s ║%n", cast);
+            formato.format("║ 🎭 Cast: %-55s ║%n", cast);
         }
 
-        System.out.println("╠══════════════════════════════════════════════════════════════════╣");
-        System.out.printf("║ 📅 %s - %s - €%.2f              ║%n",
+        schermata.append("╠══════════════════════════════════════════════════════════════════╣\n");
+        formato.format("║ 📅 %s - %s - €%.2f              ║%n",
                 proiezione.getDataFormattata(),
                 proiezione.getOrarioFormattato(),
                 proiezione.getPrezzo());
-        System.out.printf("║ 🎪 %s                                                    ║%n",
+        formato.format("║ 🎪 %s                                                    ║%n",
                 proiezione.getNomeSala());
-        System.out.println("╚══════════════════════════════════════════════════════════════════╝");
+        schermata.append("╚══════════════════════════════════════════════════════════════════╝\n");
 
         // Mappa posti
-        mostraMappaPosti(postiPerFila);
-
-        // Menu opzioni
-        System.out.println("\n╔══════════════════════════════════════╗");
-        System.out.println("║ [1] Seleziona posto                  ║");
-        System.out.println("║ [2] Aggiorna posti disponibili       ║");
-        System.out.println("║ [0] Torna alla lista proiezioni      ║");
-        System.out.println("╚══════════════════════════════════════╝");
-        System.out.print("Scegli azione: ");
-
-        return leggiIntero(0, 2);
+        mappa.disegna(schermata, postiPerFila);
+
+        // Menu opzioni (RIGHE_SOTTO_MAPPA righe fino al prompt)
+        schermata.append("\n╔══════════════════════════════════════╗\n")
+                .append("║ [1] Seleziona posto                  ║\n")
+                .append("║ [2] Aggiorna posti disponibili       ║\n")
+                .append("║ [3] Migliori posti vicini            ║\n")
+                .append("║ [0] Torna alla lista proiezioni      ║\n")
+                .append("╚══════════════════════════════════════╝\n")
+                .append("Scegli azione: ");
+        scriviSchermata();
+        mappaAllineata = true;
     }
 
-    private void mostraMappaPosti(Map<Character, List<Posto>> postiPerFila) {
-        System.out.println("\n                           🎬 SCHERMO 🎬");
-        System.out.println("    ┌─────────────────────────────────────────────────────┐");
-
-        // Ordina le file alfabeticamente
-        postiPerFila.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .forEach(entry -> {
-                    char fila = entry.getKey();
-                    List<Posto> posti = entry.getValue();
-
-                    System.out.printf(" %c  │ ", fila);
-
-                    // Ordina i posti per numero
-                    posti.stream()
-                            .sorted((p1, p2) -> Integer.compare(p1.getNumPosto(), p2.getNumPosto()))
-                            .forEach(posto -> {
-                                switch (posto.getStato()) {
-                                    case DISPONIBILE:
-                                        System.out.printf("%2d ", posto.getNumPosto());
-                                        break;
-                                    case OCCUPATO:
-                                        System.out.print("██ ");
-                                        break;
-                                    case SELEZIONATO:
-                                        System.out.printf("[%d]", posto.getNumPosto());
-                                        break;
-                                }
-                            });
-                    System.out.println(" │");
-                });
-
-        System.out.println("    └─────────────────────────────────────────────────────┘");
-        System.out.println("    Legenda: [N] = Disponibile, ██ = Occupato");
+    private void scriviSchermata() {
+        out.append(schermata);
+        out.flush();
     }
 
     public boolean mostraGestionePrenotazioneTemporanea(Prenotazione prenotazione,
                                                         AtomicBoolean scaduta,
-                                                        Function<Prenotazione, Boolean> confermaCallback,
+                                                        BiFunction<Prenotazione, String, Boolean> confermaCallback,
                                                         Function<Prenotazione, Boolean> annullaCallback) {
+        mostraPrenotazioneTemporanea(prenotazione);
 
+        // nessun polling: la sessione resta in attesa di una riga fino al prossimo secondo del
+        // countdown, e la scadenza la sveglia subito (notificaScadenza)
         while (!scaduta.get() && prenotazione.isConfermabile()) {
-            clearScreen();
-
-            long minutiRimasti = prenotazione.getMinutiRimanenti();
-            long secondiRimasti = java.time.Duration.between(
-                    LocalDateTime.now(),
-                    prenotazione.getTimestampScadenza()
-            ).toSeconds() % 60;
-
-            System.out.println("╔══════════════════════════════════════════════════════════════════╗");
-            System.out.println("║                  PRENOTAZIONE TEMPORANEA                        ║");
-            System.out.println("╠══════════════════════════════════════════════════════════════════╣");
-            System.out.printf("║ Codice: %-56s ║%n", prenotazione.getCodicePrenotazione());
-            System.out.printf("║ Posto: %s                                                  ║%n",
-                    prenotazione.getCodicePosto());
-            System.out.printf("║ Film: %-57s ║%n", prenotazione.getProiezione().getTitoloFilm());
-            System.out.printf("║ ⏰ Tempo rimasto: %02d:%02d                                      ║%n",
-                    minutiRimasti, Math.max(0, secondiRimasti));
-            System.out.println("╠══════════════════════════════════════════════════════════════════╣");
-            System.out.println("║ [1] Conferma prenotazione (inserisci ticket pagamento)          ║");
-            System.out.println("║ [2] Annulla prenotazione                                         ║");
-            System.out.println("║ [0] Aspetta (aggiorna countdown)                                 ║");
-            System.out.println("╚══════════════════════════════════════════════════════════════════╝");
-            System.out.print("Scegli azione: ");
-
-            int scelta = leggiInteroConTimeout(0, 2, 3000); // 3 secondi timeout
-
-            switch (scelta) {
-                case 1:
-                    return gestisciConfermaFinale(prenotazione);
-                case 2:
+            String input = terminale.attendiRiga(millisAlProssimoSecondo(prenotazione), TimeUnit.MILLISECONDS);
+            if (input == null) {
+                aggiornaTempoRimasto(prenotazione);
+                continue;
+            }
+            switch (input.trim()) {
+                case "1":
+                    return gestisciConfermaFinale(prenotazione, confermaCallback);
+                case "2":
                     return annullaCallback.apply(prenotazione);
-                case 0:
                 default:
-                    // Continua il loop per aggiornare
-                    break;
-            }
-
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
+                    // [0], invio o input non valido: ridisegna tutto
+                    mostraPrenotazioneTemporanea(prenotazione);
             }
         }
 
@@ -180,90 +191,151 @@ public class PrenotazioneView{
         return false;
     }
 
-    private boolean gestisciConfermaFinale(Prenotazione prenotazione) {
-        System.out.print("\nInserisci codice ticket pagamento: ");
-        String ticketPag = scanner.nextLine().trim();
+    // Chiamato dal thread delle scadenze: interrompe l'attesa della sessione
+    public void notificaScadenza() {
+        terminale.sveglia();
+    }
+
+    private void mostraPrenotazioneTemporanea(Prenotazione prenotazione) {
+        clearScreen();
+        out.println("╔══════════════════════════════════════════════════════════════════╗");
+        out.println("║                  PRENOTAZIONE TEMPORANEA                        ║");
+        out.println("╠══════════════════════════════════════════════════════════════════╣");
+        out.printf("║ Codice: %-56s ║%n", prenotazione.getCodicePrenotazione());
+        out.printf("║ Posto: %s                                                  ║%n",
+                prenotazione.getCodicePosto());
+        out.printf("║ Film: %-57s ║%n", prenotazione.getProiezione().getTitoloFilm());
+        out.println(rigaTempoRimasto(prenotazione));
+        out.println("╠══════════════════════════════════════════════════════════════════╣");
+        out.println("║ [1] Conferma prenotazione (inserisci ticket pagamento)          ║");
+        out.println("║ [2] Annulla prenotazione                                         ║");
+        out.println("║ [0] Aspetta (aggiorna countdown)                                 ║");
+        out.println("╚══════════════════════════════════════════════════════════════════╝");
+        out.print("Scegli azione: ");
+    }
+
+    // Riscrive solo la riga del countdown, RIGHE_SOTTO_TEMPO righe sopra il prompt, e torna al prompt
+    private void aggiornaTempoRimasto(Prenotazione prenotazione) {
+        out.print("\0337\033[" + RIGHE_SOTTO_TEMPO + "A\r\033[2K" + rigaTempoRimasto(prenotazione) + "\0338");
+    }
+
+    private static String rigaTempoRimasto(Prenotazione prenotazione) {
+        long secondi = Math.max(0, Duration.between(LocalDateTime.now(), prenotazione.getTimestampScadenza()).toSeconds());
+        return String.format("║ ⏰ Tempo rimasto: %02d:%02d                                      ║", secondi / 60, secondi % 60);
+    }
+
+    // appena dopo il cambio del secondo mostrato, cosi' un risveglio in anticipo non ridisegna lo stesso valore
+    private static long millisAlProssimoSecondo(Prenotazione prenotazione) {
+        long millis = Duration.between(LocalDateTime.now(), prenotazione.getTimestampScadenza()).toMillis();
+        return millis <= 0 ? 1 : millis % 1000 + 10;
+    }
+
+    private boolean gestisciConfermaFinale(Prenotazione prenotazione,
+                                           BiFunction<Prenotazione, String, Boolean> confermaCallback) {
+        out.print("\nInserisci codice ticket pagamento: ");
+        String ticketPag = terminale.leggiRiga().trim();
 
         if (ticketPag.isEmpty()) {
             mostraErrore("Codice ticket non valido!");
             return false;
         }
 
-        // Simula chiamata al DAO
-        try {
-            prenotazione.conferma(ticketPag);
-            mostraMessaggio("✅ Prenotazione confermata con successo!");
-            mostraRiepilogoPrenotazione(prenotazione);
-            return true;
-        } catch (Exception e) {
-            mostraErrore("Errore durante la conferma: " + e.getMessage());
-            return false;
-        }
+        // La conferma passa dal controller, che chiama la stored procedure
+        return confermaCallback.apply(prenotazione, ticketPag);
     }
 
     public void mostraRiepilogoPrenotazione(Prenotazione prenotazione) {
-        System.out.println("\n╔══════════════════════════════════════════════════════════════════╗");
-        System.out.println("║                    RIEPILOGO PRENOTAZIONE                       ║");
-        System.out.println("╠══════════════════════════════════════════════════════════════════╣");
-        System.out.printf("║ Codice: %-56s ║%n", prenotazione.getCodicePrenotazione());
-        System.out.printf("║ Film: %-59s ║%n", prenotazione.getProiezione().getTitoloFilm());
-        System.out.printf("║ Sala: %-59s ║%n", prenotazione.getProiezione().getNomeSala());
-        System.out.printf("║ Posto: %-58s ║%n", prenotazione.getCodicePosto());
-        System.out.printf("║ Orario: %-57s ║%n", prenotazione.getProiezione().getOrarioCompleto());
-        System.out.printf("║ Prezzo: €%-56.2f ║%n", prenotazione.getProiezione().getPrezzo());
-        System.out.printf("║ Ticket: %-57s ║%n", prenotazione.getTicketPag());
-        System.out.println("╚══════════════════════════════════════════════════════════════════╝");
-        System.out.println("📧 Riceverai email di conferma a breve.");
-        System.out.println("Premi INVIO per continuare...");
-        scanner.nextLine();
+        out.println("\n╔══════════════════════════════════════════════════════════════════╗");
+        out.println("║                    RIEPILOGO PRENOTAZIONE                       ║");
+        out.println("╠══════════════════════════════════════════════════════════════════╣");
+        out.printf("║ Codice: %-56s ║%n", prenotazione.getCodicePrenotazione());
+        out.printf("║ Film: %-59s ║%n", prenotazione.getProiezione().getTitoloFilm());
+        out.printf("║ Sala: %-59s ║%n", prenotazione.getProiezione().getNomeSala());
+        out.printf("║ Posto: %-58s ║%n", prenotazione.getCodicePosto());
+        out.printf("║ Orario: %-57s ║%n", prenotazione.getProiezione().getOrarioCompleto());
+        out.printf("║ Prezzo: €%-56.2f ║%n", prenotazione.getProiezione().getPrezzo());
+        out.printf("║ Ticket: %-57s ║%n", prenotazione.getTicketPag());
+        out.println("╚══════════════════════════════════════════════════════════════════╝");
+        out.println("📧 Riceverai email di conferma a breve.");
+        out.println("Premi INVIO per continuare...");
+        terminale.leggiRiga();
+    }
+
+    // Un solo riepilogo per i posti di un gruppo, confermati con lo stesso ticket
+    public void mostraRiepilogoPrenotazioni(List<Prenotazione> prenotazioni) {
+        if (prenotazioni.size() == 1) {
+            mostraRiepilogoPrenotazione(prenotazioni.get(0));
+            return;
+        }
+        Prenotazione prima = prenotazioni.get(0);
+        out.println("\n╔══════════════════════════════════════════════════════════════════╗");
+        out.println("║                    RIEPILOGO PRENOTAZIONE                       ║");
+        out.println("╠══════════════════════════════════════════════════════════════════╣");
+        out.printf("║ Film: %-59s ║%n", prima.getProiezione().getTitoloFilm());
+        out.printf("║ Sala: %-59s ║%n", prima.getProiezione().getNomeSala());
+        out.printf("║ Orario: %-57s ║%n", prima.getProiezione().getOrarioCompleto());
+        for (Prenotazione prenotazione : prenotazioni) {
+            out.printf("║ Posto: %-58s ║%n", prenotazione.getCodicePosto() + " - codice " + prenotazione.getCodicePrenotazione());
+        }
+        out.printf("║ Totale: €%-56.2f ║%n",
+                prima.getProiezione().getPrezzo().multiply(BigDecimal.valueOf(prenotazioni.size())));
+        out.printf("║ Ticket: %-57s ║%n", prima.getTicketPag());
+        out.println("╚══════════════════════════════════════════════════════════════════╝");
+        out.println("📧 Riceverai email di conferma a breve.");
+        out.println("Premi INVIO per continuare...");
+        terminale.leggiRiga();
     }
 
     // Metodi utility
     private int leggiIntero(int min, int max) {
         while (true) {
-            try {
-                String input = scanner.nextLine().trim();
-                if (input.isEmpty()) continue;
-
-                int valore = Integer.parseInt(input);
-                if (valore >= min && valore <= max) {
-                    return valore;
-                }
-                System.out.printf("Inserisci un numero tra %d e %d: ", min, max);
-            } catch (NumberFormatException e) {
-                System.out.print("Inserisci un numero valido: ");
+            Integer valore = interoTra(terminale.leggiRiga(), min, max);
+            if (valore != null) {
+                return valore;
             }
         }
     }
 
-    private int leggiInteroConTimeout(int min, int max, long timeoutMs) {
-        // Per semplicità, implementazione base
-        // In produzione useresti input non-bloccante
-        return leggiIntero(min, max);
+    // null (dopo aver chiesto di nuovo il numero) se l'input non e' un intero tra min e max
+    private Integer interoTra(String input, int min, int max) {
+        input = input.trim();
+        if (input.isEmpty()) {
+            return null;
+        }
+        try {
+            int valore = Integer.parseInt(input);
+            if (valore >= min && valore <= max) {
+                return valore;
+            }
+            out.printf("Inserisci un numero tra %d e %d: ", min, max);
+        } catch (NumberFormatException e) {
+            out.print("Inserisci un numero valido: ");
+        }
+        return null;
     }
 
     private void clearScreen() {
-        System.out.print("\033[2J\033[H");
-        System.out.flush();
+        out.print("\033[2J\033[H");
+        out.flush();
     }
 
     public void mostraMessaggio(String messaggio) {
-        System.out.println("\n" + messaggio);
-        System.out.println("Premi INVIO per continuare...");
-        scanner.nextLine();
+        out.println("\n" + messaggio);
+        out.println("Premi INVIO per continuare...");
+        terminale.leggiRiga();
     }
 
     public void mostraErrore(String errore) {
-        System.out.println("\n❌ ERRORE: " + errore);
-        System.out.println("Premi INVIO per continuare...");
-        scanner.nextLine();
+        out.println("\n❌ ERRORE: " + errore);
+        out.println("Premi INVIO per continuare...");
+        terminale.leggiRiga();
     }
 
     // Altri metodi richiesti dal controller...
-    public Posto richiedeSelezioneP posto(Map<Character, List<Posto>> postiPerFila) {
-        System.out.println("\n📍 SELEZIONE POSTO");
-        System.out.print("Inserisci fila (es. A, B, C...): ");
-        String filaInput = scanner.nextLine().trim().toUpperCase();
+    public Posto richiedeSelezionePosto(Map<Character, List<Posto>> postiPerFila) {
+        out.println("\n📍 SELEZIONE POSTO");
+        out.print("Inserisci fila (es. A, B, C...): ");
+        String filaInput = terminale.leggiRiga().trim().toUpperCase();
 
         if (filaInput.length() != 1) {
             mostraErrore("Fila non valida!");
@@ -277,31 +349,58 @@ public class PrenotazioneView{
             return null;
         }
 
-        System.out.print("Inserisci numero posto: ");
-        int numPosto = leggiIntero(1, 50);
+        out.print("Inserisci numero posto: ");
+        int numPosto = leggiIntero(1, 255);
 
         // Cerca il posto
         List<Posto> postiDiQuestaFila = postiPerFila.get(fila);
         return postiDiQuestaFila.stream()
-                .filter(p -> p.getNumPosto() == numPosto)
+                .filter(p -> p.getNumPostoInt() == numPosto)
                 .filter(p -> p.getStato() == StatoPosto.DISPONIBILE)
                 .findFirst()
                 .orElse(null);
     }
 
     public boolean confermaSelezionePosto(Proiezione proiezione, Posto posto) {
-        System.out.println("\n╔══════════════════════════════════════╗");
-        System.out.println("║           CONFERMA SELEZIONE         ║");
-        System.out.println("╠══════════════════════════════════════╣");
-        System.out.printf("║ Film: %-30s ║%n", proiezione.getTitoloFilm());
-        System.out.printf("║ Sala: %-30s ║%n", proiezione.getNomeSala());
-        System.out.printf("║ Orario: %-28s ║%n", proiezione.getOrarioCompleto());
-        System.out.printf("║ Posto: Fila %c, Numero %d           ║%n", posto.getFila(), posto.getNumPosto());
-        System.out.printf("║ Prezzo: €%.2f                      ║%n", proiezione.getPrezzo());
-        System.out.println("╚══════════════════════════════════════╝");
-        System.out.print("Confermi la selezione? (s/n): ");
-
-        String risposta = scanner.nextLine().trim().toLowerCase();
+        out.println("\n╔══════════════════════════════════════╗");
+        out.println("║           CONFERMA SELEZIONE         ║");
+        out.println("╠══════════════════════════════════════╣");
+        out.printf("║ Film: %-30s ║%n", proiezione.getTitoloFilm());
+        out.printf("║ Sala: %-30s ║%n", proiezione.getNomeSala());
+        out.printf("║ Orario: %-28s ║%n", proiezione.getOrarioCompleto());
+        out.printf("║ Posto: Fila %c, Numero %d           ║%n", posto.getFila(), posto.getNumPostoInt());
+        out.printf("║ Prezzo: €%.2f                      ║%n", proiezione.getPrezzo());
+        out.println("╚══════════════════════════════════════╝");
+        out.print("Confermi la selezione? (s/n): ");
+
+        String risposta = terminale.leggiRiga().trim().toLowerCase();
+        return risposta.equals("s") || risposta.equals("si");
+    }
+
+    public int richiediNumeroPosti(int massimo) {
+        out.printf("%nQuanti posti vicini cerchi? (1-%d, 0 per annullare): ", massimo);
+        return leggiIntero(0, massimo);
+    }
+
+    public boolean confermaSelezionePosti(Proiezione proiezione, List<Posto> posti) {
+        if (posti.size() == 1) {
+            return confermaSelezionePosto(proiezione, posti.get(0));
+        }
+        Posto primo = posti.get(0);
+        Posto ultimo = posti.get(posti.size() - 1);
+        out.println("\n╔══════════════════════════════════════╗");
+        out.println("║        MIGLIORI POSTI DISPONIBILI    ║");
+        out.println("╠══════════════════════════════════════╣");
+        out.printf("║ Film: %-30s ║%n", proiezione.getTitoloFilm());
+        out.printf("║ Sala: %-30s ║%n", proiezione.getNomeSala());
+        out.printf("║ Orario: %-28s ║%n", proiezione.getOrarioCompleto());
+        out.printf("║ Posti: Fila %c, dal %d al %d          ║%n",
+                primo.getFila(), primo.getNumPostoInt(), ultimo.getNumPostoInt());
+        out.printf("║ Totale: €%.2f                      ║%n", proiezione.getPrezzo().multiply(BigDecimal.valueOf(posti.size())));
+        out.println("╚══════════════════════════════════════╝");
+        out.print("Confermi la selezione? (s/n): ");
+
+        String risposta = terminale.leggiRiga().trim().toLowerCase();
         return risposta.equals("s") || risposta.equals("si");
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,22 @@
 
 package it.uniroma2.dicii.claupiscu.view;
 
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 
 public class StartView {
-    private Scanner  scanner = new Scanner(System.in);
+    private final Terminale terminale;
+    private final PrintStream out;
 
-    public StartView() {}
+    public StartView() {
+        this(Terminale.console());
+    }
+
+    public StartView(Terminale terminale) {
+        this.terminale = terminale;
+        this.out = terminale.getOutput();
+    }
     public int startView () {
         boolean continua = true;
 
@@ -23,10 +33,10 @@ public class StartView {
                     return 3;
                 case 0:
                     continua = false;
-                    System.out.println("Arrivederci!");
+                    out.println("Arrivederci!");
                     break;
                 default:
-                    System.out.println("Opzione non valida. Riprova.");
+                    out.println("Opzione non valida. Riprova.");
                     break;
             }
 
@@ -38,38 +48,37 @@ public class StartView {
     }
 
     private void stampaOpzioni() {
-        System.out.println("\n" + "=".repeat(40));
-        System.out.println("         MENU PRINCIPALE");
-        System.out.println("=".repeat(40));
-        System.out.println("1. Prenotare un biglietto");
-        System.out.println("2. Annullare una prenotazione");
-        System.out.println("3. Manutenzione");
-        System.out.println("0. Esci");
-        System.out.println("=".repeat(40));
-        System.out.print("Seleziona un'opzione: ");
+        out.println("\n" + "=".repeat(40));
+        out.println("         MENU PRINCIPALE");
+        out.println("=".repeat(40));
+        out.println("1. Prenotare un biglietto");
+        out.println("2. Annullare una prenotazione");
+        out.println("3. Manutenzione");
+        out.println("0. Esci");
+        out.println("=".repeat(40));
+        out.print("Seleziona un'opzione: ");
     }
 
     private int leggiScelta() {
         try {
-            int scelta = scanner.nextInt();
-            scanner.nextLine(); // Consuma il newline rimasto
-            return scelta;
-        } catch (Exception e) {
-            scanner.nextLine(); // Pulisce l'input non valido
+            return Integer.parseInt(terminale.leggiRiga().trim());
+        } catch (NumberFormatException e) {
             return -1; // Ritorna un valore non valido
         }
     }
     private void pausaEContinua() {
-        System.out.println("\nPremi INVIO per continuare...");
-        scanner.nextLine();
+        out.println("\nPremi INVIO per continuare...");
+        terminale.leggiRiga();
     }
 
     /**
      * Chiude le risorse utilizzate dalla View
      */
     public void chiudi() {
-        if (scanner != null) {
-            scanner.close();
+        try {
+            terminale.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 }
@@ -0,0 +1,129 @@
+package it.uniroma2.dicii.claupiscu.view;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingresso e uscita di una sessione: la console del processo oppure la connessione di un
+ * terminale remoto. Le view leggono e scrivono solo da qui, cosi' piu' sessioni nello stesso
+ * processo non si mescolano l'input.
+ *
+ * Le righe arrivano in una coda riempita da un virtual thread lettore: chi le consuma puo'
+ * attenderle con un timeout, ed essere svegliato prima da un evento (es. la scadenza della
+ * prenotazione) senza che nessun thread di piattaforma resti bloccato sull'input.
+ */
+public final class Terminale implements Closeable {
+    private static final Terminale CONSOLE = new Terminale(System.in, System.out);
+    // segnali nella coda delle righe, riconosciuti per identita'
+    private static final String FINE = new String("<fine>");
+    private static final String SVEGLIA = new String("<sveglia>");
+
+    private final InputStream sorgente;
+    private final BufferedReader input;
+    private final PrintStream output;
+    private final BlockingQueue<String> righe = new LinkedBlockingQueue<>();
+    private volatile IOException errore;
+    private Thread lettore;
+
+    public Terminale(InputStream input, OutputStream output) {
+        this.sorgente = input;
+        this.input = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        this.output = output instanceof PrintStream ? (PrintStream) output
+                : new PrintStream(output, false, StandardCharsets.UTF_8);
+    }
+
+    // Unico per processo: due lettori bufferizzati su System.in si ruberebbero le righe
+    public static Terminale console() {
+        return CONSOLE;
+    }
+
+    // Come Scanner.nextLine: NoSuchElementException se il terminale e' stato chiuso
+    public String leggiRiga() {
+        avviaLettore();
+        output.flush(); // il prompt deve arrivare prima di mettersi in attesa
+        try {
+            while (true) {
+                String riga = righe.take();
+                if (riga != SVEGLIA) {
+                    return verifica(riga);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NoSuchElementException("Lettura interrotta");
+        }
+    }
+
+    /**
+     * Attende una riga al massimo per timeout. Restituisce null se il tempo scade o se
+     * nel frattempo qualcuno chiama sveglia(): il chiamante ricontrolla il proprio stato.
+     */
+    public String attendiRiga(long timeout, TimeUnit unita) {
+        avviaLettore();
+        output.flush();
+        try {
+            String riga = righe.poll(timeout, unita);
+            return riga == null || riga == SVEGLIA ? null : verifica(riga);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // Interrompe subito un attendiRiga in corso (o il prossimo); leggiRiga lo ignora
+    public void sveglia() {
+        righe.offer(SVEGLIA);
+    }
+
+    private String verifica(String riga) {
+        if (riga == FINE) {
+            righe.offer(FINE); // anche le letture successive devono fallire
+            if (errore != null) {
+                throw new UncheckedIOException(errore);
+            }
+            throw new NoSuchElementException("Terminale chiuso");
+        }
+        return riga;
+    }
+
+    private synchronized void avviaLettore() {
+        if (lettore == null) {
+            lettore = Thread.ofVirtual().name("terminale-lettore").start(this::leggiIngresso);
+        }
+    }
+
+    private void leggiIngresso() {
+        try {
+            String riga;
+            while ((riga = input.readLine()) != null) {
+                righe.offer(riga);
+            }
+        } catch (IOException e) {
+            errore = e;
+        }
+        righe.offer(FINE);
+    }
+
+    public PrintStream getOutput() {
+        return output;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.flush();
+        // lo stream sottostante, non il BufferedReader: il suo lock e' tenuto dal lettore in readLine
+        sorgente.close();
+        output.close();
+    }
+}
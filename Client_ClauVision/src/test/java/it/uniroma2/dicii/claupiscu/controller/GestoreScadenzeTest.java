@@ -0,0 +1,67 @@
+package it.uniroma2.dicii.claupiscu.controller;
+
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione;
+import it.uniroma2.dicii.claupiscu.model.domain.Prenotazione.StatoPrenotazione;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GestoreScadenzeTest {
+
+    private static void avanza(GestoreScadenze gestore, int tick) {
+        for (int i = 0; i < tick; i++) {
+            gestore.avanza();
+        }
+    }
+
+    // Scade esattamente dopo tickDaAttendere tick, anche quando la scadenza fa uno o piu' giri della ruota
+    @ParameterizedTest
+    @CsvSource({"0, 1", "0, 1023", "0, 1024", "0, 1025", "0, 2048", "0, 2049",
+            "700, 1024", "700, 1025", "1023, 1024", "1023, 1025"})
+    void scadeAlTickGiusto(int tickIniziali, long tickDaAttendere) {
+        GestoreScadenze gestore = new GestoreScadenze(false);
+        avanza(gestore, tickIniziali);
+        Prenotazione prenotazione = new Prenotazione();
+        AtomicInteger chiamate = new AtomicInteger();
+        gestore.registra(prenotazione, chiamate::incrementAndGet, tickDaAttendere);
+
+        avanza(gestore, (int) tickDaAttendere - 1);
+        assertEquals(StatoPrenotazione.TEMPORANEA, prenotazione.getStatoPrenotazione());
+        assertEquals(1, gestore.getPrenotazioniInAttesa());
+
+        gestore.avanza();
+        assertEquals(StatoPrenotazione.SCADUTA, prenotazione.getStatoPrenotazione());
+        assertEquals(1, chiamate.get());
+        assertEquals(0, gestore.getPrenotazioniInAttesa());
+        assertEquals(1, gestore.getScaduteTotali());
+
+        // non resta nella ruota: il giro successivo non la richiama
+        avanza(gestore, 2048);
+        assertEquals(1, chiamate.get());
+    }
+
+    @Test
+    void annullataNonScade() {
+        GestoreScadenze gestore = new GestoreScadenze(false);
+        Prenotazione prenotazione = new Prenotazione();
+        GestoreScadenze.Scadenza scadenza = gestore.registra(prenotazione, null, 1024);
+        // un'altra scadenza nello stesso slot resta collegata
+        Prenotazione stessoSlot = new Prenotazione();
+        gestore.registra(stessoSlot, null, 2048);
+
+        assertTrue(scadenza.annulla());
+        assertFalse(scadenza.annulla());
+        avanza(gestore, 1024);
+        assertEquals(StatoPrenotazione.TEMPORANEA, prenotazione.getStatoPrenotazione());
+        assertEquals(StatoPrenotazione.TEMPORANEA, stessoSlot.getStatoPrenotazione());
+        avanza(gestore, 1024);
+        assertEquals(StatoPrenotazione.SCADUTA, stessoSlot.getStatoPrenotazione());
+        assertEquals(0, gestore.getPrenotazioniInAttesa());
+    }
+}
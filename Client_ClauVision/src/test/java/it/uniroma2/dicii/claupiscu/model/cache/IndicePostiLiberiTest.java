@@ -0,0 +1,127 @@
+package it.uniroma2.dicii.claupiscu.model.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndicePostiLiberiTest {
+
+    // Sala di una fila per ogni intervallo [primo, ultimo] di numeri; le file si ripetono per fare salti
+    private static LayoutSala layout(char[] file, int[][] intervalli) {
+        List<Character> fileDi = new ArrayList<>();
+        List<Integer> posti = new ArrayList<>();
+        for (int i = 0; i < file.length; i++) {
+            for (int p = intervalli[i][0]; p <= intervalli[i][1]; p++) {
+                fileDi.add(file[i]);
+                posti.add(p);
+            }
+        }
+        char[] f = new char[fileDi.size()];
+        int[] n = new int[posti.size()];
+        for (int i = 0; i < f.length; i++) {
+            f[i] = fileDi.get(i);
+            n[i] = posti.get(i);
+        }
+        return new LayoutSala((byte) 1, f.length, f, n);
+    }
+
+    private static long[] liberi(LayoutSala layout) {
+        return new long[(layout.getNumeroPosti() + 63) >>> 6];
+    }
+
+    @Test
+    void laRunSiFermaAlSaltoDiNumerazione() {
+        // fila A: 1-5, corridoio, 8-12
+        LayoutSala sala = layout(new char[] {'A', 'A'}, new int[][] {{1, 5}, {8, 12}});
+        IndicePostiLiberi indice = new IndicePostiLiberi(sala, liberi(sala), 0);
+
+        assertEquals(-1, indice.cercaMigliori(6));
+        int inizio = indice.cercaMigliori(5);
+        assertTrue(inizio == 0 || inizio == 5, "inizio " + inizio);
+    }
+
+    @Test
+    void laRunSiFermaAlSaltoOltreLaPrimaParola() {
+        // il salto cade sull'indice 40 e la seconda run attraversa il confine tra le parole 0 e 1
+        LayoutSala sala = layout(new char[] {'A', 'A'}, new int[][] {{1, 40}, {45, 100}});
+        IndicePostiLiberi indice = new IndicePostiLiberi(sala, liberi(sala), 0);
+
+        assertEquals(-1, indice.cercaMigliori(57));
+        assertEquals(40, indice.cercaMigliori(56));
+    }
+
+    @Test
+    void laRunNonPassaAllaFilaSuccessiva() {
+        // la numerazione di B prosegue quella di A, ma sono file diverse
+        LayoutSala sala = layout(new char[] {'A', 'B'}, new int[][] {{1, 4}, {5, 8}});
+        IndicePostiLiberi indice = new IndicePostiLiberi(sala, liberi(sala), 0);
+
+        assertEquals(-1, indice.cercaMigliori(5));
+        assertTrue(indice.cercaMigliori(4) >= 0);
+    }
+
+    @Test
+    void saleCasualiConSaltiEPostiOccupati() {
+        Random random = new Random(7);
+        for (int prova = 0; prova < 300; prova++) {
+            int numeroFile = 1 + random.nextInt(6);
+            List<Character> file = new ArrayList<>();
+            List<int[]> intervalli = new ArrayList<>();
+            for (int f = 0; f < numeroFile; f++) {
+                int numero = 1 + random.nextInt(3);
+                // da uno a tre blocchi per fila, separati da salti di numerazione
+                for (int b = 1 + random.nextInt(3); b > 0; b--) {
+                    int lunghezza = 1 + random.nextInt(30);
+                    file.add((char) ('A' + f));
+                    intervalli.add(new int[] {numero, numero + lunghezza - 1});
+                    numero += lunghezza + 1 + random.nextInt(3);
+                }
+            }
+            char[] f = new char[file.size()];
+            for (int i = 0; i < f.length; i++) {
+                f[i] = file.get(i);
+            }
+            LayoutSala sala = layout(f, intervalli.toArray(new int[0][]));
+            long[] occupati = liberi(sala);
+            for (int i = 0; i < sala.getNumeroPosti(); i++) {
+                if (random.nextInt(4) == 0) {
+                    occupati[i >>> 6] |= 1L << i;
+                }
+            }
+            IndicePostiLiberi indice = new IndicePostiLiberi(sala, occupati, 0);
+
+            for (int n = 1; n <= 32; n++) {
+                int inizio = indice.cercaMigliori(n);
+                if (inizio >= 0) {
+                    assertTrue(bloccoLibero(sala, occupati, inizio, n), "prova " + prova + ", n " + n);
+                } else {
+                    for (int i = 0; i + n <= sala.getNumeroPosti(); i++) {
+                        assertFalse(bloccoLibero(sala, occupati, i, n), "prova " + prova + ", n " + n + ": libero da " + i);
+                    }
+                }
+            }
+        }
+    }
+
+    // n posti liberi della stessa fila con numeri consecutivi a partire dall'indice inizio
+    private static boolean bloccoLibero(LayoutSala sala, long[] occupati, int inizio, int n) {
+        if (inizio + n > sala.getNumeroPosti()) {
+            return false;
+        }
+        for (int i = inizio; i < inizio + n; i++) {
+            if ((occupati[i >>> 6] & (1L << i)) != 0) {
+                return false;
+            }
+            if (i > inizio && (sala.getFila(i) != sala.getFila(i - 1) || sala.getNumPosto(i) != sala.getNumPosto(i - 1) + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
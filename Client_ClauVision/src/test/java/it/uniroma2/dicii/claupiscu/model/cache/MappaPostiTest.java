@@ -0,0 +1,123 @@
+package it.uniroma2.dicii.claupiscu.model.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappaPostiTest {
+    // MappaPosti(8): 16 celle, soglia di crescita a 8 elementi
+    private static final int CELLE = 16;
+
+    // Stessa funzione di MappaPosti.cella(): serve a scegliere chiavi che collidono
+    private static int cella(int chiave) {
+        int h = chiave * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (CELLE - 1);
+    }
+
+    private static List<Integer> chiaviNellaCella(int indice, int quante) {
+        List<Integer> chiavi = new ArrayList<>();
+        for (int k = 1; chiavi.size() < quante; k++) {
+            if (cella(k) == indice) {
+                chiavi.add(k);
+            }
+        }
+        return chiavi;
+    }
+
+    @Test
+    void rimozioneConCatenaCheGiraSullaPrimaCella() {
+        // quattro chiavi sull'ultima cella occupano 15, 0, 1, 2; una chiave della cella 0 finisce in 3
+        List<Integer> collisioni = chiaviNellaCella(CELLE - 1, 4);
+        int chiaveCellaZero = chiaviNellaCella(0, 1).get(0);
+        MappaPosti<String> mappa = new MappaPosti<>(8);
+        for (int k : collisioni) {
+            mappa.put(k, "v" + k);
+        }
+        mappa.put(chiaveCellaZero, "zero");
+
+        assertEquals("v" + collisioni.get(0), mappa.remove(collisioni.get(0)));
+        assertEquals(4, mappa.size());
+        assertNull(mappa.get(collisioni.get(0)));
+        for (int k : collisioni.subList(1, 4)) {
+            assertEquals("v" + k, mappa.get(k));
+        }
+        assertEquals("zero", mappa.get(chiaveCellaZero));
+
+        // rimuove dal mezzo della catena, ora spostata indietro oltre la fine dell'array
+        assertEquals("v" + collisioni.get(2), mappa.remove(collisioni.get(2)));
+        assertEquals("v" + collisioni.get(1), mappa.get(collisioni.get(1)));
+        assertEquals("v" + collisioni.get(3), mappa.get(collisioni.get(3)));
+        assertEquals("zero", mappa.get(chiaveCellaZero));
+        assertEquals(3, mappa.size());
+    }
+
+    @Test
+    void operazioniCasualiComeHashMap() {
+        Random random = new Random(42);
+        MappaPosti<Integer> mappa = new MappaPosti<>(8);
+        Map<Integer, Integer> attesa = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            // poche chiavi in una tabella piccola: catene lunghe e spesso a cavallo della fine
+            int chiave = 1 + random.nextInt(12);
+            if (random.nextBoolean()) {
+                assertEquals(attesa.put(chiave, i), mappa.put(chiave, i));
+            } else {
+                assertEquals(attesa.remove(chiave), mappa.remove(chiave));
+            }
+            assertEquals(attesa.size(), mappa.size());
+        }
+        for (int k = 1; k <= 12; k++) {
+            assertEquals(attesa.get(k), mappa.get(k));
+            assertEquals(attesa.containsKey(k), mappa.containsKey(k));
+        }
+    }
+
+    @Test
+    void removeIfRimuoveSoloLeVociCheSoddisfanoIlPredicato() {
+        MappaPosti<Integer> mappa = new MappaPosti<>();
+        for (int k = 1; k <= 1000; k++) {
+            mappa.put(k, k);
+        }
+
+        assertEquals(333, mappa.removeIf(v -> v % 3 == 0));
+        assertEquals(667, mappa.size());
+        for (int k = 1; k <= 1000; k++) {
+            if (k % 3 == 0) {
+                assertFalse(mappa.containsKey(k));
+            } else {
+                assertEquals(k, mappa.get(k));
+            }
+        }
+    }
+
+    @Test
+    void removeIfSuCatenaCheGiraSullaPrimaCella() {
+        List<Integer> collisioni = chiaviNellaCella(CELLE - 1, 5);
+        MappaPosti<Integer> mappa = new MappaPosti<>(8);
+        for (int i = 0; i < collisioni.size(); i++) {
+            mappa.put(collisioni.get(i), i);
+        }
+
+        // le voci pari occupano 15, 1 e 3: ogni rimozione sposta indietro quelle che seguono
+        assertEquals(3, mappa.removeIf(v -> v % 2 == 0));
+        assertEquals(2, mappa.size());
+        for (int i = 0; i < collisioni.size(); i++) {
+            if (i % 2 == 0) {
+                assertNull(mappa.get(collisioni.get(i)));
+            } else {
+                assertEquals(i, mappa.get(collisioni.get(i)));
+            }
+        }
+        assertEquals(2, mappa.removeIf(v -> true));
+        assertTrue(mappa.isEmpty());
+    }
+}
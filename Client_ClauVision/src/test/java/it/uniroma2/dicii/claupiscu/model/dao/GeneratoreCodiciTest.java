@@ -0,0 +1,95 @@
+package it.uniroma2.dicii.claupiscu.model.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeneratoreCodiciTest {
+    // 2025-01-01T00:00:00Z
+    private static final long ADESSO = 1_735_689_600_000L;
+
+    private static long decodifica(String codice, int da, int a) {
+        long valore = 0;
+        for (int i = da; i < a; i++) {
+            valore = (valore << 5) | GeneratoreCodici.ALFABETO.indexOf(codice.charAt(i));
+        }
+        return valore;
+    }
+
+    private static long tempo(String codice) {
+        return decodifica(codice, 0, 9);
+    }
+
+    private static long sequenza(String codice) {
+        return decodifica(codice, 11, 13);
+    }
+
+    @Test
+    void crescenteAncheSeLOrologioTornaIndietro() {
+        AtomicLong orologio = new AtomicLong(ADESSO);
+        GeneratoreCodici generatore = new GeneratoreCodici(7, orologio::get);
+
+        String precedente = generatore.nuovoCodice();
+        for (int i = 0; i < 100; i++) {
+            // l'orologio avanza e ogni tanto torna indietro di un secondo
+            orologio.addAndGet(i % 10 == 9 ? -1000 : 3);
+            String codice = generatore.nuovoCodice();
+            assertTrue(codice.substring(0, 13).compareTo(precedente.substring(0, 13)) > 0,
+                    codice + " non segue " + precedente);
+            assertEquals("07", codice.substring(9, 11));
+            precedente = codice;
+        }
+    }
+
+    @Test
+    void laSequenzaPiena1024ProsegueNelMillisecondoSuccessivo() {
+        GeneratoreCodici generatore = new GeneratoreCodici(0, () -> ADESSO);
+
+        // il generatore parte dal millisecondo dopo la sua creazione
+        String primo = generatore.nuovoCodice();
+        long millisecondo = tempo(primo);
+        assertEquals(0, sequenza(primo));
+        String codice = primo;
+        for (int i = 1; i < 1024; i++) {
+            codice = generatore.nuovoCodice();
+            assertEquals(millisecondo, tempo(codice));
+            assertEquals(i, sequenza(codice));
+        }
+
+        String successivo = generatore.nuovoCodice();
+        assertEquals(millisecondo + 1, tempo(successivo));
+        assertEquals(0, sequenza(successivo));
+        assertTrue(successivo.compareTo(codice) > 0);
+    }
+
+    @Test
+    void controlloRilevaOgniCarattereSbagliato() {
+        String codice = new GeneratoreCodici(513, () -> ADESSO).nuovoCodice();
+        assertEquals(GeneratoreCodici.LUNGHEZZA, codice.length());
+        assertTrue(GeneratoreCodici.isValido(codice));
+        assertTrue(GeneratoreCodici.isValido(codice.toLowerCase()));
+
+        for (int i = 0; i < codice.length(); i++) {
+            for (char c : GeneratoreCodici.ALFABETO.toCharArray()) {
+                if (c != codice.charAt(i)) {
+                    String alterato = codice.substring(0, i) + c + codice.substring(i + 1);
+                    assertFalse(GeneratoreCodici.isValido(alterato), alterato);
+                }
+            }
+        }
+    }
+
+    @Test
+    void formatoNonValido() {
+        String codice = new GeneratoreCodici(1, () -> ADESSO).nuovoCodice();
+        assertFalse(GeneratoreCodici.isValido(null));
+        assertFalse(GeneratoreCodici.isValido(codice.substring(1)));
+        // U non fa parte dell'alfabeto Crockford
+        assertFalse(GeneratoreCodici.isValido("U" + codice.substring(1)));
+        assertFalse(GeneratoreCodici.isValido("é" + codice.substring(1)));
+    }
+}
@@ -74,11 +74,14 @@ CREATE TABLE proiezione(
     data_ora_inizio DATETIME NOT NULL,
     data_ora_fine DATETIME NOT NULL, -- AGGIUNTO per calcoli
     stato_proiezione ENUM('PROGRAMMATA', 'IN_CORSO', 'TERMINATA') DEFAULT 'PROGRAMMATA',
+    -- aggiornato a ogni insert/update: il calendario dei client rilegge solo le proiezioni cambiate
+    timestamp_modifica DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
     PRIMARY KEY(id_proiezione),
     FOREIGN KEY (titolo_film) REFERENCES film(titolo_film) ON DELETE CASCADE,
     FOREIGN KEY (num_sala) REFERENCES sala(num_sala) ON DELETE CASCADE,
     INDEX idx_data_inizio (data_ora_inizio),
-    INDEX idx_sala_data (num_sala, data_ora_inizio)
+    INDEX idx_sala_data (num_sala, data_ora_inizio),
+    INDEX idx_modifica (timestamp_modifica)
 )ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 --
@@ -92,64 +95,132 @@ CREATE TABLE prenotazione(
     num_posto TINYINT UNSIGNED NOT NULL,
     id_proiezione SMALLINT  UNSIGNED NOT NULL,
     data_ora_prenotazione DATETIME NOT NULL,
-    data_ora_conferma DATETIME NOT NULL,
+    data_ora_conferma DATETIME NULL, -- valorizzata solo alla conferma
     stato_prenotazione ENUM('TEMPORANEA', 'CONFERMATA', 'ANNULLATA', 'SCADUTA') DEFAULT 'TEMPORANEA',
     timestamp_creazione DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,  
     ticket_pag VARCHAR(50), -- verrà memorizzato unicamente un ticket e non le informazioni di pagamento per delegare tutta la logica annessa a programmi esterni 
     timestamp_conferma DATETIME NULL,
     timestamp_scadenza DATETIME NOT NULL, -- Calcolato: creazione + 10 minuti
+    timestamp_modifica DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3), -- watermark per il refresh incrementale dei posti lato client (cambia anche su annullamento/scadenza)
     PRIMARY KEY(codice_prenotazione),
     FOREIGN KEY (id_proiezione) REFERENCES proiezione(id_proiezione),
     FOREIGN KEY (num_sala, fila, num_posto) REFERENCES posto(num_sala, fila, num_posto),
-    UNIQUE KEY uk_proiezione_posto (id_proiezione, num_sala, fila, num_posto),
     INDEX idx_stato_scadenza (stato_prenotazione, timestamp_scadenza),
     INDEX idx_proiezione (id_proiezione),
-    INDEX idx_timestamp_creazione (timestamp_creazione)
+    INDEX idx_timestamp_creazione (timestamp_creazione),
+    INDEX idx_proiezione_modifica (id_proiezione, timestamp_modifica)
 )ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 --
--- Table structure for table `Lock Distribuiti` (per gestione concorrenza)
+-- Table structure for table `Posti occupati` (per gestione concorrenza)
 --
-CREATE TABLE distributed_locks(
-    lock_name VARCHAR(100) NOT NULL,
-    acquired_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-    expires_at TIMESTAMP NOT NULL,
-    session_id VARCHAR(50) NOT NULL,
-    PRIMARY KEY(lock_name),
-    INDEX idx_expires (expires_at)
+-- Una riga per posto tenuto da una prenotazione TEMPORANEA o CONFERMATA: il posto e' di chi ne
+-- inserisce per primo la riga, la chiave primaria decide la gara tra sessioni e nodi. La riga
+-- sparisce nella stessa transazione in cui la prenotazione diventa ANNULLATA o SCADUTA, quindi
+-- il posto si puo' prenotare di nuovo; la storia resta in prenotazione
+CREATE TABLE posto_occupato(
+    id_proiezione SMALLINT UNSIGNED NOT NULL,
+    num_sala TINYINT UNSIGNED NOT NULL,
+    fila CHAR(1) NOT NULL,
+    num_posto TINYINT UNSIGNED NOT NULL,
+    codice_prenotazione VARCHAR(20) NOT NULL,
+    PRIMARY KEY(id_proiezione, num_sala, fila, num_posto),
+    UNIQUE KEY uk_codice (codice_prenotazione),
+    FOREIGN KEY (id_proiezione) REFERENCES proiezione(id_proiezione),
+    FOREIGN KEY (num_sala, fila, num_posto) REFERENCES posto(num_sala, fila, num_posto)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
 
 --
 -- Table structure for table `Log Operazioni' (per audit e recovery)
 --
+-- Una partizione per mese (pAAAAMM contiene le righe fino alla fine di quel mese): le partizioni
+-- dei mesi successivi vengono create in anticipo dividendo p_futuro e quelle oltre la conservazione
+-- eliminate intere da ManutenzionePartizioni, invece di cancellare le righe una per una
 CREATE TABLE log_operazioni(
     id_log BIGINT UNSIGNED NOT NULL AUTO_INCREMENT,
     operazione ENUM('PRENOTAZIONE_CREATA', 'PRENOTAZIONE_CONFERMATA', 'PRENOTAZIONE_ANNULLATA', 'PRENOTAZIONE_SCADUTA') NOT NULL,
     codice_prenotazione VARCHAR(20),
     id_proiezione SMALLINT UNSIGNED,
     dettagli JSON,
-    timestamp_operazione TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    PRIMARY KEY(id_log),
+    timestamp_operazione TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY(id_log, timestamp_operazione), -- la colonna di partizionamento deve far parte della chiave
     INDEX idx_timestamp (timestamp_operazione),
     INDEX idx_prenotazione (codice_prenotazione)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+PARTITION BY RANGE (UNIX_TIMESTAMP(timestamp_operazione)) (
+    PARTITION p_futuro VALUES LESS THAN MAXVALUE
+);
+
+--
+-- Table structure for table `Prenotazioni archiviate' (proiezioni terminate da piu' di un mese)
+--
+-- ArchiviaPrenotazioni sposta qui le prenotazioni chiuse: prenotazione contiene solo quelle delle
+-- proiezioni recenti e i suoi indici (idx_stato_scadenza in testa) restano piccoli. Niente chiavi
+-- esterne (non ammesse sulle tabelle partizionate): il prezzo e' copiato dalla proiezione
+CREATE TABLE prenotazione_archivio(
+    codice_prenotazione VARCHAR(20) NOT NULL,
+    num_sala TINYINT UNSIGNED NOT NULL,
+    fila CHAR(1) NOT NULL,
+    num_posto TINYINT UNSIGNED NOT NULL,
+    id_proiezione SMALLINT UNSIGNED NOT NULL,
+    data_ora_prenotazione DATETIME NOT NULL,
+    data_ora_conferma DATETIME NULL,
+    stato_prenotazione ENUM('TEMPORANEA', 'CONFERMATA', 'ANNULLATA', 'SCADUTA') NOT NULL,
+    timestamp_creazione DATETIME NOT NULL,
+    ticket_pag VARCHAR(50),
+    timestamp_conferma DATETIME NULL,
+    timestamp_scadenza DATETIME NOT NULL,
+    prezzo DECIMAL(5,2) NOT NULL,
+    PRIMARY KEY(codice_prenotazione, timestamp_creazione),
+    INDEX idx_proiezione (id_proiezione)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 ROW_FORMAT=COMPRESSED
+PARTITION BY RANGE (TO_DAYS(timestamp_creazione)) (
+    PARTITION p_futuro VALUES LESS THAN MAXVALUE
+);
 
 
 --
 -- Table structure for table `report'
 --
 
+-- contatori per mese di creazione della prenotazione e sala, aggiornati in modo incrementale
+-- da AggiornaReport (le percentuali sono derivate dai contatori)
 CREATE TABLE report(
     anno YEAR NOT NULL,
     mese TINYINT NOT NULL,
     num_sala TINYINT UNSIGNED NOT NULL,
-    perc_annullati DECIMAL(10,2) NOT NULL,
-    perc_confermati DECIMAL(10,2) NOT NULL,
+    prenotazioni INT NOT NULL DEFAULT 0,
+    confermate INT NOT NULL DEFAULT 0,
+    annullate INT NOT NULL DEFAULT 0,
+    scadute INT NOT NULL DEFAULT 0,
+    incasso DECIMAL(12,2) NOT NULL DEFAULT 0,
+    perc_annullati DECIMAL(10,2) AS (IF(prenotazioni = 0, 0, annullate * 100 / prenotazioni)) VIRTUAL,
+    perc_confermati DECIMAL(10,2) AS (IF(prenotazioni = 0, 0, confermate * 100 / prenotazioni)) VIRTUAL,
     PRIMARY KEY (anno, mese, num_sala),
     FOREIGN KEY (num_sala) REFERENCES sala(num_sala)
 )ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+--
+-- Table structure for table `report_variazioni' (variazioni dei contatori non ancora in report)
+--
+-- I trigger su prenotazione aggiungono qui una riga per ogni inserimento o cambio di stato invece di
+-- aggiornare report: durante una prima tutte le prenotazioni cadono sulla stessa riga (mese, sala)
+-- e la transazione della prenotazione resterebbe in coda sul suo lock
+CREATE TABLE report_variazioni(
+    id_variazione BIGINT UNSIGNED NOT NULL AUTO_INCREMENT,
+    anno YEAR NOT NULL,
+    mese TINYINT NOT NULL,
+    num_sala TINYINT UNSIGNED NOT NULL,
+    prenotazioni TINYINT NOT NULL DEFAULT 0,
+    confermate TINYINT NOT NULL DEFAULT 0,
+    annullate TINYINT NOT NULL DEFAULT 0,
+    scadute TINYINT NOT NULL DEFAULT 0,
+    incasso DECIMAL(7,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (id_variazione),
+    INDEX idx_mese (anno, mese)
+)ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 
 CREATE TABLE utente(
     username VARCHAR(50) NOT NULL,
@@ -174,8 +245,8 @@ CREATE PROCEDURE CreaPrenotazioneTemporanea(
     IN p_id_proiezione SMALLINT UNSIGNED,
     IN p_fila CHAR(1),
     IN p_num_posto TINYINT UNSIGNED,
-    OUT p_codice_prenotazione VARCHAR(20),
-    OUT p_risultato INT -- 1=successo, 0=posto occupato, -1=errore_proiezione, -2=errore_generico 
+    INOUT p_codice_prenotazione VARCHAR(20), -- generato dal client (GeneratoreCodici); se NULL lo genera la procedura
+    OUT p_risultato INT -- 1=successo, 0=posto occupato, -1=errore_proiezione, -2=errore_generico o codice gia' usato
 )
 proc_exit: BEGIN
 
@@ -184,26 +255,36 @@ proc_exit: BEGIN
     DECLARE v_num_sala TINYINT UNSIGNED;
     DECLARE v_data_inizio DATETIME;
     DECLARE v_prezzo DECIMAL(5,2);
-    DECLARE v_lock_name VARCHAR(100);
-    DECLARE v_session_id VARCHAR(50);
-    DECLARE v_count_existing INT DEFAULT 0;
-    DECLARE v_lock_acquired BOOLEAN DEFAULT FALSE;
 
     DECLARE EXIT HANDLER FOR SQLEXCEPTION
     BEGIN
         ROLLBACK;
-        IF v_lock_acquired THEN
-            DELETE FROM distributed_locks WHERE lock_name = v_lock_name AND session_id = v_session_id;
-        END IF;
         SET p_risultato = -2;
     END;
 
-    -- genera sessione ID unico 
-    SET v_session_id = CONCAT(CONNECTION_ID(), '_', UNIX_TIMESTAMP(),'_', RAND());
+    -- la gara tra sessioni e nodi si risolve sulla chiave di posto_occupato: chi perde trova il posto occupato.
+    -- Un codice gia' usato da un'altra prenotazione (due nodi con lo stesso codici.nodo) non e' un posto occupato
+    DECLARE EXIT HANDLER FOR 1062
+    BEGIN
+        ROLLBACK;
+        IF EXISTS (SELECT 1 FROM posto_occupato WHERE codice_prenotazione = p_codice_prenotazione)
+           OR EXISTS (SELECT 1 FROM prenotazione WHERE codice_prenotazione = p_codice_prenotazione) THEN
+            SET p_risultato = -2;
+        ELSE
+            SET p_risultato = 0;
+        END IF;
+    END;
+
+    -- chiave esterna verso posto: il posto non esiste nella sala
+    DECLARE EXIT HANDLER FOR 1452
+    BEGIN
+        ROLLBACK;
+        SET p_risultato = -1;
+    END;
 
-    -- Genera codice prenotazione unico
-    -- Formato del codice: RES[Anno][Mese][ID Proiezione][Fila][Numero Posto][Numero Casuale]
-    SET p_codice_prenotazione = CONCAT('RES',YEAR(NOW()),MONTH(NOW()),LPAD(p_id_proiezione,4,'0'), UPPER(p_fila),LPAD(p_num_posto,2,'0'),LPAD(floor(RAND() * 1000),3,'0'));
+    -- Codice dal client, univoco senza tentativi; altrimenti il vecchio formato
+    -- RES[Anno][Mese][ID Proiezione][Fila][Numero Posto][Numero Casuale], che puo' collidere
+    SET p_codice_prenotazione = COALESCE(p_codice_prenotazione, CONCAT('RES',YEAR(NOW()),MONTH(NOW()),LPAD(p_id_proiezione,4,'0'), UPPER(p_fila),LPAD(p_num_posto,2,'0'),LPAD(floor(RAND() * 1000),3,'0')));
 
     -- Inizia la transazione
     START TRANSACTION;
@@ -221,45 +302,9 @@ proc_exit: BEGIN
         LEAVE proc_exit;
     END IF;
 
-    -- creo lock specifico per posto e proiezione
-    SET v_lock_name = CONCAT('seat_',p_id_proiezione, '_', v_num_sala, '_', p_fila, '_', p_num_posto);
-    
-    -- acquisisce lock distribuito con timeout
-    INSERT INTO distributed_locks (lock_name, expires_at, session_id) 
-    VALUES (v_lock_name, DATE_ADD(NOW(), INTERVAL 15 MINUTE), v_session_id)
-    ON DUPLICATE KEY UPDATE lock_name = lock_name; -- fallisce se lock gia esiste
-
-    IF ROW_COUNT() = 0 THEN
-        SET p_risultato = 0; -- posto in fase di prenotazione da parte di un altro utente
-        ROLLBACK;
-        LEAVE proc_exit;
-    END IF;
-    SET v_lock_acquired = TRUE;
-    -- Verifica se il posto è già prenotato
-    SELECT COUNT(*) INTO v_count_existing
-    from prenotazione
-    WHERE  id_proiezione = p_id_proiezione
-        AND num_sala  = v_num_sala
-        AND fila = p_fila
-        AND num_posto = p_num_posto
-        AND stato_prenotazione IN ('TEMPORANEA', 'CONFERMATA');
-    IF v_count_existing > 0 THEN
-        SET p_risultato = 0; -- Posto già prenotato
-        DELETE from distributed_locks WHERE lock_name = v_lock_name AND session_id = v_session_id;
-        ROLLBACK;
-        LEAVE proc_exit;
-    END IF;
-
-    -- Verifica che il posto esista fisicamente
-    SELECT COUNT(*) INTO v_count_existing
-    from posto
-    WHERE num_sala = v_num_sala AND fila = p_fila AND num_posto = p_num_posto;
-    IF v_count_existing = 0 THEN
-        SET p_risultato = -1; -- Posto non esistente
-        DELETE from distributed_locks WHERE lock_name = v_lock_name AND session_id = v_session_id;
-        ROLLBACK;
-        LEAVE proc_exit;
-    END IF;
+    -- occupa il posto: un solo insert, vinto o perso (1062) in modo atomico; 1452 se il posto non esiste
+    INSERT INTO posto_occupato (id_proiezione, num_sala, fila, num_posto, codice_prenotazione)
+    VALUES (p_id_proiezione, v_num_sala, p_fila, p_num_posto, p_codice_prenotazione);
 
 
     -- Inserisce la prenotazione temporanea
@@ -269,6 +314,7 @@ proc_exit: BEGIN
         num_sala, 
         fila, 
         num_posto,
+        data_ora_prenotazione,
         stato_prenotazione,
         timestamp_creazione,
         timestamp_scadenza
@@ -278,18 +324,161 @@ proc_exit: BEGIN
         v_num_sala, 
         p_fila, 
         p_num_posto,
+        NOW(),
         'TEMPORANEA',
         NOW(),
         DATE_ADD(NOW(), INTERVAL 10 MINUTE)
     );
 
-    -- log operazione
-    INSERT INTO log_operazioni (operazione, codice_prenotazione, id_proiezione, dettagli)
-    VALUES ('PRENOTAZIONE_CREATA', p_codice_prenotazione, p_id_proiezione, JSON_OBJECT('posto', CONCAT(p_fila, p_num_posto), 'prezzo', v_prezzo));
+    -- log operazione (se @audit_applicativo e' impostato lo scrive il client, fuori dalla transazione)
+    IF COALESCE(@audit_applicativo, FALSE) = FALSE THEN
+        INSERT INTO log_operazioni (operazione, codice_prenotazione, id_proiezione, dettagli)
+        VALUES ('PRENOTAZIONE_CREATA', p_codice_prenotazione, p_id_proiezione, JSON_OBJECT('posto', CONCAT(p_fila, p_num_posto), 'prezzo', v_prezzo));
+    END IF;
     SET p_risultato = 1; -- Successo
     COMMIT;
     
 END //
+
+-- =============================================
+-- PROCEDURA: Crea Prenotazioni Multiple
+-- Prenota N posti della stessa proiezione in un'unica transazione: o tutti o nessuno.
+-- p_posti: [{"fila": "A", "num_posto": 5, "codice": "..."}, {"fila": "A", "num_posto": 6, "codice": "..."}, ...]
+-- (codice facoltativo, generato dal client)
+-- Restituisce un result set con una riga per posto (fila, num_posto, codice_prenotazione, esito)
+-- dove esito vale 1=prenotato, 0=occupato, -1=inesistente, -2=codice gia' usato da un'altra prenotazione,
+-- -3=libero ma non prenotato perche' il gruppo e' fallito
+-- =============================================
+CREATE PROCEDURE CreaPrenotazioniMultiple(
+    IN p_id_proiezione SMALLINT UNSIGNED,
+    IN p_posti JSON,
+    OUT p_risultato INT -- 1=successo, 0=almeno un posto occupato, -1=errore_proiezione o posto inesistente, -2=errore_generico
+)
+proc_exit: BEGIN
+    DECLARE v_num_sala TINYINT UNSIGNED;
+    DECLARE v_prezzo DECIMAL(5,2);
+    DECLARE v_num_posti INT;
+    DECLARE v_count INT DEFAULT 0;
+    DECLARE v_suffisso CHAR(3);
+    DECLARE v_occupato BOOLEAN DEFAULT FALSE;
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        SET p_risultato = -2;
+    END;
+
+    SET v_suffisso = LPAD(FLOOR(RAND() * 1000), 3, '0');
+
+    -- posti richiesti, una riga ciascuno; i duplicati vengono scartati e rilevati dal conteggio
+    DROP TEMPORARY TABLE IF EXISTS tmp_posti_richiesti;
+    CREATE TEMPORARY TABLE tmp_posti_richiesti (
+        fila CHAR(1) NOT NULL,
+        num_posto TINYINT UNSIGNED NOT NULL,
+        codice_prenotazione VARCHAR(20),
+        PRIMARY KEY (fila, num_posto)
+    ) ENGINE=MEMORY;
+
+    INSERT IGNORE INTO tmp_posti_richiesti (fila, num_posto, codice_prenotazione)
+    SELECT UPPER(jt.fila), jt.num_posto,
+           COALESCE(jt.codice, CONCAT('RES', YEAR(NOW()), MONTH(NOW()), LPAD(p_id_proiezione, 4, '0'), UPPER(jt.fila), LPAD(jt.num_posto, 2, '0'), v_suffisso))
+    FROM JSON_TABLE(p_posti, '$[*]' COLUMNS (
+        fila CHAR(1) PATH '$.fila',
+        num_posto TINYINT UNSIGNED PATH '$.num_posto',
+        codice VARCHAR(20) PATH '$.codice' -- facoltativo: generato dal client
+    )) AS jt;
+    SET v_num_posti = ROW_COUNT();
+
+    prenota: BEGIN
+        IF v_num_posti = 0 OR v_num_posti <> JSON_LENGTH(p_posti) THEN
+            SET p_risultato = -1; -- lista vuota o con posti ripetuti
+            LEAVE prenota;
+        END IF;
+
+        START TRANSACTION;
+
+        SELECT num_sala, prezzo
+        INTO v_num_sala, v_prezzo
+        FROM proiezione
+        WHERE id_proiezione = p_id_proiezione
+            AND data_ora_inizio > NOW()
+            AND stato_proiezione = 'PROGRAMMATA';
+        IF v_num_sala IS NULL THEN
+            SET p_risultato = -1;
+            ROLLBACK;
+            LEAVE prenota;
+        END IF;
+
+        -- tutti i posti devono esistere nella sala
+        SELECT COUNT(*) INTO v_count
+        FROM tmp_posti_richiesti t
+        JOIN posto p ON p.num_sala = v_num_sala AND p.fila = t.fila AND p.num_posto = t.num_posto;
+        IF v_count <> v_num_posti THEN
+            SET p_risultato = -1;
+            ROLLBACK;
+            LEAVE prenota;
+        END IF;
+
+        -- un solo insert multi-riga in posto_occupato: se anche un posto e' gia' occupato fallisce tutto
+        BEGIN
+            DECLARE EXIT HANDLER FOR 1062 SET v_occupato = TRUE;
+            INSERT INTO posto_occupato (id_proiezione, num_sala, fila, num_posto, codice_prenotazione)
+            SELECT p_id_proiezione, v_num_sala, t.fila, t.num_posto, t.codice_prenotazione
+            FROM tmp_posti_richiesti t;
+        END;
+        IF v_occupato THEN
+            -- la chiave duplicata puo' essere un codice gia' usato invece di un posto occupato
+            IF EXISTS (SELECT 1 FROM tmp_posti_richiesti t
+                       JOIN posto_occupato o ON o.codice_prenotazione = t.codice_prenotazione) THEN
+                SET p_risultato = -2;
+            ELSE
+                SET p_risultato = 0;
+            END IF;
+            ROLLBACK;
+            LEAVE prenota;
+        END IF;
+
+        INSERT INTO prenotazione (
+            codice_prenotazione, id_proiezione, num_sala, fila, num_posto,
+            data_ora_prenotazione, stato_prenotazione, timestamp_creazione, timestamp_scadenza
+        )
+        SELECT t.codice_prenotazione, p_id_proiezione, v_num_sala, t.fila, t.num_posto,
+               NOW(), 'TEMPORANEA', NOW(), DATE_ADD(NOW(), INTERVAL 10 MINUTE)
+        FROM tmp_posti_richiesti t;
+
+        -- un solo log per tutto il gruppo
+        IF COALESCE(@audit_applicativo, FALSE) = FALSE THEN
+            INSERT INTO log_operazioni (operazione, codice_prenotazione, id_proiezione, dettagli)
+            SELECT 'PRENOTAZIONE_CREATA', MIN(t.codice_prenotazione), p_id_proiezione,
+                   JSON_OBJECT('posti', JSON_ARRAYAGG(CONCAT(t.fila, t.num_posto)),
+                               'codici', JSON_ARRAYAGG(t.codice_prenotazione),
+                               'prezzo', v_prezzo)
+            FROM tmp_posti_richiesti t;
+        END IF;
+
+        SET p_risultato = 1;
+        COMMIT;
+    END prenota;
+
+    -- esito per posto
+    SELECT t.fila, t.num_posto,
+           IF(p_risultato = 1, t.codice_prenotazione, NULL) AS codice_prenotazione,
+           CASE
+               WHEN p_risultato = 1 THEN 1
+               WHEN v_num_sala IS NULL THEN -1
+               WHEN EXISTS (SELECT 1 FROM posto_occupato o WHERE o.codice_prenotazione = t.codice_prenotazione) THEN -2
+               WHEN NOT EXISTS (SELECT 1 FROM posto p
+                                WHERE p.num_sala = v_num_sala AND p.fila = t.fila AND p.num_posto = t.num_posto) THEN -1
+               WHEN EXISTS (SELECT 1 FROM posto_occupato o
+                            WHERE o.id_proiezione = p_id_proiezione AND o.num_sala = v_num_sala
+                                AND o.fila = t.fila AND o.num_posto = t.num_posto) THEN 0
+               ELSE -3
+           END AS esito
+    FROM tmp_posti_richiesti t
+    ORDER BY t.fila, t.num_posto;
+
+    DROP TEMPORARY TABLE IF EXISTS tmp_posti_richiesti;
+END //
 -- =============================================
 -- PROCEDURA: Conferma Prenotazione
 -- Gestisce il pagamento e la conferma finale
@@ -303,7 +492,6 @@ proc_exit: BEGIN
     DECLARE v_stato_attuale ENUM('TEMPORANEA', 'CONFERMATA', 'ANNULLATA', 'SCADUTA');
     DECLARE v_timestamp_scadenza DATETIME;
     DECLARE v_id_proiezione SMALLINT UNSIGNED;
-    DECLARE v_lock_name VARCHAR(100);
     DECLARE v_num_sala TINYINT UNSIGNED;
     DECLARE v_fila CHAR(1);
     DECLARE v_num_posto TINYINT UNSIGNED;
@@ -348,18 +536,17 @@ proc_exit: BEGIN
     -- Conferma la prenotazione
     UPDATE prenotazione
     SET stato_prenotazione = 'CONFERMATA',
+        data_ora_conferma = NOW(),
         timestamp_conferma = NOW(),
         ticket_pag = p_ticket_pag
         WHERE codice_prenotazione = p_codice_prenotazione;  
-    
-    -- rimuove il lock distribuito
-    SET v_lock_name = CONCAT('seat_', v_id_proiezione, '_', v_num_sala, '_', v_fila, '_', v_num_posto);
-    DELETE FROM distributed_locks 
-    WHERE lock_name = v_lock_name;
+    -- il posto resta in posto_occupato fino a un eventuale annullamento
 
     -- log operazione
-    INSERT INTO log_operazioni (operazione, codice_prenotazione, id_proiezione, dettagli)
-        VALUES ('PRENOTAZIONE_CONFERMATA', p_codice_prenotazione, v_id_proiezione, JSON_OBJECT('posto', CONCAT(v_fila, v_num_posto)));
+    IF COALESCE(@audit_applicativo, FALSE) = FALSE THEN
+        INSERT INTO log_operazioni (operazione, codice_prenotazione, id_proiezione, dettagli)
+            VALUES ('PRENOTAZIONE_CONFERMATA', p_codice_prenotazione, v_id_proiezione, JSON_OBJECT('posto', CONCAT(v_fila, v_num_posto)));
+    END IF;
         
     SET p_risultato = 1; -- Successo
     COMMIT;
@@ -372,7 +559,7 @@ END //
 
 CREATE PROCEDURE AnnullaPrenotazione(
     IN p_codice_prenotazione VARCHAR(20),
-    OUT p_risultato INT -- 1=successo, 0=prenotazione non trovata, -1=troppo tardi, -2=errore_generico
+    OUT p_risultato INT -- 1=successo, 2=gia' annullata o scaduta, 0=prenotazione non trovata, -1=troppo tardi, -2=errore_generico
 )
 proc_exit: BEGIN
     DECLARE v_stato_attuale ENUM('TEMPORANEA', 'CONFERMATA', 'ANNULLATA', 'SCADUTA');
@@ -409,71 +596,586 @@ proc_exit: BEGIN
     END IF;
 
     -- Annulla la prenotazione 
-    IF v_stato_attuale = ('TEMPORANEA' , 'CONFERMATA') THEN
+    IF v_stato_attuale IN ('TEMPORANEA', 'CONFERMATA') THEN
         UPDATE prenotazione
         SET stato_prenotazione = 'ANNULLATA'
         WHERE codice_prenotazione = p_codice_prenotazione;
 
         -- log operazione
-        INSERT INTO log_operazioni (operazione, codice_prenotazione, id_proiezione)
-        VALUES ('PRENOTAZIONE_ANNULLATA', p_codice_prenotazione, v_id_proiezione);
-       END IF;
-
+        IF COALESCE(@audit_applicativo, FALSE) = FALSE THEN
+            INSERT INTO log_operazioni (operazione, codice_prenotazione, id_proiezione)
+            VALUES ('PRENOTAZIONE_ANNULLATA', p_codice_prenotazione, v_id_proiezione);
+        END IF;
         SET p_risultato = 1; -- Successo
+    ELSE
+        SET p_risultato = 2; -- Gia' annullata o scaduta: nessun cambio di stato
+    END IF;
+
+    COMMIT;
+END //
+
+-- =============================================
+-- PROCEDURA: Conferma Prenotazioni Multiple
+-- Conferma in un'unica transazione le temporanee di un gruppo, con lo stesso ticket:
+-- o vengono confermate tutte o nessuna
+-- =============================================
+
+CREATE PROCEDURE ConfermaPrenotazioniMultiple(
+    IN p_codici JSON, -- array di codici_prenotazione
+    IN p_ticket_pag VARCHAR(50),
+    OUT p_risultato INT -- 1=successo, 0=almeno una non trovata, -1=almeno una non temporanea o scaduta, -2=errore_generico
+)
+BEGIN
+    DECLARE v_num_codici INT;
+    DECLARE v_trovate INT;
+    DECLARE v_confermabili INT;
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        SET @log_di_gruppo = NULL;
+        DROP TEMPORARY TABLE IF EXISTS tmp_codici_gruppo;
+        SET p_risultato = -2;
+    END;
+
+    DROP TEMPORARY TABLE IF EXISTS tmp_codici_gruppo;
+    CREATE TEMPORARY TABLE tmp_codici_gruppo (
+        codice_prenotazione VARCHAR(20) NOT NULL PRIMARY KEY
+    ) ENGINE=MEMORY;
+
+    INSERT IGNORE INTO tmp_codici_gruppo (codice_prenotazione)
+    SELECT jt.codice
+    FROM JSON_TABLE(p_codici, '$[*]' COLUMNS (codice VARCHAR(20) PATH '$')) AS jt;
+    SET v_num_codici = ROW_COUNT();
+
+    conferma: BEGIN
+        IF v_num_codici = 0 OR v_num_codici <> JSON_LENGTH(p_codici) THEN
+            SET p_risultato = 0; -- lista vuota o con codici ripetuti
+            LEAVE conferma;
+        END IF;
+
+        START TRANSACTION;
+
+        -- lock esclusivo su tutte le prenotazioni del gruppo
+        SELECT COUNT(*), COALESCE(SUM(p.stato_prenotazione = 'TEMPORANEA' AND NOW() <= p.timestamp_scadenza), 0)
+        INTO v_trovate, v_confermabili
+        FROM tmp_codici_gruppo t
+        JOIN prenotazione p ON p.codice_prenotazione = t.codice_prenotazione
+        FOR UPDATE;
+
+        IF v_trovate <> v_num_codici THEN
+            SET p_risultato = 0;
+            ROLLBACK;
+            LEAVE conferma;
+        END IF;
+        IF v_confermabili <> v_num_codici THEN
+            SET p_risultato = -1;
+            ROLLBACK;
+            LEAVE conferma;
+        END IF;
+
+        -- il log del gruppo e' quello sotto: log_cambio_stato_prenotazione non scrive una riga per posto
+        SET @log_di_gruppo = TRUE;
+        UPDATE prenotazione p
+        JOIN tmp_codici_gruppo t ON t.codice_prenotazione = p.codice_prenotazione
+        SET p.stato_prenotazione = 'CONFERMATA',
+            p.data_ora_conferma = NOW(),
+            p.timestamp_conferma = NOW(),
+            p.ticket_pag = p_ticket_pag;
+        SET @log_di_gruppo = NULL;
+
+        -- un solo log per tutto il gruppo
+        IF COALESCE(@audit_applicativo, FALSE) = FALSE THEN
+            INSERT INTO log_operazioni (operazione, codice_prenotazione, id_proiezione, dettagli)
+            SELECT 'PRENOTAZIONE_CONFERMATA', MIN(p.codice_prenotazione), MIN(p.id_proiezione),
+                   JSON_OBJECT('posti', JSON_ARRAYAGG(CONCAT(p.fila, p.num_posto)),
+                               'codici', JSON_ARRAYAGG(p.codice_prenotazione))
+            FROM tmp_codici_gruppo t
+            JOIN prenotazione p ON p.codice_prenotazione = t.codice_prenotazione;
+        END IF;
+
+        SET p_risultato = 1;
         COMMIT;
+    END conferma;
+
+    DROP TEMPORARY TABLE IF EXISTS tmp_codici_gruppo;
+END //
+
+-- =============================================
+-- PROCEDURA: Annulla Prenotazioni Multiple
+-- Annulla in un'unica transazione le prenotazioni di un gruppo, fino a 30 minuti prima:
+-- o vengono annullate tutte o nessuna. Restituisce i codici che erano ancora attivi
+-- =============================================
+
+CREATE PROCEDURE AnnullaPrenotazioniMultiple(
+    IN p_codici JSON, -- array di codici_prenotazione
+    OUT p_risultato INT -- 1=successo, 0=almeno una non trovata, -1=troppo tardi, -2=errore_generico
+)
+BEGIN
+    DECLARE v_num_codici INT;
+    DECLARE v_trovate INT;
+    DECLARE v_in_tempo INT;
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        SET @log_di_gruppo = NULL;
+        DROP TEMPORARY TABLE IF EXISTS tmp_codici_gruppo;
+        SET p_risultato = -2;
+    END;
+
+    DROP TEMPORARY TABLE IF EXISTS tmp_codici_gruppo;
+    CREATE TEMPORARY TABLE tmp_codici_gruppo (
+        codice_prenotazione VARCHAR(20) NOT NULL PRIMARY KEY
+    ) ENGINE=MEMORY;
+
+    INSERT IGNORE INTO tmp_codici_gruppo (codice_prenotazione)
+    SELECT jt.codice
+    FROM JSON_TABLE(p_codici, '$[*]' COLUMNS (codice VARCHAR(20) PATH '$')) AS jt;
+    SET v_num_codici = ROW_COUNT();
+
+    annulla: BEGIN
+        IF v_num_codici = 0 OR v_num_codici <> JSON_LENGTH(p_codici) THEN
+            SET p_risultato = 0; -- lista vuota o con codici ripetuti
+            LEAVE annulla;
+        END IF;
+
+        START TRANSACTION;
+
+        SELECT COUNT(*), COALESCE(SUM(NOW() <= DATE_SUB(pr.data_ora_inizio, INTERVAL 30 MINUTE)), 0)
+        INTO v_trovate, v_in_tempo
+        FROM tmp_codici_gruppo t
+        JOIN prenotazione p ON p.codice_prenotazione = t.codice_prenotazione
+        JOIN proiezione pr ON pr.id_proiezione = p.id_proiezione
+        FOR UPDATE;
+
+        IF v_trovate <> v_num_codici THEN
+            SET p_risultato = 0;
+            ROLLBACK;
+            LEAVE annulla;
+        END IF;
+        IF v_in_tempo <> v_num_codici THEN
+            SET p_risultato = -1; -- troppo tardi per annullare
+            ROLLBACK;
+            LEAVE annulla;
+        END IF;
+
+        -- un solo log per tutto il gruppo, prima dell'update per leggere solo quelle ancora attive
+        IF COALESCE(@audit_applicativo, FALSE) = FALSE THEN
+            INSERT INTO log_operazioni (operazione, codice_prenotazione, id_proiezione, dettagli)
+            SELECT 'PRENOTAZIONE_ANNULLATA', MIN(p.codice_prenotazione), MIN(p.id_proiezione),
+                   JSON_OBJECT('codici', JSON_ARRAYAGG(p.codice_prenotazione))
+            FROM tmp_codici_gruppo t
+            JOIN prenotazione p ON p.codice_prenotazione = t.codice_prenotazione
+            WHERE p.stato_prenotazione IN ('TEMPORANEA', 'CONFERMATA')
+            HAVING COUNT(*) > 0;
+        END IF;
+
+        -- i codici che cambiano davvero stato, per il registro del client
+        SELECT p.codice_prenotazione
+        FROM tmp_codici_gruppo t
+        JOIN prenotazione p ON p.codice_prenotazione = t.codice_prenotazione
+        WHERE p.stato_prenotazione IN ('TEMPORANEA', 'CONFERMATA');
+
+        -- il trigger libera_posto_occupato libera i posti
+        SET @log_di_gruppo = TRUE;
+        UPDATE prenotazione p
+        JOIN tmp_codici_gruppo t ON t.codice_prenotazione = p.codice_prenotazione
+        SET p.stato_prenotazione = 'ANNULLATA'
+        WHERE p.stato_prenotazione IN ('TEMPORANEA', 'CONFERMATA');
+        SET @log_di_gruppo = NULL;
+
+        SET p_risultato = 1;
+        COMMIT;
+    END annulla;
+
+    DROP TEMPORARY TABLE IF EXISTS tmp_codici_gruppo;
+END //
+
+-- =============================================
+-- PROCEDURA: Scadi Prenotazioni
+-- Marca come scadute al massimo p_blocco temporanee scadute, in ordine di scadenza lungo
+-- idx_stato_scadenza, e restituisce i posti liberati. Una transazione breve per chiamata:
+-- il chiamante ripete passando la chiave dell'ultima riga finche' il blocco non e' pieno
+-- =============================================
+
+CREATE PROCEDURE ScadiPrenotazioni(
+    IN p_blocco INT,
+    INOUT p_dopo_scadenza DATETIME, -- chiave (scadenza, codice) dell'ultima riga del blocco precedente, NULL al primo
+    INOUT p_dopo_codice VARCHAR(20),
+    OUT p_scadute INT
+)
+BEGIN
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        SET @scadenza_a_blocchi = NULL;
+        RESIGNAL;
+    END;
+
+    CREATE TEMPORARY TABLE IF NOT EXISTS prenotazioni_in_scadenza (
+        codice_prenotazione VARCHAR(20) NOT NULL PRIMARY KEY,
+        id_proiezione SMALLINT UNSIGNED NOT NULL,
+        num_sala TINYINT UNSIGNED NOT NULL,
+        fila CHAR(1) NOT NULL,
+        num_posto TINYINT UNSIGNED NOT NULL,
+        timestamp_scadenza DATETIME NOT NULL
+    ) ENGINE=MEMORY;
+    DELETE FROM prenotazioni_in_scadenza;
+
+    -- READ COMMITTED: lock solo sulle righe scadute, nessun gap lock sull'indice che fermi le nuove temporanee
+    SET TRANSACTION ISOLATION LEVEL READ COMMITTED;
+    START TRANSACTION;
+
+    -- le temporanee che qualcuno sta confermando o annullando in questo momento vengono saltate, non attese
+    INSERT INTO prenotazioni_in_scadenza
+    SELECT codice_prenotazione, id_proiezione, num_sala, fila, num_posto, timestamp_scadenza
+    FROM prenotazione FORCE INDEX (idx_stato_scadenza)
+    WHERE stato_prenotazione = 'TEMPORANEA'
+      AND timestamp_scadenza < NOW()
+      AND timestamp_scadenza >= COALESCE(p_dopo_scadenza, '1000-01-01')
+      AND (p_dopo_scadenza IS NULL
+           OR timestamp_scadenza > p_dopo_scadenza
+           OR codice_prenotazione > p_dopo_codice)
+    ORDER BY timestamp_scadenza, codice_prenotazione
+    LIMIT p_blocco
+    FOR UPDATE SKIP LOCKED;
+    SET p_scadute = ROW_COUNT();
+
+    IF p_scadute > 0 THEN
+        SELECT timestamp_scadenza, codice_prenotazione INTO p_dopo_scadenza, p_dopo_codice
+        FROM prenotazioni_in_scadenza
+        ORDER BY timestamp_scadenza DESC, codice_prenotazione DESC
+        LIMIT 1;
+
+        -- i posti si liberano sotto tutti insieme, non uno per riga dal trigger
+        SET @scadenza_a_blocchi = TRUE;
+        UPDATE prenotazione p
+        JOIN prenotazioni_in_scadenza s ON s.codice_prenotazione = p.codice_prenotazione
+        SET p.stato_prenotazione = 'SCADUTA';
+        SET @scadenza_a_blocchi = NULL;
+
+        DELETE o FROM prenotazioni_in_scadenza s
+        JOIN posto_occupato o ON o.codice_prenotazione = s.codice_prenotazione;
+    END IF;
+    COMMIT;
+
+    SELECT codice_prenotazione, id_proiezione, fila, num_posto FROM prenotazioni_in_scadenza;
 END //
 
 -- =============================================
 -- PROCEDURA: Cleanup Prenotazioni Scadute
--- Eseguita periodicamente per pulizia
+-- Eseguita periodicamente per pulizia: normalmente la precede PuliziaScadenze dei client,
+-- resta per quando nessun client e' attivo
 -- =============================================
 
 CREATE PROCEDURE CleanupPrenotazioniScadute()
 proc_exit: BEGIN
     DECLARE v_count INT DEFAULT 0;
+    DECLARE v_scadute INT;
+    DECLARE v_dopo_scadenza DATETIME DEFAULT NULL;
+    DECLARE v_dopo_codice VARCHAR(20) DEFAULT NULL;
 
-    START TRANSACTION;
-    -- Marca come scadute le prenotazioni temporanee scadute
-    UPDATE prenotazione
-    SET stato_prenotazione = 'SCADUTA'
-    WHERE stato_prenotazione = 'TEMPORANEA' 
-        AND timestamp_scadenza < NOW();
+    -- Marca come scadute le prenotazioni temporanee scadute, a blocchi
+    REPEAT
+        CALL ScadiPrenotazioni(500, v_dopo_scadenza, v_dopo_codice, v_scadute);
+        SET v_count = v_count + v_scadute;
+    UNTIL v_scadute < 500 END REPEAT;
 
-    SET v_count = ROW_COUNT();
+    START TRANSACTION;
 
     -- Log delle prenotazioni scadute
-    IF v_count > 0 THEN
+    IF v_count > 0 AND COALESCE(@audit_applicativo, FALSE) = FALSE THEN
         INSERT INTO log_operazioni (operazione, id_proiezione, dettagli)
         VALUES ('PRENOTAZIONE_SCADUTA', NULL, JSON_OBJECT('count', v_count));
     END IF;
-    
-    -- rimuove lock scaduti
-    DELETE FROM distributed_locks 
-    WHERE expires_at < NOW();
 
     COMMIT;
 
 END //
 
+-- =============================================
+-- PROCEDURA: Aggiorna Report
+-- Somma in report le variazioni gia' committate, a blocchi di p_massimo righe
+-- =============================================
+
+CREATE PROCEDURE AggiornaReport(IN p_massimo INT)
+BEGIN
+    DECLARE v_righe INT;
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        DROP TEMPORARY TABLE IF EXISTS report_variazioni_blocco;
+        RESIGNAL;
+    END;
+
+    CREATE TEMPORARY TABLE IF NOT EXISTS report_variazioni_blocco (
+        id_variazione BIGINT UNSIGNED NOT NULL PRIMARY KEY
+    ) ENGINE=MEMORY;
+
+    REPEAT
+        DELETE FROM report_variazioni_blocco;
+        START TRANSACTION;
+        -- SKIP LOCKED salta le righe di transazioni non ancora committate e quelle prese da
+        -- un'altra chiamata: ogni variazione viene sommata una volta sola
+        INSERT INTO report_variazioni_blocco
+        SELECT id_variazione FROM report_variazioni
+        ORDER BY id_variazione
+        LIMIT p_massimo
+        FOR UPDATE SKIP LOCKED;
+        SET v_righe = ROW_COUNT();
+
+        INSERT INTO report (anno, mese, num_sala, prenotazioni, confermate, annullate, scadute, incasso)
+        SELECT v.anno, v.mese, v.num_sala,
+               SUM(v.prenotazioni), SUM(v.confermate), SUM(v.annullate), SUM(v.scadute), SUM(v.incasso)
+        FROM report_variazioni v
+        JOIN report_variazioni_blocco b ON b.id_variazione = v.id_variazione
+        GROUP BY v.anno, v.mese, v.num_sala
+        ON DUPLICATE KEY UPDATE
+            prenotazioni = report.prenotazioni + VALUES(prenotazioni),
+            confermate = report.confermate + VALUES(confermate),
+            annullate = report.annullate + VALUES(annullate),
+            scadute = report.scadute + VALUES(scadute),
+            incasso = report.incasso + VALUES(incasso);
+
+        DELETE v FROM report_variazioni v
+        JOIN report_variazioni_blocco b ON b.id_variazione = v.id_variazione;
+        COMMIT;
+    -- un blocco non pieno: le variazioni arrivate nel frattempo aspettano la prossima chiamata
+    UNTIL v_righe < p_massimo END REPEAT;
+
+    DROP TEMPORARY TABLE report_variazioni_blocco;
+END //
+
+-- =============================================
+-- PROCEDURA: Ricostruisci Report
+-- Ricalcola report dallo storico delle prenotazioni, un mese per transazione
+-- =============================================
+
+CREATE PROCEDURE RicostruisciReport()
+BEGIN
+    DECLARE v_mese DATE;
+    DECLARE v_fine DATE;
+    DECLARE v_confermate INT;
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    SELECT DATE_FORMAT(MIN(creazione), '%Y-%m-01') INTO v_mese
+    FROM (SELECT MIN(timestamp_creazione) AS creazione FROM prenotazione
+          UNION ALL
+          SELECT MIN(timestamp_creazione) FROM prenotazione_archivio) t;
+
+    WHILE v_mese IS NOT NULL AND v_mese <= CURDATE() DO
+        SET v_fine = v_mese + INTERVAL 1 MONTH;
+        START TRANSACTION;
+
+        -- blocca le prenotazioni del mese (lettura sul record, non solo sull'indice): i cambi di
+        -- stato in corso terminano prima, i successivi attendono il commit e le loro variazioni
+        -- si sommano al mese appena ricostruito
+        SELECT SUM(stato_prenotazione = 'CONFERMATA') INTO v_confermate
+        FROM prenotazione
+        WHERE timestamp_creazione >= v_mese AND timestamp_creazione < v_fine
+        LOCK IN SHARE MODE;
+
+        -- le variazioni del mese sono gia' contenute nello stato appena letto
+        DELETE FROM report_variazioni WHERE anno = YEAR(v_mese) AND mese = MONTH(v_mese);
+        DELETE FROM report WHERE anno = YEAR(v_mese) AND mese = MONTH(v_mese);
+
+        -- le prenotazioni archiviate sono chiuse: nessun lock
+        INSERT INTO report (anno, mese, num_sala, prenotazioni, confermate, annullate, scadute, incasso)
+        SELECT YEAR(v_mese), MONTH(v_mese), t.num_sala,
+               COUNT(*),
+               SUM(t.stato_prenotazione = 'CONFERMATA'),
+               SUM(t.stato_prenotazione = 'ANNULLATA'),
+               SUM(t.stato_prenotazione = 'SCADUTA'),
+               SUM(IF(t.stato_prenotazione = 'CONFERMATA', t.prezzo, 0))
+        FROM (SELECT p.num_sala, p.stato_prenotazione, pr.prezzo
+              FROM prenotazione p
+              JOIN proiezione pr ON pr.id_proiezione = p.id_proiezione
+              WHERE p.timestamp_creazione >= v_mese AND p.timestamp_creazione < v_fine
+              UNION ALL
+              SELECT a.num_sala, a.stato_prenotazione, a.prezzo
+              FROM prenotazione_archivio a
+              WHERE a.timestamp_creazione >= v_mese AND a.timestamp_creazione < v_fine) t
+        GROUP BY t.num_sala;
+
+        COMMIT;
+        SET v_mese = v_fine;
+    END WHILE;
+END //
+
+-- =============================================
+-- PROCEDURA: Prepara Partizione Mensile
+-- Crea in p_tabella la partizione del mese p_mese dividendo p_futuro, se non esiste gia'
+-- una partizione per quel mese o per uno successivo
+-- =============================================
 
+CREATE PROCEDURE PreparaPartizioneMensile(
+    IN p_tabella VARCHAR(64),
+    IN p_mese DATE,
+    IN p_funzione VARCHAR(20) -- funzione di partizionamento della tabella (UNIX_TIMESTAMP, TO_DAYS)
+)
+BEGIN
+    DECLARE v_nome VARCHAR(10) DEFAULT DATE_FORMAT(p_mese, 'p%Y%m');
+    -- partizione creata nel frattempo da un'altra chiamata (es. l'evento appena installato)
+    DECLARE CONTINUE HANDLER FOR 1517 BEGIN END;
+
+    IF NOT EXISTS (SELECT 1 FROM information_schema.PARTITIONS
+                   WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = p_tabella
+                     AND PARTITION_NAME >= v_nome AND PARTITION_NAME <> 'p_futuro') THEN
+        SET @ddl_partizione = CONCAT('ALTER TABLE ', p_tabella, ' REORGANIZE PARTITION p_futuro INTO (',
+            'PARTITION ', v_nome, ' VALUES LESS THAN (', p_funzione, '(''',
+            DATE_FORMAT(p_mese + INTERVAL 1 MONTH, '%Y-%m-01'), ''')), ',
+            'PARTITION p_futuro VALUES LESS THAN MAXVALUE)');
+        PREPARE stmt_partizione FROM @ddl_partizione;
+        EXECUTE stmt_partizione;
+        DEALLOCATE PREPARE stmt_partizione;
+    END IF;
+END //
+
+-- =============================================
+-- PROCEDURA: Manutenzione Partizioni
+-- Prepara le partizioni di log_operazioni per i prossimi p_mesi_avanti mesi ed elimina quelle
+-- dei mesi terminati da piu' di p_mesi_log mesi
+-- =============================================
+
+CREATE PROCEDURE ManutenzionePartizioni(IN p_mesi_avanti INT, IN p_mesi_log INT)
+BEGIN
+    DECLARE v_mese DATE DEFAULT DATE_FORMAT(CURDATE(), '%Y-%m-01');
+    DECLARE v_i INT DEFAULT 0;
+    DECLARE v_vecchie TEXT;
+
+    -- le partizioni future sono vuote: dividere p_futuro non sposta righe
+    WHILE v_i <= p_mesi_avanti DO
+        CALL PreparaPartizioneMensile('log_operazioni', v_mese + INTERVAL v_i MONTH, 'UNIX_TIMESTAMP');
+        SET v_i = v_i + 1;
+    END WHILE;
+
+    SELECT GROUP_CONCAT(PARTITION_NAME) INTO v_vecchie
+    FROM information_schema.PARTITIONS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'log_operazioni'
+      AND PARTITION_NAME < DATE_FORMAT(v_mese - INTERVAL p_mesi_log MONTH, 'p%Y%m')
+      AND PARTITION_NAME <> 'p_futuro';
+
+    IF v_vecchie IS NOT NULL THEN
+        SET @ddl_partizione = CONCAT('ALTER TABLE log_operazioni DROP PARTITION ', v_vecchie);
+        PREPARE stmt_partizione FROM @ddl_partizione;
+        EXECUTE stmt_partizione;
+        DEALLOCATE PREPARE stmt_partizione;
+    END IF;
+END //
+
+-- =============================================
+-- PROCEDURA: Archivia Prenotazioni
+-- Sposta in prenotazione_archivio le prenotazioni delle proiezioni terminate prima dell'inizio
+-- del mese di p_mesi mesi fa, una proiezione per transazione
+-- =============================================
+
+CREATE PROCEDURE ArchiviaPrenotazioni(IN p_mesi INT)
+BEGIN
+    DECLARE v_limite DATETIME DEFAULT DATE_FORMAT(CURDATE(), '%Y-%m-01') - INTERVAL p_mesi MONTH;
+    DECLARE v_mese DATE;
+    DECLARE v_id_proiezione SMALLINT UNSIGNED DEFAULT 0;
+    DECLARE v_spostate INT;
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    -- una partizione per ogni mese da archiviare, prima di spostare le righe (p_futuro resta vuota)
+    SELECT DATE_FORMAT(MIN(p.timestamp_creazione), '%Y-%m-01') INTO v_mese
+    FROM prenotazione p
+    JOIN proiezione pr ON pr.id_proiezione = p.id_proiezione
+    WHERE pr.data_ora_fine < v_limite;
+    WHILE v_mese IS NOT NULL AND v_mese < v_limite DO
+        CALL PreparaPartizioneMensile('prenotazione_archivio', v_mese, 'TO_DAYS');
+        SET v_mese = v_mese + INTERVAL 1 MONTH;
+    END WHILE;
+
+    archivia: LOOP
+        SET v_id_proiezione = (
+            SELECT MIN(pr.id_proiezione) FROM proiezione pr
+            WHERE pr.id_proiezione > v_id_proiezione
+              AND pr.data_ora_fine < v_limite
+              AND EXISTS (SELECT 1 FROM prenotazione p WHERE p.id_proiezione = pr.id_proiezione));
+        IF v_id_proiezione IS NULL THEN
+            LEAVE archivia;
+        END IF;
+
+        START TRANSACTION;
+        -- la copia blocca le righe lette: la DELETE rimuove esattamente quelle copiate.
+        -- Le temporanee ancora da marcare come scadute restano alla pulizia e al prossimo giro
+        INSERT INTO prenotazione_archivio (
+            codice_prenotazione, num_sala, fila, num_posto, id_proiezione, data_ora_prenotazione,
+            data_ora_conferma, stato_prenotazione, timestamp_creazione, ticket_pag, timestamp_conferma,
+            timestamp_scadenza, prezzo)
+        SELECT p.codice_prenotazione, p.num_sala, p.fila, p.num_posto, p.id_proiezione, p.data_ora_prenotazione,
+               p.data_ora_conferma, p.stato_prenotazione, p.timestamp_creazione, p.ticket_pag, p.timestamp_conferma,
+               p.timestamp_scadenza, pr.prezzo
+        FROM prenotazione p
+        JOIN proiezione pr ON pr.id_proiezione = p.id_proiezione
+        WHERE p.id_proiezione = v_id_proiezione
+          AND p.stato_prenotazione <> 'TEMPORANEA'
+        LOCK IN SHARE MODE;
+        SET v_spostate = ROW_COUNT();
+
+        DELETE o FROM posto_occupato o
+        JOIN prenotazione p ON p.codice_prenotazione = o.codice_prenotazione
+        WHERE o.id_proiezione = v_id_proiezione
+          AND p.stato_prenotazione <> 'TEMPORANEA';
+
+        DELETE FROM prenotazione
+        WHERE id_proiezione = v_id_proiezione
+          AND stato_prenotazione <> 'TEMPORANEA';
+
+        IF ROW_COUNT() <> v_spostate THEN
+            SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Archiviazione interrotta: prenotazioni modificate durante la copia';
+        END IF;
+        COMMIT;
+    END LOOP;
+END //
 
 
 -- =============================================
 -- EVENTI PROGRAMMATI
 -- =============================================
 
--- Evento per cleanup automatico ogni 5 minuti
+-- Evento per cleanup automatico ogni 5 minuti (di riserva: PuliziaScadenze passa ogni pochi secondi)
 CREATE EVENT IF NOT EXISTS cleanup_prenotazioni_scadute
 ON SCHEDULE EVERY 5 MINUTE
 DO
 CALL CleanupPrenotazioniScadute();
 
--- Evento per pulizia log vecchi (mensile)
+-- Evento per portare in report le variazioni dei contatori (ogni minuto)
+CREATE EVENT IF NOT EXISTS aggiorna_report
+ON SCHEDULE EVERY 1 MINUTE
+DO
+CALL AggiornaReport(1000);
+
+-- Evento per le partizioni di log_operazioni (giornaliero): prepara i prossimi 3 mesi ed
+-- elimina i mesi piu' vecchi di 12
 CREATE EVENT IF NOT EXISTS cleanup_log_vecchi
-ON SCHEDULE EVERY 1 MONTH
+ON SCHEDULE EVERY 1 DAY
 STARTS CURRENT_TIMESTAMP
 DO
-    DELETE FROM log_operazioni WHERE timestamp_operazione < DATE_SUB(NOW(), INTERVAL 12 MONTH);
+CALL ManutenzionePartizioni(3, 12);
+
+-- Evento per l'archiviazione delle prenotazioni delle proiezioni dei mesi chiusi (giornaliero)
+CREATE EVENT IF NOT EXISTS archivia_prenotazioni
+ON SCHEDULE EVERY 1 DAY
+STARTS CURRENT_TIMESTAMP + INTERVAL 1 HOUR
+DO
+CALL ArchiviaPrenotazioni(1);
+
+-- Partizioni di log_operazioni per il mese corrente e i prossimi, subito dopo l'installazione
+CALL ManutenzionePartizioni(3, 12);
 
 -- =============================================
 -- VISTE PER REPORTING
@@ -490,35 +1192,33 @@ SELECT
     p.fila,
     p.num_posto,
     CASE 
-        WHEN res.codice_prenotazione IS NULL THEN 'DISPONIBILE'
+        WHEN o.codice_prenotazione IS NULL THEN 'DISPONIBILE'
         WHEN res.stato_prenotazione = 'TEMPORANEA' AND res.timestamp_scadenza < NOW() THEN 'DISPONIBILE'
         ELSE 'OCCUPATO'
     END as stato_posto
 FROM proiezione pr
 JOIN posto p ON pr.num_sala = p.num_sala
-LEFT JOIN prenotazione res ON pr.id_proiezione = res.id_proiezione 
-    AND p.num_sala = res.num_sala 
-    AND p.fila = res.fila 
-    AND p.num_posto = res.num_posto
-    AND res.stato_prenotazione IN ('TEMPORANEA', 'CONFERMATA')
+LEFT JOIN posto_occupato o ON pr.id_proiezione = o.id_proiezione 
+    AND p.num_sala = o.num_sala 
+    AND p.fila = o.fila 
+    AND p.num_posto = o.num_posto
+LEFT JOIN prenotazione res ON res.codice_prenotazione = o.codice_prenotazione
 WHERE pr.data_ora_inizio > NOW()
   AND pr.stato_proiezione = 'PROGRAMMATA';
 
--- Vista report mensile per sala
+-- Vista report mensile per sala: legge i contatori di report (indietro al massimo di un
+-- aggiornamento) invece di aggregare tutte le prenotazioni
 CREATE VIEW vista_report_mensile AS
 SELECT 
-    pr.num_sala,
+    r.num_sala,
     s.nome_sala,
-    YEAR(res.timestamp_creazione) as anno,
-    MONTH(res.timestamp_creazione) as mese,
-    COUNT(CASE WHEN res.stato_prenotazione = 'CONFERMATA' THEN 1 END) as prenotazioni_confermate,
-    COUNT(CASE WHEN res.stato_prenotazione = 'ANNULLATA' THEN 1 END) as prenotazioni_annullate,
-    SUM(CASE WHEN res.stato_prenotazione = 'CONFERMATA' THEN pr.prezzo ELSE 0 END) as incasso_totale
-FROM sala s
-LEFT JOIN proiezione pr ON s.num_sala = pr.num_sala
-LEFT JOIN prenotazione res ON pr.id_proiezione = res.id_proiezione
-WHERE res.timestamp_creazione IS NOT NULL
-GROUP BY pr.num_sala, s.nome_sala, YEAR(res.timestamp_creazione), MONTH(res.timestamp_creazione);
+    r.anno,
+    r.mese,
+    r.confermate as prenotazioni_confermate,
+    r.annullate as prenotazioni_annullate,
+    r.incasso as incasso_totale
+FROM report r
+JOIN sala s ON s.num_sala = r.num_sala;
 
 -- Abilita eventi programmati
 SET GLOBAL event_scheduler = ON;
@@ -532,7 +1232,10 @@ CREATE TRIGGER log_cambio_stato_prenotazione
     AFTER UPDATE ON prenotazione
     FOR EACH ROW
 BEGIN
-    IF OLD.stato_prenotazione != NEW.stato_prenotazione THEN
+    -- con @audit_applicativo il cambio di stato viene registrato una volta sola, dal client;
+    -- le procedure di gruppo scrivono un solo log per tutto il gruppo
+    IF OLD.stato_prenotazione != NEW.stato_prenotazione
+       AND COALESCE(@audit_applicativo, FALSE) = FALSE AND COALESCE(@log_di_gruppo, FALSE) = FALSE THEN
         INSERT INTO log_operazioni (
             operazione, 
             codice_prenotazione, 
@@ -556,27 +1259,60 @@ BEGIN
     END IF;
 END //
 
--- TRIGGER: Cleanup automatico lock alla conferma
-CREATE TRIGGER cleanup_lock_conferma
+-- TRIGGER: Libera il posto quando la prenotazione viene annullata o scade
+CREATE TRIGGER libera_posto_occupato
     AFTER UPDATE ON prenotazione
     FOR EACH ROW
 BEGIN
-    DECLARE v_lock_name VARCHAR(100);
-    
-    -- Rimuove lock quando prenotazione viene confermata
-    IF OLD.stato_prenotazione = 'TEMPORANEA' AND NEW.stato_prenotazione = 'CONFERMATA' THEN
-        SET v_lock_name = CONCAT('seat_', NEW.id_proiezione, '_', NEW.num_sala, '_', NEW.fila, '_', NEW.num_posto);
-        DELETE FROM distributed_locks WHERE lock_name = v_lock_name;
-    END IF;
-    
-    -- Rimuove lock anche quando prenotazione viene annullata o scade
-    IF OLD.stato_prenotazione = 'TEMPORANEA' AND NEW.stato_prenotazione IN ('ANNULLATA', 'SCADUTA') THEN
-        SET v_lock_name = CONCAT('seat_', NEW.id_proiezione, '_', NEW.num_sala, '_', NEW.fila, '_', NEW.num_posto);
-        DELETE FROM distributed_locks WHERE lock_name = v_lock_name;
+    -- ScadiPrenotazioni libera gia' tutti insieme i posti del blocco
+    IF OLD.stato_prenotazione IN ('TEMPORANEA', 'CONFERMATA') AND NEW.stato_prenotazione IN ('ANNULLATA', 'SCADUTA')
+       AND COALESCE(@scadenza_a_blocchi, FALSE) = FALSE THEN
+        DELETE FROM posto_occupato WHERE codice_prenotazione = NEW.codice_prenotazione;
     END IF;
 END //
 
 
+-- TRIGGER: Variazioni dei contatori di report
+CREATE TRIGGER report_nuova_prenotazione
+    AFTER INSERT ON prenotazione
+    FOR EACH ROW
+BEGIN
+    INSERT INTO report_variazioni (anno, mese, num_sala, prenotazioni, confermate, annullate, scadute)
+    VALUES (
+        YEAR(NEW.timestamp_creazione),
+        MONTH(NEW.timestamp_creazione),
+        NEW.num_sala,
+        1,
+        NEW.stato_prenotazione = 'CONFERMATA',
+        NEW.stato_prenotazione = 'ANNULLATA',
+        NEW.stato_prenotazione = 'SCADUTA'
+    );
+END //
+
+CREATE TRIGGER report_cambio_stato
+    AFTER UPDATE ON prenotazione
+    FOR EACH ROW
+BEGIN
+    DECLARE v_prezzo DECIMAL(5,2) DEFAULT 0;
+
+    IF OLD.stato_prenotazione != NEW.stato_prenotazione THEN
+        -- l'incasso cambia solo entrando in CONFERMATA o uscendone (annullamento)
+        IF 'CONFERMATA' IN (OLD.stato_prenotazione, NEW.stato_prenotazione) THEN
+            SELECT prezzo INTO v_prezzo FROM proiezione WHERE id_proiezione = NEW.id_proiezione;
+        END IF;
+        INSERT INTO report_variazioni (anno, mese, num_sala, confermate, annullate, scadute, incasso)
+        VALUES (
+            YEAR(NEW.timestamp_creazione),
+            MONTH(NEW.timestamp_creazione),
+            NEW.num_sala,
+            (NEW.stato_prenotazione = 'CONFERMATA') - (OLD.stato_prenotazione = 'CONFERMATA'),
+            (NEW.stato_prenotazione = 'ANNULLATA') - (OLD.stato_prenotazione = 'ANNULLATA'),
+            (NEW.stato_prenotazione = 'SCADUTA') - (OLD.stato_prenotazione = 'SCADUTA'),
+            v_prezzo * ((NEW.stato_prenotazione = 'CONFERMATA') - (OLD.stato_prenotazione = 'CONFERMATA'))
+        );
+    END IF;
+END //
+
 -- TRIGGER: Aggiornamento automatico stato proiezioni
 CREATE TRIGGER aggiorna_stato_proiezione
     BEFORE UPDATE ON proiezione